@@ -0,0 +1,213 @@
+package com.sst.storefront.psg.util;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDFontDescriptor;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.String.format;
+
+/**
+ * Embeds each TrueType font at most once into a {@link PDDocument}, as a subset holding only the glyphs that were
+ * written. Fonts are keyed by font id, so repeated lookups across pages and components share one embedded font.
+ *
+ * A manager belongs to a single document and holds its fonts, so it must not outlive the job: the
+ * {@code TextWriter} creates one per document and drops it when the job completes. Call {@link #report()} after
+ * the document has been saved, as PDFBox builds the subsets on save. Glyphs are recorded without locking; only
+ * embedding a font locks, and only this manager.
+ */
+public final class FontEmbeddingManager {
+
+    private final PDDocument document;
+
+    private final ConcurrentMap<String, EmbeddedFont> fontsById = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<PDFont, EmbeddedFont> fontsByInstance = new ConcurrentHashMap<>();
+
+    public FontEmbeddingManager(final PDDocument document) {
+        this.document = document;
+    }
+
+    /**
+     * Returns the font embedded in the document under the given id, loading it as a subset on first use.
+     *
+     * @param fontUri classpath location or URL of the TrueType font
+     * @param fontId id of the font, unique per font file
+     */
+    public PDFont getFont(final String fontUri, final String fontId) {
+        EmbeddedFont embeddedFont = fontsById.get(fontId);
+        if (embeddedFont == null) {
+            embeddedFont = embed(fontUri, fontId);
+        }
+
+        embeddedFont.requests.increment();
+        return embeddedFont.font;
+    }
+
+    /**
+     * Loads the font into the document, unless another thread did meanwhile.
+     */
+    private synchronized EmbeddedFont embed(final String fontUri, final String fontId) {
+        EmbeddedFont embeddedFont = fontsById.get(fontId);
+        if (embeddedFont == null) {
+            // loaded from the cached file, which PDFBox reads in place rather than copying it onto the heap
+            final File file = PsgResourceLoader.getInstance().getPath(fontUri).toFile();
+            try {
+                final PDFont font = PDType0Font.load(document, file);
+                embeddedFont = new EmbeddedFont(fontId, font, file.length());
+            } catch (IOException e) {
+                throw new UncheckedIOException(format("Unable to embed font [%s] from [%s]", fontId, fontUri), e);
+            }
+            fontsByInstance.put(embeddedFont.font, embeddedFont);
+            fontsById.put(fontId, embeddedFont);
+        }
+        return embeddedFont;
+    }
+
+    /**
+     * Records the glyphs of the given text as used. Fonts that are not managed here are ignored.
+     */
+    public void recordGlyphs(final PDFont font, final String text) {
+        final EmbeddedFont embeddedFont = fontsByInstance.get(font);
+        if (embeddedFont != null) {
+            text.codePoints().forEach(embeddedFont.codePoints::add);
+        }
+    }
+
+    /**
+     * Summarizes the fonts embedded in the document, once it has been saved.
+     */
+    public EmbeddingReport report() {
+        final List<FontUsage> usages = new ArrayList<>();
+
+        fontsById.values().forEach(embeddedFont -> usages.add(new FontUsage(embeddedFont.fontId,
+            embeddedFont.requests.intValue(), embeddedFont.codePoints.size(), embeddedFont.sourceBytes,
+            getEmbeddedBytes(embeddedFont.font))));
+
+        return new EmbeddingReport(usages);
+    }
+
+    private long getEmbeddedBytes(final PDFont font) {
+        final PDFontDescriptor descriptor = font.getFontDescriptor();
+        final PDStream fontFile = descriptor != null ? descriptor.getFontFile2() : null;
+        return fontFile != null ? fontFile.getCOSObject().getLength() : 0L;
+    }
+
+    private static final class EmbeddedFont {
+
+        private final String fontId;
+
+        private final PDFont font;
+
+        private final long sourceBytes;
+
+        private final Set<Integer> codePoints = ConcurrentHashMap.newKeySet();
+
+        private final LongAdder requests = new LongAdder();
+
+        private EmbeddedFont(final String fontId, final PDFont font, final long sourceBytes) {
+            this.fontId = fontId;
+            this.font = font;
+            this.sourceBytes = sourceBytes;
+        }
+    }
+
+    /**
+     * Usage of one embedded font.
+     */
+    public static final class FontUsage {
+
+        private final String fontId;
+
+        private final int requests;
+
+        private final int glyphs;
+
+        private final long sourceBytes;
+
+        private final long embeddedBytes;
+
+        public FontUsage(final String fontId, final int requests, final int glyphs, final long sourceBytes,
+                         final long embeddedBytes) {
+            this.fontId = fontId;
+            this.requests = requests;
+            this.glyphs = glyphs;
+            this.sourceBytes = sourceBytes;
+            this.embeddedBytes = embeddedBytes;
+        }
+
+        public String getFontId() {
+            return fontId;
+        }
+
+        /**
+         * Number of lookups served by the single embedded copy.
+         */
+        public int getRequests() {
+            return requests;
+        }
+
+        public int getGlyphs() {
+            return glyphs;
+        }
+
+        public long getSourceBytes() {
+            return sourceBytes;
+        }
+
+        public long getEmbeddedBytes() {
+            return embeddedBytes;
+        }
+
+        /**
+         * Bytes saved compared to embedding the full font once. Duplicate embeds avoided by sharing the font
+         * across {@link #getRequests() lookups} come on top of this.
+         */
+        public long getBytesSaved() {
+            return sourceBytes - embeddedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return format("%s: %d lookups, %d glyphs, %d of %d bytes embedded, %d bytes saved", fontId, requests,
+                glyphs, embeddedBytes, sourceBytes, getBytesSaved());
+        }
+    }
+
+    /**
+     * Font embedding summary of a document.
+     */
+    public static final class EmbeddingReport {
+
+        private final List<FontUsage> fonts;
+
+        public EmbeddingReport(final List<FontUsage> fonts) {
+            this.fonts = Collections.unmodifiableList(fonts);
+        }
+
+        public List<FontUsage> getFonts() {
+            return fonts;
+        }
+
+        public long getBytesSaved() {
+            return fonts.stream().mapToLong(FontUsage::getBytesSaved).sum();
+        }
+
+        @Override
+        public String toString() {
+            return format("%d embedded fonts, %d bytes saved %s", fonts.size(), getBytesSaved(), fonts);
+        }
+    }
+}
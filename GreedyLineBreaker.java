@@ -0,0 +1,37 @@
+package com.sst.storefront.psg.util;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * First-fit line breaking in O(words): every segment is measured once and widths are accumulated, instead of
+ * re-measuring growing prefixes of the line. A segment wider than the line is placed on a line of its own.
+ */
+public class GreedyLineBreaker implements LineBreaker {
+
+    @Override
+    public List<String> splitToLines(final String paragraph, final PDFont font, final float fontSize,
+                                     final float width) {
+        final LineSegments segments = new LineSegments(paragraph, font, fontSize);
+        final List<String> lines = new ArrayList<>();
+
+        int lineStart = 0;
+        float lineWidth = 0f;
+        for (int idx = 0; idx < segments.size(); idx++) {
+            if (idx > lineStart && lineWidth + segments.contentWidth(idx) > width) {
+                lines.add(segments.line(lineStart, idx));
+                lineStart = idx;
+                lineWidth = 0f;
+            }
+            lineWidth += segments.fullWidth(idx);
+        }
+
+        if (lineStart < segments.size() || lines.isEmpty()) {
+            lines.add(segments.line(lineStart, segments.size()));
+        }
+
+        return lines;
+    }
+}
@@ -0,0 +1,67 @@
+package com.sst.storefront.psg.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with power-of-two nanosecond buckets. Percentiles are reported as the upper bound
+ * of the bucket they fall into.
+ */
+public final class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder totalNanos = new LongAdder();
+
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+    public void record(final long nanos) {
+        final long value = Math.max(0L, nanos);
+        buckets.incrementAndGet(BUCKETS - 1 - Long.numberOfLeadingZeros(value | 1L));
+        count.increment();
+        totalNanos.add(value);
+        maxNanos.accumulate(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public double getMeanNanos() {
+        final long samples = getCount();
+        return samples == 0 ? 0d : (double) getTotalNanos() / samples;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     */
+    public long getPercentileNanos(final double percentile) {
+        final long samples = getCount();
+        if (samples == 0) {
+            return 0L;
+        }
+
+        final long rank = (long) Math.ceil(samples * percentile / 100d);
+        long seen = 0L;
+        for (int idx = 0; idx < BUCKETS; idx++) {
+            seen += buckets.get(idx);
+            if (seen >= rank) {
+                return Math.min(getMaxNanos(), idx == BUCKETS - 1 ? Long.MAX_VALUE : (1L << (idx + 1)) - 1);
+            }
+        }
+        return getMaxNanos();
+    }
+}
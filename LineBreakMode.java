@@ -0,0 +1,33 @@
+package com.sst.storefront.psg.util;
+
+/**
+ * Line breaking engines available to the text writer.
+ */
+public enum LineBreakMode {
+
+    /**
+     * {@link TextWriterUtils#splitToLines}, the original splitter.
+     */
+    LEGACY(TextWriterUtils::splitToLines),
+
+    /**
+     * First-fit breaking that measures every word once.
+     */
+    GREEDY(new GreedyLineBreaker()),
+
+    /**
+     * Minimum-raggedness breaking over the whole paragraph, for even line lengths. The writer does not stretch the
+     * spaces of a line, so lines are still aligned as a whole rather than justified.
+     */
+    OPTIMAL_FIT(new OptimalFitLineBreaker());
+
+    private final LineBreaker lineBreaker;
+
+    LineBreakMode(final LineBreaker lineBreaker) {
+        this.lineBreaker = lineBreaker;
+    }
+
+    public LineBreaker getLineBreaker() {
+        return lineBreaker;
+    }
+}
@@ -0,0 +1,14 @@
+package com.sst.storefront.psg.util;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+import java.util.List;
+
+/**
+ * Splits a paragraph (text without line feeds) into lines that fit a given width.
+ */
+@FunctionalInterface
+public interface LineBreaker {
+
+    List<String> splitToLines(String paragraph, PDFont font, float fontSize, float width);
+}
@@ -0,0 +1,121 @@
+package com.sst.storefront.psg.util;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static java.lang.String.format;
+
+/**
+ * Compares the {@link LineBreakMode}s on generated paragraphs: time per paragraph, lines produced and raggedness,
+ * the root mean square of the slack left on each line but the last of a paragraph.
+ *
+ * Runs on the standard Helvetica Type 1 font, and on a TrueType or OpenType font file when one is given, embedded
+ * as a {@link PDType0Font} the way {@code FontEmbeddingManager} embeds the external fonts of production documents.
+ *
+ * Usage: {@code LineBreakerBenchmark [paragraphs] [words per paragraph] [width in points] [font file]}
+ * (default 2000 120 240, Helvetica only)
+ */
+public final class LineBreakerBenchmark {
+
+    private static final String[] WORDS = {"the", "quick", "brown", "fox", "jumps", "over", "lazy", "dog",
+        "storefront", "catalogue", "price", "discount", "available", "in-store", "delivery", "warranty", "a",
+        "high-definition", "television", "with", "remote", "control", "and", "wall-mount", "bracket", "included"};
+
+    private static final float FONT_SIZE = 10f;
+
+    private static final int WARMUP_ROUNDS = 5;
+
+    private static final int ROUNDS = 10;
+
+    private LineBreakerBenchmark() {
+    }
+
+    public static void main(final String[] args) throws IOException {
+        final int paragraphCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        final int wordCount = args.length > 1 ? Integer.parseInt(args[1]) : 120;
+        final float width = args.length > 2 ? Float.parseFloat(args[2]) : 240f;
+
+        final Random random = new Random(42);
+        final List<String> paragraphs = new ArrayList<>(paragraphCount);
+        for (int idx = 0; idx < paragraphCount; idx++) {
+            final StringBuilder paragraph = new StringBuilder();
+            for (int word = 0; word < wordCount; word++) {
+                paragraph.append(word == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            paragraphs.add(paragraph.toString());
+        }
+
+        try (PDDocument document = new PDDocument()) {
+            final Map<String, PDFont> fonts = new LinkedHashMap<>();
+            fonts.put("Helvetica (Type 1)", PDType1Font.HELVETICA);
+            if (args.length > 3) {
+                final File file = new File(args[3]);
+                fonts.put(file.getName() + " (embedded)", PDType0Font.load(document, file));
+            }
+
+            for (final Map.Entry<String, PDFont> font : fonts.entrySet()) {
+                System.out.println(format("%d paragraphs of %d words, %.0f pt wide, %.0f pt %s", paragraphCount,
+                    wordCount, width, FONT_SIZE, font.getKey()));
+                run(paragraphs, width, font.getValue());
+            }
+        }
+    }
+
+    private static void run(final List<String> paragraphs, final float width, final PDFont font) {
+        final int paragraphCount = paragraphs.size();
+        for (final LineBreakMode mode : LineBreakMode.values()) {
+            final LineBreaker lineBreaker = mode.getLineBreaker();
+
+            long bestNanos = Long.MAX_VALUE;
+            List<List<String>> broken = null;
+            for (int round = -WARMUP_ROUNDS; round < ROUNDS; round++) {
+                final List<List<String>> results = new ArrayList<>(paragraphCount);
+                final long start = System.nanoTime();
+                for (final String paragraph : paragraphs) {
+                    results.add(lineBreaker.splitToLines(paragraph, font, FONT_SIZE, width));
+                }
+                final long nanos = System.nanoTime() - start;
+                if (round >= 0) {
+                    bestNanos = Math.min(bestNanos, nanos);
+                }
+                broken = results;
+            }
+
+            long lines = 0;
+            double squaredSlack = 0d;
+            long slackLines = 0;
+            for (final List<String> paragraphLines : broken) {
+                lines += paragraphLines.size();
+                for (int idx = 0; idx < paragraphLines.size() - 1; idx++) {
+                    final float slack = width - measure(StringUtils.stripEnd(paragraphLines.get(idx), null), font);
+                    squaredSlack += (double) slack * slack;
+                    slackLines++;
+                }
+            }
+
+            System.out.println(format("  %-12s %8.1f us/paragraph %6.2f lines/paragraph %6.2f pt rms slack",
+                mode, bestNanos / 1000d / paragraphCount, (double) lines / paragraphCount,
+                slackLines == 0 ? 0d : Math.sqrt(squaredSlack / slackLines)));
+        }
+    }
+
+    private static float measure(final String text, final PDFont font) {
+        try {
+            return font.getStringWidth(text) / 1000f * FONT_SIZE;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
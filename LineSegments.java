@@ -0,0 +1,129 @@
+package com.sst.storefront.psg.util;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+import static java.lang.String.format;
+
+/**
+ * A paragraph cut at its break opportunities, with every segment measured once. A segment is a word followed by
+ * the whitespace after it, or the part of a compound word up to and including a hyphen that is already in the text.
+ * Words are not hyphenated: there is no hyphenation dictionary, and soft hyphens are not break opportunities.
+ * Concatenating the segments yields the paragraph, so lines built from whole segments keep the character offsets the
+ * writer relies on.
+ *
+ * The segments are held in primitive arrays, as the breakers read them in their inner loops.
+ */
+final class LineSegments {
+
+    private static final int INITIAL_CAPACITY = 32;
+
+    private final String paragraph;
+
+    private int count;
+
+    /**
+     * The start offset of each segment, followed by the length of the paragraph.
+     */
+    private int[] starts;
+
+    private float[] contentWidths;
+
+    private float[] fullWidths;
+
+    private boolean[] hyphenBreaks;
+
+    LineSegments(final String paragraph, final PDFont font, final float fontSize) {
+        this.paragraph = paragraph;
+        // about one segment per six characters of text, grown when needed
+        final int capacity = Math.max(INITIAL_CAPACITY, paragraph.length() / 6);
+        starts = new int[capacity + 1];
+        contentWidths = new float[capacity];
+        fullWidths = new float[capacity];
+        hyphenBreaks = new boolean[capacity];
+
+        int start = 0;
+        int idx = 0;
+        final int length = paragraph.length();
+        while (idx < length) {
+            final char current = paragraph.charAt(idx);
+            if (Character.isWhitespace(current)) {
+                final int contentEnd = idx;
+                while (idx < length && Character.isWhitespace(paragraph.charAt(idx))) {
+                    idx++;
+                }
+                addSegment(start, contentEnd, idx, false, font, fontSize);
+                start = idx;
+            } else if (current == '-' && idx > start && idx + 1 < length
+                && !Character.isWhitespace(paragraph.charAt(idx + 1))) {
+                idx++;
+                addSegment(start, idx, idx, true, font, fontSize);
+                start = idx;
+            } else {
+                idx++;
+            }
+        }
+        if (start < length) {
+            addSegment(start, length, length, false, font, fontSize);
+        }
+        starts[count] = length;
+    }
+
+    private void addSegment(final int start, final int contentEnd, final int end, final boolean hyphenBreak,
+                            final PDFont font, final float fontSize) {
+        if (count == contentWidths.length) {
+            final int capacity = count * 2;
+            starts = Arrays.copyOf(starts, capacity + 1);
+            contentWidths = Arrays.copyOf(contentWidths, capacity);
+            fullWidths = Arrays.copyOf(fullWidths, capacity);
+            hyphenBreaks = Arrays.copyOf(hyphenBreaks, capacity);
+        }
+        final float contentWidth = measure(paragraph.substring(start, contentEnd), font, fontSize);
+        starts[count] = start;
+        contentWidths[count] = contentWidth;
+        fullWidths[count] = contentEnd == end ? contentWidth
+            : contentWidth + measure(paragraph.substring(contentEnd, end), font, fontSize);
+        hyphenBreaks[count] = hyphenBreak;
+        count++;
+    }
+
+    private static float measure(final String text, final PDFont font, final float fontSize) {
+        try {
+            return font.getStringWidth(text) / 1000f * fontSize;
+        } catch (IOException e) {
+            throw new UncheckedIOException(format("Unable to measure [%s]", text), e);
+        }
+    }
+
+    int size() {
+        return count;
+    }
+
+    /**
+     * Width of the segment without its trailing whitespace, i.e. when it ends a line.
+     */
+    float contentWidth(final int segment) {
+        return contentWidths[segment];
+    }
+
+    /**
+     * Width of the segment including its trailing whitespace, i.e. when more segments follow on the line.
+     */
+    float fullWidth(final int segment) {
+        return fullWidths[segment];
+    }
+
+    boolean isHyphenBreak(final int segment) {
+        return hyphenBreaks[segment];
+    }
+
+    /**
+     * Text of the segments {@code [fromInclusive, toExclusive)}.
+     */
+    String line(final int fromInclusive, final int toExclusive) {
+        return paragraph.substring(starts[fromInclusive], starts[toExclusive]);
+    }
+}
@@ -0,0 +1,69 @@
+package com.sst.storefront.psg.util;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Knuth-Plass style line breaking: chooses the breaks that minimize the sum of squared slack over all lines of
+ * the paragraph except the last, which gives even line lengths. Breaking after a hyphen already in the text, e.g.
+ * in {@code wall-mount}, is allowed but penalized; words are not hyphenated otherwise. Each segment is measured
+ * once; the search is bounded by the words that fit on a line. Spaces are not stretched, the lines are aligned as
+ * a whole.
+ */
+public class OptimalFitLineBreaker implements LineBreaker {
+
+    private static final float HYPHEN_PENALTY_RATIO = 0.25f;
+
+    @Override
+    public List<String> splitToLines(final String paragraph, final PDFont font, final float fontSize,
+                                     final float width) {
+        final LineSegments segments = new LineSegments(paragraph, font, fontSize);
+        final int count = segments.size();
+        if (count == 0) {
+            return Collections.singletonList(paragraph);
+        }
+
+        // prefix[i] is the full width of segments [0, i)
+        final float[] prefix = new float[count + 1];
+        for (int idx = 0; idx < count; idx++) {
+            prefix[idx + 1] = prefix[idx] + segments.fullWidth(idx);
+        }
+
+        final float hyphenPenalty = (width * HYPHEN_PENALTY_RATIO) * (width * HYPHEN_PENALTY_RATIO);
+
+        // cost[j] is the best cost of breaking segments [0, j) into lines, breaks[j] the start of its last line
+        final double[] cost = new double[count + 1];
+        final int[] breaks = new int[count + 1];
+        for (int end = 1; end <= count; end++) {
+            cost[end] = Double.MAX_VALUE;
+            for (int start = end - 1; start >= 0; start--) {
+                final float lineWidth = prefix[end - 1] - prefix[start] + segments.contentWidth(end - 1);
+                if (lineWidth > width && start < end - 1) {
+                    break;
+                }
+
+                final float slack = Math.max(0f, width - lineWidth);
+                double lineCost = end == count ? 0d : (double) slack * slack;
+                if (end < count && segments.isHyphenBreak(end - 1)) {
+                    lineCost += hyphenPenalty;
+                }
+
+                if (cost[start] + lineCost < cost[end]) {
+                    cost[end] = cost[start] + lineCost;
+                    breaks[end] = start;
+                }
+            }
+        }
+
+        final List<String> lines = new ArrayList<>();
+        for (int end = count; end > 0; end = breaks[end]) {
+            lines.add(segments.line(breaks[end], end));
+        }
+        Collections.reverse(lines);
+
+        return lines;
+    }
+}
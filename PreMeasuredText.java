@@ -0,0 +1,66 @@
+package com.sst.storefront.psg.writers;
+
+import com.sst.storefront.psg.util.TextExtractorHelper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable result of measuring a {@link com.sst.storefront.psg.models.Text} component: line breaks,
+ * line height and per-line alignment shifts. Produced ahead of paint so that the
+ * {@link org.apache.pdfbox.pdmodel.PDPageContentStream} is only touched by the sequential paint stage.
+ */
+public final class PreMeasuredText {
+
+    private final TextFonts fonts;
+
+    private final TextExtractorHelper.TextExtractorResponse response;
+
+    private final List<String> lines;
+
+    private final float[] xShifts;
+
+    private final float width;
+
+    private final float heightSpacing;
+
+    public PreMeasuredText(final TextFonts fonts, final TextExtractorHelper.TextExtractorResponse response,
+                           final List<String> lines, final float[] xShifts, final float width,
+                           final float heightSpacing) {
+        if (lines.size() != xShifts.length) {
+            throw new IllegalArgumentException(String.format("Expected %d alignment shifts but got %d",
+                lines.size(), xShifts.length));
+        }
+        this.fonts = fonts;
+        this.response = response;
+        this.lines = Collections.unmodifiableList(new ArrayList<>(lines));
+        this.xShifts = xShifts.clone();
+        this.width = width;
+        this.heightSpacing = heightSpacing;
+    }
+
+    public TextFonts getFonts() {
+        return fonts;
+    }
+
+    public TextExtractorHelper.TextExtractorResponse getResponse() {
+        return response;
+    }
+
+    public List<String> getLines() {
+        return lines;
+    }
+
+    public float getXShift(final int lineIndex) {
+        return xShifts[lineIndex];
+    }
+
+    public float getWidth() {
+        return width;
+    }
+
+    public float getHeightSpacing() {
+        return heightSpacing;
+    }
+}
@@ -0,0 +1,232 @@
+package com.sst.storefront.psg.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.lang.String.format;
+
+/**
+ * Resolves fonts and images used by the PSG writers to local files that are shared across documents and threads,
+ * for PDFBox to read in place rather than copying them onto the heap.
+ *
+ * Local files and classpath resources on the file system are used where they are. Remote URIs and resources
+ * packed in jars are streamed into an on-disk cache ({@code psg.resource.cacheDir}, defaults to a folder in
+ * {@code java.io.tmpdir}) and read from there, so later processes on the same host skip the download too. Jar
+ * resources are cached under their URL, size and modification time, so a new jar gets a new entry. Remote
+ * resources are revalidated with their {@code ETag} or {@code Last-Modified} once per process and downloaded
+ * again when they changed.
+ *
+ * Each resource is loaded once; concurrent callers for the same resource wait for that load, other resources
+ * are not held up by it.
+ */
+public final class PsgResourceLoader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PsgResourceLoader.class);
+
+    private static final String CACHE_DIR_PROPERTY = "psg.resource.cacheDir";
+
+    private static final String VALIDATORS_SUFFIX = ".validators";
+
+    private static final PsgResourceLoader INSTANCE = new PsgResourceLoader(Paths.get(System.getProperty(
+        CACHE_DIR_PROPERTY, Paths.get(System.getProperty("java.io.tmpdir"), "psg-resource-cache").toString())));
+
+    private final ConcurrentMap<String, CompletableFuture<Path>> resources = new ConcurrentHashMap<>();
+
+    private final Path cacheDir;
+
+    PsgResourceLoader(final Path cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    public static PsgResourceLoader getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the local file of the resource, for APIs that read files without copying them onto the heap. The
+     * file must not be modified.
+     *
+     * @param location a URL, a file path or a classpath location
+     */
+    public Path getPath(final String location) {
+        CompletableFuture<Path> resource = resources.get(location);
+        if (resource == null) {
+            final CompletableFuture<Path> loading = new CompletableFuture<>();
+            resource = resources.putIfAbsent(location, loading);
+            if (resource == null) {
+                resource = loading;
+                load(location, loading);
+            }
+        }
+
+        try {
+            return resource.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Loads the resource outside the map, so that a download does not block lookups of other resources. A
+     * failed load is removed, so that the next call retries it.
+     */
+    private void load(final String location, final CompletableFuture<Path> loading) {
+        try {
+            loading.complete(resolve(location));
+        } catch (IOException | RuntimeException e) {
+            resources.remove(location, loading);
+            loading.completeExceptionally(e instanceof IOException
+                ? new UncheckedIOException(format("Unable to load resource [%s]", location), (IOException) e) : e);
+        }
+    }
+
+    private Path resolve(final String location) throws IOException {
+        if (location.contains("://")) {
+            final URL url = new URL(location);
+            return "file".equals(url.getProtocol()) ? toPath(url) : cache(url);
+        }
+
+        final Path path = Paths.get(location);
+        if (path.isAbsolute() && Files.isRegularFile(path)) {
+            return path;
+        }
+
+        final URL resource = PsgResourceLoader.class.getClassLoader().getResource(location);
+        if (resource == null) {
+            throw new IOException(format("Resource [%s] not found", location));
+        }
+        return "file".equals(resource.getProtocol()) ? toPath(resource) : cache(resource);
+    }
+
+    private Path toPath(final URL url) throws IOException {
+        try {
+            return Paths.get(url.toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException(format("Invalid file URL [%s]", url), e);
+        }
+    }
+
+    private Path cache(final URL url) throws IOException {
+        final URLConnection connection = url.openConnection();
+        return connection instanceof HttpURLConnection
+            ? cacheRemote(url, (HttpURLConnection) connection) : cachePacked(url, connection);
+    }
+
+    /**
+     * Caches a resource packed in a jar (or served by another local handler) under its URL, size and
+     * modification time, which change with the jar.
+     */
+    private Path cachePacked(final URL url, final URLConnection connection) throws IOException {
+        final Path cached = cacheDir.resolve(digest(format("%s|%d|%d", url.toExternalForm(),
+            connection.getContentLengthLong(), connection.getLastModified())));
+        if (Files.isRegularFile(cached)) {
+            return cached;
+        }
+
+        try (InputStream in = connection.getInputStream()) {
+            download(in, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * Caches a remote resource under its URL, revalidated with the validators of the cached copy. The cached
+     * copy is used if the server cannot be reached.
+     */
+    private Path cacheRemote(final URL url, final HttpURLConnection connection) throws IOException {
+        final Path cached = cacheDir.resolve(digest(url.toExternalForm()));
+        final Path validatorsFile = cacheDir.resolve(cached.getFileName() + VALIDATORS_SUFFIX);
+        final boolean isCached = Files.isRegularFile(cached) && Files.isRegularFile(validatorsFile);
+
+        try {
+            if (isCached) {
+                final List<String> validators = Files.readAllLines(validatorsFile, StandardCharsets.UTF_8);
+                if (validators.size() == 2) {
+                    setHeader(connection, "If-None-Match", validators.get(0));
+                    setHeader(connection, "If-Modified-Since", validators.get(1));
+                }
+            }
+
+            final int status = connection.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED && isCached) {
+                return cached;
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException(format("Unable to download [%s]: HTTP %d", url, status));
+            }
+
+            try (InputStream in = connection.getInputStream()) {
+                download(in, cached);
+            }
+            Files.write(validatorsFile, Arrays.asList(nullToEmpty(connection.getHeaderField("ETag")),
+                nullToEmpty(connection.getHeaderField("Last-Modified"))), StandardCharsets.UTF_8);
+            return cached;
+        } catch (IOException e) {
+            if (!isCached) {
+                throw e;
+            }
+            LOGGER.warn(format("Unable to revalidate [%s], using the cached copy", url), e);
+            return cached;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Streams into a temporary file first, so that a cache entry is never seen half written.
+     */
+    private void download(final InputStream in, final Path cached) throws IOException {
+        Files.createDirectories(cacheDir);
+        final Path download = Files.createTempFile(cacheDir, "download", ".tmp");
+        try {
+            Files.copy(in, download, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(download, cached, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(download);
+        }
+    }
+
+    private static void setHeader(final HttpURLConnection connection, final String name, final String value) {
+        if (!value.isEmpty()) {
+            connection.setRequestProperty(name, value);
+        }
+    }
+
+    private static String nullToEmpty(final String value) {
+        return value != null ? value : "";
+    }
+
+    private static String digest(final String value) {
+        try {
+            final byte[] hash = MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder hex = new StringBuilder();
+            for (final byte b : hash) {
+                hex.append(format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
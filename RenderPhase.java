@@ -0,0 +1,16 @@
+package com.sst.storefront.psg.util;
+
+/**
+ * Phases of rendering a {@link com.sst.storefront.psg.models.Text} component that are timed by
+ * {@link TextRenderMetrics}.
+ */
+public enum RenderPhase {
+
+    EXTRACTION,
+
+    LINE_SPLITTING,
+
+    TAG_PROCESSING,
+
+    STREAM_WRITING
+}
@@ -0,0 +1,46 @@
+package com.sst.storefront.psg.writers;
+
+import com.sst.storefront.psg.util.FontEmbeddingManager;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+/**
+ * Fonts resolved for a single {@link com.sst.storefront.psg.models.Text} component.
+ */
+public final class TextFonts {
+
+    private final PDFont font;
+
+    private final PDFont boldFont;
+
+    private final PDFont iconFont;
+
+    private final FontEmbeddingManager embedding;
+
+    public TextFonts(final PDFont font, final PDFont boldFont, final PDFont iconFont,
+                     final FontEmbeddingManager embedding) {
+        this.font = font;
+        this.boldFont = boldFont;
+        this.iconFont = iconFont;
+        this.embedding = embedding;
+    }
+
+    public PDFont getFont() {
+        return font;
+    }
+
+    public PDFont getBoldFont() {
+        return boldFont;
+    }
+
+    public PDFont getIconFont() {
+        return iconFont;
+    }
+
+    /**
+     * The embedding manager of the component's document, which records the glyphs written with these fonts.
+     */
+    public FontEmbeddingManager getEmbedding() {
+        return embedding;
+    }
+}
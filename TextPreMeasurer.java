@@ -0,0 +1,115 @@
+package com.sst.storefront.psg.writers;
+
+import com.sst.storefront.psg.models.Text;
+import com.sst.storefront.psg.util.TextExtractorHelper;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+/**
+ * Pre-measure stage of the text pipeline. Computes line breaks, heights and alignment shifts of all
+ * {@link Text} components of a job on a fork-join pool and hands the immutable {@link PreMeasuredText}
+ * results to the sequential paint stage ({@link TextWriter#write(Text, com.sst.storefront.psg.writers.graphics.Layout, PreMeasuredText)}).
+ *
+ * Fonts are resolved sequentially because they are loaded into the shared {@code PDDocument}. PDFBox fills the
+ * glyph width and encoding caches of each {@link PDFont} lazily and without synchronization, so the text of all
+ * components is extracted first and every character a font will measure is measured once, sequentially. The
+ * workers then only read those caches, and the components are measured in chunks across the pool whatever their
+ * font, so a job using a single font is measured in parallel too.
+ */
+public class TextPreMeasurer {
+
+    /**
+     * Components per task: enough to amortize scheduling, few enough to balance a job over the pool.
+     */
+    private static final int CHUNK_SIZE = 16;
+
+    /**
+     * Characters the line breakers may measure on their own.
+     */
+    private static final String BREAK_CHARACTERS = " -";
+
+    private final TextWriter textWriter;
+
+    private final ForkJoinPool pool;
+
+    public TextPreMeasurer(final TextWriter textWriter) {
+        this(textWriter, ForkJoinPool.commonPool());
+    }
+
+    public TextPreMeasurer(final TextWriter textWriter, final ForkJoinPool pool) {
+        this.textWriter = textWriter;
+        this.pool = pool;
+    }
+
+    /**
+     * Measures the given components.
+     *
+     * @param texts the components of a job
+     * @param widthResolver provides the available layout width of each component
+     * @return the measured layouts keyed by component identity
+     */
+    public Map<Text, PreMeasuredText> measureAll(final List<Text> texts, final Function<Text, Float> widthResolver) {
+        final Map<Text, TextFonts> fontsByText = new IdentityHashMap<>();
+        texts.forEach(text -> fontsByText.put(text, textWriter.resolveFonts(text)));
+
+        final Map<Text, TextExtractorHelper.TextExtractorResponse> responses = inChunks(texts, textWriter::extract);
+
+        final Map<PDFont, Set<Integer>> codePointsByFont = new IdentityHashMap<>();
+        texts.forEach(text -> {
+            final Set<Integer> codePoints = codePointsByFont.computeIfAbsent(fontsByText.get(text).getFont(),
+                font -> new HashSet<>());
+            responses.get(text).getText().codePoints().forEach(codePoints::add);
+            BREAK_CHARACTERS.codePoints().forEach(codePoints::add);
+        });
+        codePointsByFont.forEach(TextPreMeasurer::fillWidthCache);
+
+        return Collections.unmodifiableMap(inChunks(texts, text ->
+            textWriter.measure(text, widthResolver.apply(text), fontsByText.get(text), responses.get(text))));
+    }
+
+    /**
+     * Applies the step to every component, {@link #CHUNK_SIZE} components per task.
+     */
+    private <T> Map<Text, T> inChunks(final List<Text> texts, final Function<Text, T> step) {
+        final List<ForkJoinTask<Map<Text, T>>> tasks = new ArrayList<>();
+        for (int from = 0; from < texts.size(); from += CHUNK_SIZE) {
+            final List<Text> chunk = texts.subList(from, Math.min(from + CHUNK_SIZE, texts.size()));
+            tasks.add(pool.submit(() -> {
+                final Map<Text, T> results = new IdentityHashMap<>();
+                chunk.forEach(text -> results.put(text, step.apply(text)));
+                return results;
+            }));
+        }
+
+        final Map<Text, T> results = new IdentityHashMap<>();
+        tasks.forEach(task -> results.putAll(task.join()));
+
+        return results;
+    }
+
+    /**
+     * Measures each character once, so that the font caches its encoding and width before it is shared by the
+     * workers.
+     */
+    private static void fillWidthCache(final PDFont font, final Set<Integer> codePoints) {
+        codePoints.forEach(codePoint -> {
+            try {
+                font.getStringWidth(new String(Character.toChars(codePoint)));
+            } catch (IOException | IllegalArgumentException e) {
+                // not encodable in this font, the measure stage fails on it as it would have without this step
+            }
+        });
+    }
+}
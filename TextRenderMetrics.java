@@ -0,0 +1,239 @@
+package com.sst.storefront.psg.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static java.lang.String.format;
+
+/**
+ * Render-time metrics of {@link com.sst.storefront.psg.models.Text} components. Time spent per
+ * {@link RenderPhase} is recorded into histograms keyed by template component, both per job (for the slow block
+ * report returned by {@link #completeJob(String, int)}) and since startup (exported over JMX).
+ */
+public final class TextRenderMetrics implements TextRenderMetricsMXBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TextRenderMetrics.class);
+
+    public static final String OBJECT_NAME = "com.sst.storefront.psg:type=TextRenderMetrics";
+
+    /**
+     * Upper bound of components tracked since startup, so that data-driven ids cannot grow the map unbounded.
+     */
+    private static final int MAX_TRACKED_COMPONENTS = 2000;
+
+    private static final int JMX_SLOW_BLOCKS = 20;
+
+    private static final TextRenderMetrics INSTANCE = register(new TextRenderMetrics());
+
+    /**
+     * Concurrent, as {@link #reset()} replaces the histograms while other threads record into them.
+     */
+    private final ConcurrentMap<RenderPhase, LatencyHistogram> phases = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, ComponentMetrics> components = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, ConcurrentMap<String, ComponentMetrics>> jobs = new ConcurrentHashMap<>();
+
+    private TextRenderMetrics() {
+        for (final RenderPhase phase : RenderPhase.values()) {
+            phases.put(phase, new LatencyHistogram());
+        }
+    }
+
+    public static TextRenderMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    private static TextRenderMetrics register(final TextRenderMetrics metrics) {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(metrics, name);
+            }
+        } catch (JMException e) {
+            LOGGER.warn(format("Unable to register [%s], text render metrics are only available through the "
+                + "Java API", OBJECT_NAME), e);
+        }
+        return metrics;
+    }
+
+    /**
+     * Records time spent by a component in a phase.
+     *
+     * @param jobId the job the component belongs to, may be {@code null}
+     * @param componentId the template component, see {@link #componentId(String)}
+     */
+    public void record(final String jobId, final String componentId, final RenderPhase phase, final long nanos) {
+        phases.get(phase).record(nanos);
+
+        ComponentMetrics component = components.get(componentId);
+        if (component == null && components.size() < MAX_TRACKED_COMPONENTS) {
+            component = components.computeIfAbsent(componentId, ComponentMetrics::new);
+        }
+        if (component != null) {
+            component.record(phase, nanos);
+        }
+
+        if (jobId != null) {
+            jobs.computeIfAbsent(jobId, id -> new ConcurrentHashMap<>())
+                .computeIfAbsent(componentId, ComponentMetrics::new)
+                .record(phase, nanos);
+        }
+    }
+
+    /**
+     * Normalizes the template value of a component (e.g. its first section) into a component id.
+     */
+    public static String componentId(final String templateValue) {
+        if (templateValue == null) {
+            return "<none>";
+        }
+        final String id = templateValue.replaceAll("\\s+", " ").trim();
+        return id.length() > 80 ? id.substring(0, 77) + "..." : id;
+    }
+
+    /**
+     * Ends the job and returns its slowest components. Must be called for every job recorded with an id, as its
+     * metrics are held until then; the {@code TextWriter} does so when the job completes.
+     */
+    public SlowBlockReport completeJob(final String jobId, final int limit) {
+        final Map<String, ComponentMetrics> jobComponents = jobs.remove(jobId);
+        return new SlowBlockReport(jobId,
+            jobComponents == null ? Collections.emptyList() : slowest(jobComponents, limit));
+    }
+
+    @Override
+    public Map<String, Long> getPhaseInvocations() {
+        return phaseValues(LatencyHistogram::getCount);
+    }
+
+    @Override
+    public Map<String, Double> getPhaseMeanMicros() {
+        return phaseValues(histogram -> histogram.getMeanNanos() / 1000d);
+    }
+
+    @Override
+    public Map<String, Long> getPhaseP99Micros() {
+        return phaseValues(histogram -> histogram.getPercentileNanos(99d) / 1000L);
+    }
+
+    @Override
+    public Map<String, Long> getPhaseMaxMicros() {
+        return phaseValues(histogram -> histogram.getMaxNanos() / 1000L);
+    }
+
+    @Override
+    public List<String> getSlowestBlocks() {
+        return slowest(components, JMX_SLOW_BLOCKS).stream().map(ComponentMetrics::toString)
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public void reset() {
+        phases.replaceAll((phase, histogram) -> new LatencyHistogram());
+        components.clear();
+    }
+
+    private <T> Map<String, T> phaseValues(final Function<LatencyHistogram, T> value) {
+        final Map<String, T> values = new TreeMap<>();
+        phases.forEach((phase, histogram) -> values.put(phase.name(), value.apply(histogram)));
+        return values;
+    }
+
+    private static List<ComponentMetrics> slowest(final Map<String, ComponentMetrics> components, final int limit) {
+        return components.values().stream()
+            .sorted(Comparator.comparingLong(ComponentMetrics::getTotalNanos).reversed())
+            .limit(limit)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Histograms of a single template component.
+     */
+    public static final class ComponentMetrics {
+
+        private final String componentId;
+
+        private final Map<RenderPhase, LatencyHistogram> phases = new EnumMap<>(RenderPhase.class);
+
+        private ComponentMetrics(final String componentId) {
+            this.componentId = componentId;
+            for (final RenderPhase phase : RenderPhase.values()) {
+                phases.put(phase, new LatencyHistogram());
+            }
+        }
+
+        private void record(final RenderPhase phase, final long nanos) {
+            phases.get(phase).record(nanos);
+        }
+
+        public String getComponentId() {
+            return componentId;
+        }
+
+        public LatencyHistogram getHistogram(final RenderPhase phase) {
+            return phases.get(phase);
+        }
+
+        public long getTotalNanos() {
+            return phases.values().stream().mapToLong(LatencyHistogram::getTotalNanos).sum();
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder builder = new StringBuilder(format("%.3f ms [%s]", getTotalNanos() / 1e6d, componentId));
+            phases.forEach((phase, histogram) -> builder.append(format(" %s=%.3f ms/%d", phase.name().toLowerCase(),
+                histogram.getTotalNanos() / 1e6d, histogram.getCount())));
+            return builder.toString();
+        }
+    }
+
+    /**
+     * Slowest template components of a job, slowest first.
+     */
+    public static final class SlowBlockReport {
+
+        private final String jobId;
+
+        private final List<ComponentMetrics> blocks;
+
+        private SlowBlockReport(final String jobId, final List<ComponentMetrics> blocks) {
+            this.jobId = jobId;
+            this.blocks = Collections.unmodifiableList(blocks);
+        }
+
+        public String getJobId() {
+            return jobId;
+        }
+
+        public List<ComponentMetrics> getBlocks() {
+            return blocks;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder builder = new StringBuilder(format("Slowest text blocks of job [%s]:", jobId));
+            for (int idx = 0; idx < blocks.size(); idx++) {
+                builder.append(format("%n  %d. %s", idx + 1, blocks.get(idx)));
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.sst.storefront.psg.util;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JMX view of {@link TextRenderMetrics}, registered as {@value TextRenderMetrics#OBJECT_NAME}.
+ */
+public interface TextRenderMetricsMXBean {
+
+    /**
+     * Number of timed invocations per {@link RenderPhase}.
+     */
+    Map<String, Long> getPhaseInvocations();
+
+    Map<String, Double> getPhaseMeanMicros();
+
+    Map<String, Long> getPhaseP99Micros();
+
+    Map<String, Long> getPhaseMaxMicros();
+
+    /**
+     * Slowest template blocks since startup, by total render time.
+     */
+    List<String> getSlowestBlocks();
+
+    void reset();
+}
@@ -12,16 +12,20 @@ import com.sst.storefront.psg.models.Pagination;
 import com.sst.storefront.psg.models.Text;
 import com.sst.storefront.psg.models.TextType;
 import com.sst.storefront.psg.util.ExpressionLangInterpreter;
+import com.sst.storefront.psg.util.FontEmbeddingManager;
 import com.sst.storefront.psg.util.IterationUtil;
+import com.sst.storefront.psg.util.LineBreakMode;
+import com.sst.storefront.psg.util.LineBreaker;
+import com.sst.storefront.psg.util.RenderPhase;
+import com.sst.storefront.psg.util.TextRenderMetrics;
 import com.sst.storefront.psg.util.TextExtractorHelper;
-import com.sst.storefront.psg.util.TextWriterUtils;
 import com.sst.storefront.psg.writers.graphics.Layout;
 import com.sst.storefront.psg.writers.graphics.Point;
 import com.sst.storefront.util.WriterUtil;
-import com.sst.storefront.psg.util.FontSingleton;
 
 import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
 import org.apache.pdfbox.pdmodel.font.PDFont;
@@ -31,6 +35,10 @@ import java.awt.*;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.io.IOException;
@@ -69,24 +77,58 @@ public class TextWriter extends AbstractTextWriter {
 
     private static final String EMPTY_TAG_REGEX="#\\w+#\\s*#\\/\\w+#";
 
+    private static final Pattern NEW_LINE_PATTERN = Pattern.compile("\\r?\\n");
+
+    private static final String ICON_FONT_URI = "psg/fonts/sst-wcm-2015.ttf";
+
+    private static final String ICON_FONT_ID = "sst-wcm-2015";
+
+    /**
+     * Slowest text blocks logged per job.
+     */
+    private static final int SLOW_BLOCK_REPORT_SIZE = 10;
+
     static {
         FONT_CACHE.put(DEFAULT_FONT, PDType1Font.HELVETICA_BOLD);
     }
 
+    private Function<Text, LineBreakMode> lineBreakModeSelector = text -> LineBreakMode.LEGACY;
+
+    /**
+     * Font embedding of the documents being written, dropped by {@link #completeJob(String, PDDocument)}.
+     */
+    private final ConcurrentMap<PDDocument, FontEmbeddingManager> fontEmbeddings = new ConcurrentHashMap<>();
+
+    /**
+     * Selects the line breaking engine per component, e.g. {@link LineBreakMode#OPTIMAL_FIT} for even line lengths
+     * in long paragraphs. Defaults to {@link LineBreakMode#LEGACY} for every component.
+     */
+    public void setLineBreakModeSelector(final Function<Text, LineBreakMode> lineBreakModeSelector) {
+        this.lineBreakModeSelector = lineBreakModeSelector;
+    }
+
     public float write(final Text text, final Layout layout) {
-        final float width = layout.getWidth();
+        return write(text, layout, measure(text, layout.getWidth()));
+    }
 
-        final TextExtractorHelper helper = new TextExtractorHelper();
-        final TextExtractorHelper.TextExtractorResponse response = helper.extractTextFromComponent(text);
+    /**
+     * Ends a job once its document has been saved: logs its slowest text blocks and the fonts embedded into the
+     * document, and releases both. Must be called for every document written, as they are held until then.
+     */
+    public void completeJob(final String jobId, final PDDocument document) {
+        LOGGER.info(TextRenderMetrics.getInstance().completeJob(jobId, SLOW_BLOCK_REPORT_SIZE).toString());
 
-        final PDFont font = getFont(text.getExternalFontURI(), text.getFontId(), text.getJobId(), text.getPdDocument());
-        final PDFont boldFont = getFont(text.getExternalBoldFontURI(), text.getBoldFontId(), text.getJobId(),
-            text.getPdDocument());
-        // final PDFont iconFont = getFont("psg/fonts/sst-wcm-2015.ttf", "sst-wcm-2015", text.getJobId(), text.getPdDocument());
-        final PDFont iconFont = FontSingleton.getInstance().getFont("psg/fonts/sst-wcm-2015.ttf", "sst-wcm-2015", text.getPdDocument());
+        final FontEmbeddingManager embedding = fontEmbeddings.remove(document);
+        if (embedding != null) {
+            LOGGER.info(format("Job [%s] font embedding: %s", jobId, embedding.report()));
+        }
+    }
 
-        final List<String> lines = splitToLinesWithNewLine(response.getText(), font, text.getFontSize(), width);
-        final float heightSpacing = calculateContentHeight(font, text.getFontSize()) + text.getLineSpacing();
+    /**
+     * Paints a component whose layout was computed ahead of time, e.g. by {@link TextPreMeasurer}.
+     */
+    public float write(final Text text, final Layout layout, final PreMeasuredText measured) {
+        final float width = measured.getWidth();
         final Point textOrigin = layout.getNextLineOrigin();
 
         LOGGER.info("write 1");
@@ -135,12 +177,105 @@ public class TextWriter extends AbstractTextWriter {
             }
 
             LOGGER.info("write 9 : calling writeLinesToStream...");
-            return writeLinesToStream(lines, font, boldFont, iconFont, text.getFontSize(), textOrigin.getX(), textOrigin.getY(),
-                heightSpacing, text.getLineSpacing(), width, text.getHorizontalAlignment(),
-                response, text.getContentStream());
+            final long start = System.nanoTime();
+            final float lastPosition = writeLinesToStream(measured, text.getFontSize(), textOrigin.getX(),
+                textOrigin.getY(), text.getLineSpacing(), text.getContentStream());
+            recordPhase(text, componentId(text), RenderPhase.STREAM_WRITING, start);
+            return lastPosition;
         }
     }
 
+    /**
+     * Computes line breaks, line height and alignment shifts of a component without touching its content stream.
+     */
+    public PreMeasuredText measure(final Text text, final float width) {
+        return measure(text, width, resolveFonts(text));
+    }
+
+    PreMeasuredText measure(final Text text, final float width, final TextFonts fonts) {
+        return measure(text, width, fonts, extract(text));
+    }
+
+    /**
+     * Extracts the plain text and the sub/superscript ranges of a component. Does not touch its fonts.
+     */
+    TextExtractorHelper.TextExtractorResponse extract(final Text text) {
+        final long start = System.nanoTime();
+        final TextExtractorHelper helper = new TextExtractorHelper();
+        final TextExtractorHelper.TextExtractorResponse response = helper.extractTextFromComponent(text);
+        recordPhase(text, componentId(text), RenderPhase.EXTRACTION, start);
+        return response;
+    }
+
+    PreMeasuredText measure(final Text text, final float width, final TextFonts fonts,
+                            final TextExtractorHelper.TextExtractorResponse response) {
+        final String componentId = componentId(text);
+
+        long start = System.nanoTime();
+
+        final PDFont font = fonts.getFont();
+        final LineBreakMode lineBreakMode = lineBreakModeSelector.apply(text);
+        final LineBreaker lineBreaker = lineBreakMode.getLineBreaker();
+        final List<String> paragraph = splitToLinesWithNewLine(response.getText(), lineBreaker, font,
+            text.getFontSize(), width);
+        start = recordPhase(text, componentId, RenderPhase.LINE_SPLITTING, start);
+
+        final List<String> lines = completeSpecialTags(paragraph);
+        recordPhase(text, componentId, RenderPhase.TAG_PROCESSING, start);
+
+        final float heightSpacing = calculateContentHeight(font, text.getFontSize()) + text.getLineSpacing();
+
+        // the lines of the new breakers keep the whitespace they were broken at, so that they add up to the
+        // extracted text; it is not painted visibly, so it does not count towards alignment. Legacy lines are
+        // aligned as they always were, so that existing output does not move
+        final boolean stripBreakWhitespace = lineBreakMode != LineBreakMode.LEGACY;
+        final float[] xShifts = new float[lines.size()];
+        IntStream.range(0, lines.size())
+            .forEach(idx -> xShifts[idx] = getXAlignmentShift(stripBreakWhitespace
+                    ? StringUtils.stripEnd(lines.get(idx), null) : lines.get(idx), font, text.getFontSize(), width,
+                text.getHorizontalAlignment()));
+
+        return new PreMeasuredText(fonts, response, lines, xShifts, width, heightSpacing);
+    }
+
+    TextFonts resolveFonts(final Text text) {
+        final FontEmbeddingManager embedding = fontEmbeddings.computeIfAbsent(text.getPdDocument(),
+            FontEmbeddingManager::new);
+        final PDFont font = resolveFont(text.getExternalFontURI(), text.getFontId(), text, embedding);
+        final PDFont boldFont = resolveFont(text.getExternalBoldFontURI(), text.getBoldFontId(), text, embedding);
+        final PDFont iconFont = embedding.getFont(ICON_FONT_URI, ICON_FONT_ID);
+
+        return new TextFonts(font, boldFont, iconFont, embedding);
+    }
+
+    /**
+     * External fonts are embedded once per document as a subset; without an external font the writer defaults apply.
+     */
+    private PDFont resolveFont(final String fontUri, final String fontId, final Text text,
+                               final FontEmbeddingManager embedding) {
+        if (StringUtils.isBlank(fontUri)) {
+            return getFont(fontUri, fontId, text.getJobId(), text.getPdDocument());
+        }
+        return embedding.getFont(fontUri, fontId);
+    }
+
+    /**
+     * Template components are identified by the raw value of their first section, which is the same for every
+     * data row rendered from that block.
+     */
+    private String componentId(final Text text) {
+        if (text.getSection() == null || text.getSection().isEmpty()) {
+            return TextRenderMetrics.componentId(null);
+        }
+        return TextRenderMetrics.componentId(text.getSection().get(0).getValue());
+    }
+
+    private long recordPhase(final Text text, final String componentId, final RenderPhase phase, final long start) {
+        final long end = System.nanoTime();
+        TextRenderMetrics.getInstance().record(text.getJobId(), componentId, phase, end - start);
+        return end;
+    }
+
     private PageNumberLinkData createPageNumberLinkData(final Point origin, final PDPage pdPage, final float width,
                                                         final String textValue, final String referenceValue) {
         final PageNumberLinkData pageNumberLinkData = new PageNumberLinkData();
@@ -152,16 +287,16 @@ public class TextWriter extends AbstractTextWriter {
         return pageNumberLinkData;
     }
 
-    private float writeLinesToStream(final List<String> lines, final PDFont font, final PDFont boldFont, final PDFont iconFont,
-                                     final float fontSize, final float tx,
-                                     final float ty, final float heightSpacing, final float lineSpacing, final float width,
-                                     final HAlign horizontalAlignment, final TextExtractorHelper.TextExtractorResponse response,
-                                     final PDPageContentStream contentStream) {
+    private float writeLinesToStream(final PreMeasuredText measured, final float fontSize, final float tx,
+                                     final float ty, final float lineSpacing, final PDPageContentStream contentStream) {
         LOGGER.info("writeLinesToStream...");
+        final List<String> lines = measured.getLines();
+        final TextFonts fonts = measured.getFonts();
+        final float heightSpacing = measured.getHeightSpacing();
+
         final int[] fromInclusiveIndex = {0};
         final int[] toExclusiveIndex = {0};
 
-        final float[] x_shift = {0f};
         final float[] y_lastPosition = {0f};
 
         IntStream.range(0, lines.size())
@@ -169,13 +304,11 @@ public class TextWriter extends AbstractTextWriter {
 
                 toExclusiveIndex[0] = fromInclusiveIndex[0] + lines.get(idx).length();
 
-                x_shift[0] = getXAlignmentShift(lines.get(idx), font, fontSize, width,
-                    horizontalAlignment);
-
                 y_lastPosition[0] = ty - (heightSpacing * (idx + 1) - lineSpacing);
-                writeLineToStream(lines.get(idx), font, boldFont, iconFont, fontSize, tx + x_shift[0], y_lastPosition[0],
-                    fromInclusiveIndex[0], toExclusiveIndex[0], response,
-                    contentStream);
+                writeLineToStream(lines.get(idx), fonts.getFont(), fonts.getBoldFont(), fonts.getIconFont(), fontSize,
+                    tx + measured.getXShift(idx), y_lastPosition[0],
+                    fromInclusiveIndex[0], toExclusiveIndex[0], measured.getResponse(),
+                    contentStream, fonts.getEmbedding());
 
                 fromInclusiveIndex[0] = toExclusiveIndex[0];
 
@@ -186,23 +319,25 @@ public class TextWriter extends AbstractTextWriter {
 
     private void writeLineToStream(final String line, final PDFont font, final PDFont boldFont, final PDFont iconFont, final float fontSize,
                                    final float ttx, final float tty, final int fromInclusiveIndex, final int toExclusiveIndex,
-                                   final TextExtractorHelper.TextExtractorResponse response, final PDPageContentStream contentStream) {
+                                   final TextExtractorHelper.TextExtractorResponse response, final PDPageContentStream contentStream,
+                                   final FontEmbeddingManager embedding) {
         LOGGER.info("writeLineToStream...");
         if (isComposedText(line)) {
             LOGGER.info("writeLineToStream...1");
-            writeComposedLineToStream(line, font, boldFont, iconFont, fontSize, ttx, tty, contentStream);
+            writeComposedLineToStream(line, font, boldFont, iconFont, fontSize, ttx, tty, contentStream, embedding);
 
         } else {
             LOGGER.info("writeLineToStream...2");
             writeSimpleLineToStream(line, font, fontSize, ttx, tty, fromInclusiveIndex, toExclusiveIndex, response,
-                contentStream);
+                contentStream, embedding);
         }
 
     }
 
     private void writeComposedLineToStream(final String line, final PDFont font, final PDFont boldFont, final PDFont iconFont,
                                            final float fontSize, final float ttx,
-                                           final float tty, final PDPageContentStream contentStream) {
+                                           final float tty, final PDPageContentStream contentStream,
+                                           final FontEmbeddingManager embedding) {
        LOGGER.info("writeComposedLineToStream...");
         final List<String[]> lineGroups = groupTextLine(line);
         final float[] x_shift = {ttx};
@@ -211,24 +346,24 @@ public class TextWriter extends AbstractTextWriter {
 
             if (group[1].equals(NORMAL.value())) {
 
-                x_shift[0] += writePartialLine(group[0], font, fontSize, x_shift[0], tty, contentStream, null);
+                x_shift[0] += writeTrackedPartialLine(group[0], font, fontSize, x_shift[0], tty, contentStream, null, embedding);
 
             } else if (group[1].equals(BOLD.value())) {
 
-                x_shift[0] += writePartialLine(group[0], boldFont, fontSize, x_shift[0], tty, contentStream, null);
+                x_shift[0] += writeTrackedPartialLine(group[0], boldFont, fontSize, x_shift[0], tty, contentStream, null, embedding);
 
             } else if (group[1].equals(SUBSCRIPT.value())) {
 
-                x_shift[0] += writePartialLine(group[0], font, fontSize / 2.4f, x_shift[0], tty, contentStream, null);
+                x_shift[0] += writeTrackedPartialLine(group[0], font, fontSize / 2.4f, x_shift[0], tty, contentStream, null, embedding);
 
             } else if (group[1].equals(SUPERSCRIPT.value())) {
 
-                x_shift[0] += writePartialLine(group[0], font, fontSize / 2.2f, x_shift[0],
-                    tty + (this.calculateContentHeight(font, fontSize) / 2.0f), contentStream, null);
+                x_shift[0] += writeTrackedPartialLine(group[0], font, fontSize / 2.2f, x_shift[0],
+                    tty + (this.calculateContentHeight(font, fontSize) / 2.0f), contentStream, null, embedding);
 
             } else if (group[1].equals(ICON.value())) {
 
-                x_shift[0] += writePartialLine(group[0], iconFont, fontSize + 2, x_shift[0], tty, contentStream, new Color(230, 99, 58));
+                x_shift[0] += writeTrackedPartialLine(group[0], iconFont, fontSize + 2, x_shift[0], tty, contentStream, new Color(230, 99, 58), embedding);
             }
 
         });
@@ -237,7 +372,8 @@ public class TextWriter extends AbstractTextWriter {
 
     private void writeSimpleLineToStream(final String line, final PDFont font, final float fontSize, final float ttx,
                                          final float tty, final int fromInclusiveIndex, final int toExclusiveIndex,
-                                         final TextExtractorHelper.TextExtractorResponse response, final PDPageContentStream contentStream) {
+                                         final TextExtractorHelper.TextExtractorResponse response, final PDPageContentStream contentStream,
+                                         final FontEmbeddingManager embedding) {
         LOGGER.info("Calculating text to write in line...");
         final List<int[]> superScriptIntervals = getIntervalsWithinRange(fromInclusiveIndex, toExclusiveIndex,
             response.getSuperScriptRanges());
@@ -263,16 +399,23 @@ public class TextWriter extends AbstractTextWriter {
             LOGGER.info("partialText..." + partialText);
 
             if (superScriptIntervals.contains(interval)) {
-                x_shift[0] += writePartialLine(partialText, font, fontSize / 2.2f, x_shift[0],
-                    tty + (this.calculateContentHeight(font, fontSize) / 2.0f), contentStream, null);
+                x_shift[0] += writeTrackedPartialLine(partialText, font, fontSize / 2.2f, x_shift[0],
+                    tty + (this.calculateContentHeight(font, fontSize) / 2.0f), contentStream, null, embedding);
             } else if (subScriptIntervals.contains(interval)) {
-                x_shift[0] += writePartialLine(partialText, font, fontSize / 2.4f, x_shift[0], tty, contentStream, null);
+                x_shift[0] += writeTrackedPartialLine(partialText, font, fontSize / 2.4f, x_shift[0], tty, contentStream, null, embedding);
             } else {
-                x_shift[0] += writePartialLine(partialText, font, fontSize, x_shift[0], tty, contentStream, null);
+                x_shift[0] += writeTrackedPartialLine(partialText, font, fontSize, x_shift[0], tty, contentStream, null, embedding);
             }
         });
     }
 
+    private float writeTrackedPartialLine(final String partialText, final PDFont font, final float fontSize,
+                                          final float x, final float y, final PDPageContentStream contentStream,
+                                          final Color color, final FontEmbeddingManager embedding) {
+        embedding.recordGlyphs(font, partialText);
+        return writePartialLine(partialText, font, fontSize, x, y, contentStream, color);
+    }
+
     private boolean isComposedText(final String txt) {
 
         return StringUtils.containsAny(txt, INTERNAL_END_TAGS);
@@ -458,19 +601,19 @@ public class TextWriter extends AbstractTextWriter {
 
     }
 
-    private List<String> splitToLinesWithNewLine(final String text, final PDFont font, final float fontSize,
-                                                 final float width) {
+    private List<String> splitToLinesWithNewLine(final String text, final LineBreaker lineBreaker, final PDFont font,
+                                                 final float fontSize, final float width) {
 
-        final String[] splitText = text.split("\\r?\\n");
+        final String[] splitText = NEW_LINE_PATTERN.split(text);
         final List<String> paragraph = Lists.newArrayList();
 
         IntStream.range(0, splitText.length).forEach(idx -> {
 
-            final List<String> line = TextWriterUtils.splitToLines(splitText[idx], font, fontSize, width);
+            final List<String> line = lineBreaker.splitToLines(splitText[idx], font, fontSize, width);
             paragraph.addAll(line);
         });
 
-        return completeSpecialTags(paragraph);
+        return paragraph;
     }
 
     private List<String> completeSpecialTags(final List<String> paragraph){
@@ -0,0 +1,44 @@
+package com.todomvc.duel.benchmarks;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Synthetic view data shaped like {@code todos.model.viewData()}.
+ */
+final class TaskData {
+
+	private TaskData() {
+	}
+
+	/**
+	 * Builds the view data of a list where every third task is completed.
+	 */
+	static Map<String, Object> viewData(int items) {
+		List<Object> tasks = new ArrayList<Object>(items);
+		int completed = 0;
+		for (int i = 0; i < items; i++) {
+			Map<String, Object> task = new LinkedHashMap<String, Object>();
+			task.put("id", Long.toString(1400000000000L + i, 36));
+			task.put("title", "Task <" + i + "> & some \"escaped\" text");
+			task.put("completed", i % 3 == 0);
+			tasks.add(task);
+			if (i % 3 == 0) {
+				completed++;
+			}
+		}
+
+		Map<String, Object> stats = new LinkedHashMap<String, Object>();
+		stats.put("total", items);
+		stats.put("completed", completed);
+		stats.put("active", items - completed);
+		stats.put("filter", "");
+
+		Map<String, Object> data = new LinkedHashMap<String, Object>();
+		data.put("tasks", tasks);
+		data.put("stats", stats);
+		return data;
+	}
+}
@@ -0,0 +1,110 @@
+package com.todomvc.duel.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.todomvc.duel.web.ChunkedWriter;
+import com.todomvc.duel.web.ViewRenderer;
+
+/**
+ * Throughput of the compiled server-side views, rendering into a response buffered in memory
+ * (as the render cache does) or streamed through a {@link ChunkedWriter} (as {@code /stream/*} does).
+ *
+ * The {@code bytes} counter is reported per second next to ops/s, so bytes/op is their ratio.
+ * Run with {@code -prof gc} for the allocation rate ({@code gc.alloc.rate.norm} is bytes allocated per op).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ViewRenderBenchmark {
+
+	public enum WriterMode {
+		BUFFERED,
+		STREAMING
+	}
+
+	@Param({ "HomePage", "TodoApp", "Tasks", "Stats" })
+	public String view;
+
+	@Param({ "10", "100", "1000", "10000", "50000" })
+	public int items;
+
+	@Param({ "BUFFERED", "STREAMING" })
+	public WriterMode writer;
+
+	@Param({ "8192" })
+	public int chunkSize;
+
+	private final ViewRenderer renderer = new ViewRenderer("com.todomvc.duel.views",
+		ViewRenderBenchmark.class.getClassLoader());
+
+	private Object data;
+
+	/**
+	 * Response body sink which counts and discards the bytes.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Output extends OutputStream {
+
+		public long bytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			bytes = 0;
+		}
+
+		@Override
+		public void write(int b) {
+			bytes++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			bytes += len;
+		}
+	}
+
+	@Setup
+	@SuppressWarnings("unchecked")
+	public void setUp() {
+		Map<String, Object> viewData = TaskData.viewData(items);
+		data = "Stats".equals(view) ? (Map<String, Object>)viewData.get("stats") : viewData;
+	}
+
+	@Benchmark
+	public void render(Output output) throws IOException {
+		if (writer == WriterMode.BUFFERED) {
+			StringBuilder buffer = new StringBuilder(8192);
+			renderer.render(view, data, null, buffer);
+			output.write(buffer.toString().getBytes(StandardCharsets.UTF_8));
+
+		} else {
+			Writer out = new ChunkedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), chunkSize);
+			renderer.render(view, data, null, out);
+			out.flush();
+		}
+	}
+}
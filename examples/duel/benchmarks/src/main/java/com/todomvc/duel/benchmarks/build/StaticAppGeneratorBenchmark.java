@@ -0,0 +1,128 @@
+package com.todomvc.duel.benchmarks.build;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.todomvc.duel.build.StaticAppGenerator;
+import com.todomvc.duel.web.StaticAppConfig;
+
+/**
+ * Time to generate a static app of many pages with different worker pool sizes. Every page is rendered
+ * on each run, as the generator is not incremental here.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StaticAppGeneratorBenchmark {
+
+	@Param({ "10000" })
+	public int pages;
+
+	@Param({ "10" })
+	public int items;
+
+	@Param({ "1", "2", "4", "8" })
+	public int threads;
+
+	private File baseDir;
+	private StaticAppGenerator generator;
+
+	@Setup
+	public void setUp() throws IOException {
+		baseDir = Files.createTempDirectory("staticapp-bench").toFile();
+
+		Map<String, Object> views = new LinkedHashMap<String, Object>();
+		for (int i = 0; i < pages; i++) {
+			Map<String, Object> route = new LinkedHashMap<String, Object>();
+			route.put("view", "HomePage");
+			route.put("data", viewData(i, items));
+			views.put("page" + i + "/index.html", route);
+		}
+
+		Map<String, Object> config = new LinkedHashMap<String, Object>();
+		config.put("targetDir", "www/");
+		config.put("sourceDir", "src/");
+		config.put("serverPrefix", "com.todomvc.duel.views");
+		config.put("isDevMode", true);
+		config.put("views", views);
+
+		File configFile = new File(baseDir, "staticapp.json");
+		new ObjectMapper().writeValue(configFile, config);
+
+		generator = new StaticAppGenerator(baseDir, StaticAppConfig.load(configFile), new File(baseDir, "views"),
+			new File(baseDir, "webapp"), new File(baseDir, "state.properties"), false);
+		generator.setThreads(threads);
+	}
+
+	@Benchmark
+	public StaticAppGenerator.Summary generate() throws IOException {
+		return generator.generate();
+	}
+
+	/**
+	 * Builds the data of a page, a list where every third task is completed.
+	 */
+	private static Map<String, Object> viewData(int page, int items) {
+		List<Object> tasks = new ArrayList<Object>(items);
+		int completed = 0;
+		for (int i = 0; i < items; i++) {
+			Map<String, Object> task = new LinkedHashMap<String, Object>();
+			task.put("id", page + "-" + i);
+			task.put("title", "Task " + i + " of page " + page);
+			task.put("completed", i % 3 == 0);
+			tasks.add(task);
+			if (i % 3 == 0) {
+				completed++;
+			}
+		}
+
+		Map<String, Object> stats = new LinkedHashMap<String, Object>();
+		stats.put("total", items);
+		stats.put("completed", completed);
+		stats.put("active", items - completed);
+		stats.put("filter", "");
+
+		Map<String, Object> data = new LinkedHashMap<String, Object>();
+		data.put("tasks", tasks);
+		data.put("stats", stats);
+		return data;
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		delete(baseDir);
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
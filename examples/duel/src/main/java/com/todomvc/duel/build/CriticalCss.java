@@ -0,0 +1,209 @@
+package com.todomvc.duel.build;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts the rules of a stylesheet which can apply to a given markup.
+ *
+ * Matching is conservative: pseudo-classes, pseudo-elements and attribute selectors are ignored,
+ * so a selector is kept when each of its compound selectors names only tags, classes and ids
+ * present in the markup. Rules inside {@code @media} and {@code @supports} are filtered the same way,
+ * other at-rules such as {@code @font-face} and {@code @keyframes} are left to the full stylesheet.
+ */
+class CriticalCss {
+
+	private static final Pattern COMMENT = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
+	private static final Pattern TAG = Pattern.compile("<([a-zA-Z][a-zA-Z0-9-]*)");
+	private static final Pattern CLASS_ATTR = Pattern.compile("\\sclass\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)')");
+	private static final Pattern ID_ATTR = Pattern.compile("\\sid\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)')");
+
+	private static final Pattern PSEUDO = Pattern.compile("::?[a-zA-Z-]+(?:\\([^)]*\\))?");
+	private static final Pattern ATTRIBUTE = Pattern.compile("\\[[^\\]]*\\]");
+	private static final Pattern COMBINATOR = Pattern.compile("\\s*[>+~]\\s*|\\s+");
+	private static final Pattern COMPOUND = Pattern.compile("^([a-zA-Z][a-zA-Z0-9-]*|\\*)?((?:[.#][\\w-]+)*)$");
+	private static final Pattern CLASS_OR_ID = Pattern.compile("([.#])([\\w-]+)");
+
+	private final Set<String> tags = new HashSet<String>();
+	private final Set<String> classes = new HashSet<String>();
+	private final Set<String> ids = new HashSet<String>();
+
+	/**
+	 * @param markup the markup which must be styled on first paint
+	 */
+	CriticalCss(CharSequence markup) {
+		Matcher tag = TAG.matcher(markup);
+		while (tag.find()) {
+			tags.add(tag.group(1).toLowerCase());
+		}
+		collect(CLASS_ATTR.matcher(markup), classes);
+		collect(ID_ATTR.matcher(markup), ids);
+	}
+
+	private static void collect(Matcher attr, Set<String> names) {
+		while (attr.find()) {
+			String value = attr.group(1) != null ? attr.group(1) : attr.group(2);
+			for (String name : value.trim().split("\\s+")) {
+				if (!name.isEmpty()) {
+					names.add(name);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the rules of the stylesheet which may apply to the markup.
+	 */
+	String extract(String css) {
+		StringBuilder critical = new StringBuilder();
+		extract(COMMENT.matcher(css).replaceAll(""), critical);
+		return critical.toString();
+	}
+
+	private void extract(String css, StringBuilder critical) {
+		int pos = 0;
+		int length = css.length();
+		while (pos < length) {
+			int open = indexOf(css, '{', pos);
+			int semi = indexOf(css, ';', pos);
+			if (open < 0) {
+				break;
+			}
+			if (semi >= 0 && semi < open) {
+				// statement at-rule such as @charset or @import
+				pos = semi + 1;
+				continue;
+			}
+
+			int close = matchingBrace(css, open);
+			String prelude = css.substring(pos, open).trim();
+			String body = css.substring(open + 1, close);
+			pos = close + 1;
+
+			if (prelude.startsWith("@")) {
+				if (prelude.startsWith("@media") || prelude.startsWith("@supports")) {
+					StringBuilder nested = new StringBuilder();
+					extract(body, nested);
+					if (nested.length() > 0) {
+						critical.append(prelude).append('{').append(nested).append('}');
+					}
+				}
+				continue;
+			}
+
+			List<String> selectors = new ArrayList<String>();
+			for (String selector : splitSelectors(prelude)) {
+				if (matches(selector)) {
+					selectors.add(selector);
+				}
+			}
+			if (!selectors.isEmpty()) {
+				for (int i = 0; i < selectors.size(); i++) {
+					if (i > 0) {
+						critical.append(',');
+					}
+					critical.append(selectors.get(i));
+				}
+				critical.append('{').append(body.trim()).append('}');
+			}
+		}
+	}
+
+	boolean matches(String selector) {
+		String simplified = ATTRIBUTE.matcher(PSEUDO.matcher(selector).replaceAll("")).replaceAll("").trim();
+		if (simplified.isEmpty()) {
+			// only pseudo or attribute selectors, e.g. ':root'
+			return true;
+		}
+
+		for (String compound : COMBINATOR.split(simplified)) {
+			if (compound.isEmpty()) {
+				continue;
+			}
+			Matcher parts = COMPOUND.matcher(compound);
+			if (!parts.matches()) {
+				// unsupported syntax, keep the rule rather than risk a flash of unstyled content
+				return true;
+			}
+			String tag = parts.group(1);
+			if (tag != null && !"*".equals(tag) && !tags.contains(tag.toLowerCase())) {
+				return false;
+			}
+			Matcher classOrId = CLASS_OR_ID.matcher(parts.group(2));
+			while (classOrId.find()) {
+				Set<String> names = ".".equals(classOrId.group(1)) ? classes : ids;
+				if (!names.contains(classOrId.group(2))) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static List<String> splitSelectors(String prelude) {
+		List<String> selectors = new ArrayList<String>();
+		int depth = 0;
+		int start = 0;
+		for (int i = 0; i < prelude.length(); i++) {
+			char ch = prelude.charAt(i);
+			if (ch == '(' || ch == '[') {
+				depth++;
+			} else if (ch == ')' || ch == ']') {
+				depth--;
+			} else if (ch == ',' && depth == 0) {
+				selectors.add(prelude.substring(start, i).trim());
+				start = i + 1;
+			}
+		}
+		selectors.add(prelude.substring(start).trim());
+		return selectors;
+	}
+
+	/**
+	 * Index of the character outside of quoted strings, or -1.
+	 */
+	private static int indexOf(String css, char target, int from) {
+		char quote = 0;
+		for (int i = from; i < css.length(); i++) {
+			char ch = css.charAt(i);
+			if (quote != 0) {
+				if (ch == '\\') {
+					i++;
+				} else if (ch == quote) {
+					quote = 0;
+				}
+			} else if (ch == '"' || ch == '\'') {
+				quote = ch;
+			} else if (ch == target) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int matchingBrace(String css, int open) {
+		int depth = 0;
+		int pos = open;
+		while (true) {
+			int next = indexOf(css, '{', pos);
+			int close = indexOf(css, '}', pos);
+			if (close < 0) {
+				return css.length() - 1;
+			}
+			if (next >= 0 && next < close) {
+				depth++;
+				pos = next + 1;
+			} else {
+				depth--;
+				pos = close + 1;
+				if (depth == 0) {
+					return close;
+				}
+			}
+		}
+	}
+}
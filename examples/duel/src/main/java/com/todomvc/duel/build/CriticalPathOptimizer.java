@@ -0,0 +1,221 @@
+package com.todomvc.duel.build;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.todomvc.duel.web.StaticAppConfig;
+import com.todomvc.duel.web.ViewRenderer;
+
+/**
+ * Build step which takes stylesheets and scripts of the static app pages off the critical rendering path:
+ * <ul>
+ * <li>the CSS rules used by the page and by the client-rendered critical views (e.g. {@code TodoApp})
+ *     are inlined into a {@code <style>} element, with relative {@code url(...)} references rebased from
+ *     the stylesheet to the page</li>
+ * <li>the full stylesheet is preloaded and applied once loaded, with a {@code <noscript>} fallback</li>
+ * <li>scripts are marked {@code defer} and preloaded from the head</li>
+ * </ul>
+ * Pages which were already optimized, e.g. skipped by an incremental build, are left as they are.
+ *
+ * Usage: {@code CriticalPathOptimizer <baseDir> <config> [<criticalView>...]}
+ */
+public class CriticalPathOptimizer {
+
+	private static final String CRITICAL_STYLE = "<style data-critical>";
+	private static final Pattern STYLESHEET = Pattern.compile("<link\\b[^>]*\\brel=[\"']stylesheet[\"'][^>]*>");
+	private static final Pattern SCRIPT = Pattern.compile("<script\\b([^>]*)>\\s*</script>");
+	private static final Pattern HREF = Pattern.compile("\\bhref=[\"']([^\"']+)[\"']");
+	private static final Pattern SRC = Pattern.compile("\\bsrc=[\"']([^\"']+)[\"']");
+	private static final Pattern CSS_URL = Pattern.compile("url\\(\\s*(['\"]?)([^'\")]+)\\1\\s*\\)");
+	private static final Pattern DEFERRED = Pattern.compile("\\b(?:defer|async)\\b|\\btype=[\"']module[\"']");
+
+	private final File targetDir;
+	private final String criticalMarkup;
+	private final Map<File, String> stylesheets = new HashMap<File, String>();
+	private int pages;
+	private long inlinedBytes;
+	private long stylesheetBytes;
+
+	/**
+	 * @param targetDir the static app output
+	 * @param criticalMarkup markup rendered on the client before first paint, may be empty
+	 */
+	public CriticalPathOptimizer(File targetDir, String criticalMarkup) {
+		this.targetDir = targetDir;
+		this.criticalMarkup = criticalMarkup;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			throw new IllegalArgumentException("Usage: CriticalPathOptimizer <baseDir> <config> [<criticalView>...]");
+		}
+
+		StaticAppConfig config = StaticAppConfig.load(new File(args[1]));
+		ViewRenderer renderer = new ViewRenderer(config.getServerPrefix(), CriticalPathOptimizer.class.getClassLoader());
+
+		// empty data renders the app shell the client shows first
+		StringBuilder criticalMarkup = new StringBuilder();
+		for (int i = 2; i < args.length; i++) {
+			renderer.render(args[i], new HashMap<String, Object>(), null, criticalMarkup);
+		}
+
+		CriticalPathOptimizer optimizer = new CriticalPathOptimizer(
+			new File(args[0], config.getTargetDir()), criticalMarkup.toString());
+		optimizer.optimize();
+
+		System.out.println("Critical path: optimized " + optimizer.pages + " pages, inlined "
+			+ optimizer.inlinedBytes + " of " + optimizer.stylesheetBytes + " stylesheet bytes");
+	}
+
+	public void optimize() throws IOException {
+		if (!targetDir.isDirectory()) {
+			return;
+		}
+
+		Files.walkFileTree(targetDir.toPath(), new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				if (file.getFileName().toString().endsWith(".html")) {
+					String page = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+					String optimized = optimize(page, file.toFile().getParentFile());
+					if (!optimized.equals(page)) {
+						Files.write(file, optimized.getBytes(StandardCharsets.UTF_8));
+						pages++;
+					}
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	String optimize(String page, File pageDir) throws IOException {
+		if (page.contains(CRITICAL_STYLE)) {
+			return page;
+		}
+
+		CriticalCss criticalCss = new CriticalCss(page + criticalMarkup);
+		StringBuffer output = new StringBuffer(page.length());
+
+		Matcher link = STYLESHEET.matcher(page);
+		while (link.find()) {
+			Matcher href = HREF.matcher(link.group());
+			File stylesheet = href.find() ? resolve(href.group(1), pageDir) : null;
+			if (stylesheet == null) {
+				link.appendReplacement(output, Matcher.quoteReplacement(link.group()));
+				continue;
+			}
+
+			String url = href.group(1);
+			String css = readStylesheet(stylesheet);
+			String critical = rebaseUrls(criticalCss.extract(css), url);
+			inlinedBytes += critical.length();
+			stylesheetBytes += css.length();
+
+			link.appendReplacement(output, Matcher.quoteReplacement(CRITICAL_STYLE + critical + "</style>\n"
+				+ "\t<link rel=\"preload\" href=\"" + url + "\" as=\"style\" onload=\"this.onload=null;this.rel='stylesheet'\">\n"
+				+ "\t<noscript><link rel=\"stylesheet\" href=\"" + url + "\"></noscript>"));
+		}
+		link.appendTail(output);
+
+		List<String> preloads = new ArrayList<String>();
+		Matcher script = SCRIPT.matcher(output.toString());
+		output = new StringBuffer(output.length());
+		while (script.find()) {
+			String attrs = script.group(1);
+			Matcher src = SRC.matcher(attrs);
+			if (!src.find() || DEFERRED.matcher(attrs).find()) {
+				script.appendReplacement(output, Matcher.quoteReplacement(script.group()));
+				continue;
+			}
+
+			preloads.add("<link rel=\"preload\" href=\"" + src.group(1) + "\" as=\"script\">");
+			script.appendReplacement(output, Matcher.quoteReplacement("<script" + attrs + " defer></script>"));
+		}
+		script.appendTail(output);
+
+		int head = output.indexOf("</head>");
+		if (head >= 0 && !preloads.isEmpty()) {
+			StringBuilder hints = new StringBuilder();
+			for (String preload : preloads) {
+				hints.append('\t').append(preload).append('\n');
+			}
+			output.insert(head, hints);
+		}
+		return output.toString();
+	}
+
+	/**
+	 * Rewrites the relative {@code url(...)} references of a stylesheet so that they resolve the same
+	 * from the page it is inlined into, e.g. {@code url(fonts/a.woff)} of {@code cdn/app.css} becomes
+	 * {@code url(cdn/fonts/a.woff)}. Absolute, root-relative, fragment and data URLs are kept.
+	 *
+	 * @param stylesheetUrl the stylesheet URL as linked from the page
+	 */
+	static String rebaseUrls(String css, String stylesheetUrl) {
+		int query = stylesheetUrl.indexOf('?');
+		URI base;
+		try {
+			base = new URI(query < 0 ? stylesheetUrl : stylesheetUrl.substring(0, query));
+		} catch (URISyntaxException ex) {
+			return css;
+		}
+
+		StringBuffer output = new StringBuffer(css.length());
+		Matcher url = CSS_URL.matcher(css);
+		while (url.find()) {
+			String reference = url.group(2).trim();
+			String rebased = reference;
+			if (!isAbsolute(reference) && !reference.startsWith("#")) {
+				try {
+					rebased = base.resolve(new URI(reference)).toString();
+				} catch (URISyntaxException ex) {
+					// left as it is, the browser would not load it either
+				}
+			}
+			url.appendReplacement(output, Matcher.quoteReplacement("url(" + url.group(1) + rebased + url.group(1) + ")"));
+		}
+		url.appendTail(output);
+		return output.toString();
+	}
+
+	private static boolean isAbsolute(String url) {
+		return url.startsWith("/") || url.matches("^[a-zA-Z][a-zA-Z0-9+.-]*:.*");
+	}
+
+	/**
+	 * Resolves a stylesheet URL to its file in the output, or null for external or missing files.
+	 */
+	private File resolve(String url, File pageDir) {
+		if (url.startsWith("//") || url.matches("^[a-zA-Z][a-zA-Z0-9+.-]*:.*")) {
+			return null;
+		}
+
+		int query = url.indexOf('?');
+		String path = query < 0 ? url : url.substring(0, query);
+		File file = path.startsWith("/") ? new File(targetDir, path.substring(1)) : new File(pageDir, path);
+		return file.isFile() ? file : null;
+	}
+
+	private String readStylesheet(File file) throws IOException {
+		String css = stylesheets.get(file);
+		if (css == null) {
+			css = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+			stylesheets.put(file, css);
+		}
+		return css;
+	}
+}
@@ -0,0 +1,83 @@
+package com.todomvc.duel.build;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+
+/**
+ * Build step which writes {@code .gz} and {@code .br} siblings for every HTML, JS and CSS file
+ * of the static app output, so that they can be served without compressing on the fly.
+ * A variant is only kept when it is smaller than the original.
+ *
+ * Usage: {@code PrecompressAssets <dir>...}
+ */
+public class PrecompressAssets {
+
+	private static final String[] EXTENSIONS = { ".html", ".js", ".css" };
+
+	public static void main(String[] args) throws IOException {
+		Brotli4jLoader.ensureAvailability();
+
+		final Encoder.Parameters brotli = new Encoder.Parameters().setQuality(11);
+		for (String dir : args) {
+			Path root = Paths.get(dir);
+			if (!Files.isDirectory(root)) {
+				continue;
+			}
+
+			Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+					if (isCompressible(file)) {
+						byte[] source = Files.readAllBytes(file);
+						write(file, ".gz", gzip(source), source.length);
+						write(file, ".br", Encoder.compress(source, brotli), source.length);
+					}
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		}
+	}
+
+	static boolean isCompressible(Path file) {
+		String name = file.getFileName().toString();
+		for (String ext : EXTENSIONS) {
+			if (name.endsWith(ext)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void write(Path source, String suffix, byte[] compressed, int sourceLength) throws IOException {
+		Path target = source.resolveSibling(source.getFileName() + suffix);
+		if (compressed.length < sourceLength) {
+			Files.write(target, compressed);
+		} else {
+			Files.deleteIfExists(target);
+		}
+	}
+
+	private static byte[] gzip(byte[] source) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(source.length);
+		try (OutputStream out = new GZIPOutputStream(buffer) {
+			{
+				def.setLevel(Deflater.BEST_COMPRESSION);
+			}
+		}) {
+			out.write(source);
+		}
+		return buffer.toByteArray();
+	}
+}
@@ -0,0 +1,505 @@
+package com.todomvc.duel.build;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import com.todomvc.duel.web.Hashes;
+import com.todomvc.duel.web.StaticAppConfig;
+import com.todomvc.duel.web.ViewRenderer;
+
+/**
+ * Generates the static app described by {@code staticapp.json} from the compiled server-side views,
+ * rewriting merge file links to their CDN files.
+ *
+ * In incremental mode the content hashes of every input of a route are recorded in a state file:
+ * the view sources it calls and their compiled classes, the merge manifests they link to, the files
+ * listed in those manifests, and the route data. Only routes whose inputs changed are rendered again. Static files are copied
+ * only when their content changed, and CDN files, which are named by their content hash, only when
+ * missing, so unchanged bundles keep their previous CDN names.
+ *
+ * Routes are rendered concurrently on a pool of {@code --threads} workers (default: one per CPU).
+ * Each output is written to a temporary file and moved into place atomically, and a manifest of
+ * every route with the hash and size of its output is written in route order, so it is identical
+ * across runs and pool sizes for identical inputs.
+ *
+ * Static and CDN files are copied from the {@code sourceDir} of the config, the exploded webapp, so
+ * the build runs this after {@code war:exploded}.
+ *
+ * Usage: {@code StaticAppGenerator <baseDir> <config> <viewsDir> <webappDir> <stateFile>
+ * [--incremental | --full] [--threads <n>] [--manifest <file>]}
+ */
+public class StaticAppGenerator {
+
+	private static final Pattern MERGE_LINK = Pattern.compile("(?:href|src)=\"([^\"]+\\.merge)\"");
+
+	/**
+	 * Outcome of a run.
+	 */
+	public static class Summary {
+
+		private int rendered;
+		private int skipped;
+		private int copied;
+
+		public int getRendered() {
+			return rendered;
+		}
+
+		public int getSkipped() {
+			return skipped;
+		}
+
+		public int getCopied() {
+			return copied;
+		}
+
+		@Override
+		public String toString() {
+			return "rendered " + rendered + " views, skipped " + skipped + " unchanged, copied " + copied + " files";
+		}
+	}
+
+	private final File baseDir;
+	private final StaticAppConfig config;
+	private final ViewGraph viewGraph;
+	private final File webappDir;
+	private final File stateFile;
+	private final boolean incremental;
+	private final ViewRenderer renderer;
+	private final Properties cdnLinks;
+	private final ConcurrentMap<File, String> fileHashes = new ConcurrentHashMap<File, String>();
+	private final ConcurrentMap<String, String> classHashes = new ConcurrentHashMap<String, String>();
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private File manifestFile;
+
+	public StaticAppGenerator(File baseDir, StaticAppConfig config, File viewsDir, File webappDir,
+			File stateFile, boolean incremental) throws IOException {
+
+		this.baseDir = baseDir;
+		this.config = config;
+		this.viewGraph = new ViewGraph(viewsDir);
+		this.webappDir = webappDir;
+		this.stateFile = stateFile;
+		this.incremental = incremental;
+		this.renderer = new ViewRenderer(config.getServerPrefix(), StaticAppGenerator.class.getClassLoader());
+		this.cdnLinks = loadCdnLinks(config.getCdnMap());
+		this.manifestFile = new File(stateFile.getParentFile(), "staticapp-manifest.json");
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 5) {
+			throw new IllegalArgumentException("Usage: StaticAppGenerator <baseDir> <config> <viewsDir> <webappDir>"
+				+ " <stateFile> [--incremental | --full] [--threads <n>] [--manifest <file>]");
+		}
+
+		boolean incremental = false;
+		Integer threads = null;
+		File manifest = null;
+		for (int i = 5; i < args.length; i++) {
+			if ("--incremental".equals(args[i])) {
+				incremental = true;
+			} else if ("--full".equals(args[i])) {
+				incremental = false;
+			} else if ("--threads".equals(args[i]) && i + 1 < args.length) {
+				threads = Integer.valueOf(args[++i]);
+			} else if ("--manifest".equals(args[i]) && i + 1 < args.length) {
+				manifest = new File(args[++i]);
+			} else {
+				throw new IllegalArgumentException("Unknown option: " + args[i]);
+			}
+		}
+
+		StaticAppGenerator generator = new StaticAppGenerator(new File(args[0]),
+			StaticAppConfig.load(new File(args[1])), new File(args[2]), new File(args[3]), new File(args[4]),
+			incremental);
+		if (threads != null) {
+			generator.setThreads(threads);
+		}
+		if (manifest != null) {
+			generator.setManifestFile(manifest);
+		}
+
+		System.out.println("Static app: " + generator.generate());
+	}
+
+	/**
+	 * Sets the number of routes rendered concurrently, or zero for one per CPU.
+	 */
+	public void setThreads(int threads) {
+		if (threads < 0) {
+			throw new IllegalArgumentException("threads must not be negative: " + threads);
+		}
+		this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+	}
+
+	public void setManifestFile(File manifestFile) {
+		this.manifestFile = manifestFile;
+	}
+
+	public Summary generate() throws IOException {
+		Summary summary = new Summary();
+		final Properties previous = incremental ? loadState() : new Properties();
+		Properties state = new Properties();
+
+		final File targetDir = new File(baseDir, config.getTargetDir());
+		File sourceDir = new File(baseDir, config.getSourceDir());
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		Map<String, Future<RouteOutput>> pending = new TreeMap<String, Future<RouteOutput>>();
+		try {
+			for (final StaticAppConfig.ViewRoute route : config.getRoutes().values()) {
+				pending.put(route.getRoute(), pool.submit(new Callable<RouteOutput>() {
+					@Override
+					public RouteOutput call() throws IOException {
+						return generate(route, targetDir, previous);
+					}
+				}));
+			}
+
+			Map<String, Map<String, Object>> manifest = new TreeMap<String, Map<String, Object>>();
+			for (Map.Entry<String, Future<RouteOutput>> entry : pending.entrySet()) {
+				RouteOutput output = get(entry.getValue());
+				state.setProperty("route." + entry.getKey(), output.inputHash);
+				state.setProperty("output." + entry.getKey(), output.outputHash);
+				state.setProperty("size." + entry.getKey(), Long.toString(output.size));
+				if (output.rendered) {
+					summary.rendered++;
+				} else {
+					summary.skipped++;
+				}
+
+				Map<String, Object> item = new TreeMap<String, Object>();
+				item.put("view", config.getRoutes().get(entry.getKey()).getView());
+				item.put("sha1", output.outputHash);
+				item.put("size", output.size);
+				manifest.put(entry.getKey(), item);
+			}
+			writeManifest(manifest);
+
+		} finally {
+			pool.shutdownNow();
+		}
+
+		boolean copiesCdnFiles = !config.isDevMode() && !cdnLinks.isEmpty();
+		if ((copiesCdnFiles || !config.getFiles().isEmpty()) && !sourceDir.isDirectory()) {
+			throw new IOException("Source dir not found, the webapp must be exploded first: " + sourceDir);
+		}
+
+		for (String file : config.getFiles()) {
+			File source = new File(sourceDir, file);
+			if (!source.isFile()) {
+				continue;
+			}
+
+			String key = "file." + file;
+			String hash = hash(source);
+			state.setProperty(key, hash);
+
+			File output = new File(targetDir, file);
+			if (incremental && hash.equals(previous.getProperty(key)) && output.isFile()) {
+				continue;
+			}
+			copy(source, output);
+			summary.copied++;
+		}
+
+		if (copiesCdnFiles) {
+			for (String cdnFile : cdnLinks.stringPropertyNames()) {
+				String path = cdnLinks.getProperty(cdnFile);
+				File output = new File(targetDir, path);
+				if (output.isFile()) {
+					// named by content hash, so an existing file is up to date
+					continue;
+				}
+				copy(new File(sourceDir, path), output);
+				summary.copied++;
+			}
+		}
+
+		saveState(state);
+		return summary;
+	}
+
+	/**
+	 * Result of generating a single route.
+	 */
+	private static class RouteOutput {
+
+		private final String inputHash;
+		private final String outputHash;
+		private final long size;
+		private final boolean rendered;
+
+		RouteOutput(String inputHash, String outputHash, long size, boolean rendered) {
+			this.inputHash = inputHash;
+			this.outputHash = outputHash;
+			this.size = size;
+			this.rendered = rendered;
+		}
+	}
+
+	private RouteOutput generate(StaticAppConfig.ViewRoute route, File targetDir, Properties previous)
+			throws IOException {
+
+		String inputHash = routeHash(route);
+		File output = new File(targetDir, route.getRoute());
+		String previousOutput = previous.getProperty("output." + route.getRoute());
+		String previousSize = previous.getProperty("size." + route.getRoute());
+
+		if (incremental && inputHash.equals(previous.getProperty("route." + route.getRoute()))
+				&& previousOutput != null && previousSize != null && output.isFile()) {
+			return new RouteOutput(inputHash, previousOutput, Long.parseLong(previousSize), false);
+		}
+
+		byte[] content = render(route).getBytes(StandardCharsets.UTF_8);
+		write(output, content);
+		return new RouteOutput(inputHash, Hashes.sha1Hex(content), content.length, true);
+	}
+
+	private static <T> T get(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while generating", ex);
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof IOException) {
+				throw (IOException)ex.getCause();
+			}
+			throw new IOException("Generating failed", ex.getCause());
+		}
+	}
+
+	private void writeManifest(Map<String, Map<String, Object>> manifest) throws IOException {
+		byte[] json = new ObjectMapper()
+			.configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true)
+			.writerWithDefaultPrettyPrinter()
+			.writeValueAsBytes(manifest);
+		write(manifestFile, json);
+	}
+
+	/**
+	 * Renders the route and points its merge file links to the CDN files.
+	 */
+	String render(StaticAppConfig.ViewRoute route) throws IOException {
+		StringBuilder output = new StringBuilder(8192);
+		renderer.render(route.getView(), route.getData(), route.getExtras(), output);
+
+		String markup = output.toString();
+		if (!config.isDevMode()) {
+			for (String link : cdnLinks.stringPropertyNames()) {
+				markup = markup.replace('"' + link + '"', '"' + config.cdnUrl(cdnLinks.getProperty(link)) + '"');
+			}
+		}
+		return markup;
+	}
+
+	/**
+	 * Combined hash of every input of the route.
+	 */
+	String routeHash(StaticAppConfig.ViewRoute route) throws IOException {
+		Map<String, String> inputs = new TreeMap<String, String>();
+		inputs.put("data", route.getDataHash());
+		inputs.put("extras", String.valueOf(route.getExtras()));
+
+		for (String view : viewGraph.collect(route.getView())) {
+			File source = viewGraph.getSource(view);
+			inputs.put("view:" + view, hash(source));
+			inputs.put("class:" + view, classHash(view));
+
+			Matcher matcher = MERGE_LINK.matcher(read(source));
+			while (matcher.find()) {
+				String merge = matcher.group(1);
+				inputs.put("cdn:" + merge, String.valueOf(cdnLinks.getProperty(merge)));
+				addMergeInputs(merge, inputs);
+			}
+		}
+
+		StringBuilder combined = new StringBuilder();
+		for (Map.Entry<String, String> input : inputs.entrySet()) {
+			combined.append(input.getKey()).append('=').append(input.getValue()).append('\n');
+		}
+		return Hashes.sha1Hex(combined.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void addMergeInputs(String merge, Map<String, String> inputs) throws IOException {
+		File manifest = new File(webappDir, merge);
+		inputs.put("merge:" + merge, hash(manifest));
+		if (!manifest.isFile()) {
+			return;
+		}
+
+		for (String line : read(manifest).split("\r?\n")) {
+			String path = line.trim();
+			if (path.isEmpty() || path.startsWith("#")) {
+				continue;
+			}
+			inputs.put("asset:" + path, hash(new File(webappDir, path)));
+		}
+	}
+
+	private String hash(File file) throws IOException {
+		String hash = fileHashes.get(file);
+		if (hash == null) {
+			// racing workers compute the same value
+			hash = file.isFile() ? Hashes.sha1Hex(Files.readAllBytes(file.toPath())) : "missing";
+			fileHashes.put(file, hash);
+		}
+		return hash;
+	}
+
+	/**
+	 * Hash of the compiled class of the view and of its nested classes, so that a view compiled
+	 * again without a change to its source, e.g. by another DUEL compiler, is rendered again.
+	 */
+	private String classHash(String view) throws IOException {
+		String hash = classHashes.get(view);
+		if (hash != null) {
+			return hash;
+		}
+
+		ClassLoader loader = StaticAppGenerator.class.getClassLoader();
+		String path = config.getServerPrefix().replace('.', '/') + '/' + view + ".class";
+		URL url = loader.getResource(path);
+		if (url == null) {
+			hash = "missing";
+
+		} else if ("file".equals(url.getProtocol())) {
+			File classFile = toFile(url);
+			File[] nested = classFile.getParentFile().listFiles();
+			Map<String, File> classFiles = new TreeMap<String, File>();
+			classFiles.put(classFile.getName(), classFile);
+			if (nested != null) {
+				for (File file : nested) {
+					if (file.getName().startsWith(view + '$') && file.getName().endsWith(".class")) {
+						classFiles.put(file.getName(), file);
+					}
+				}
+			}
+
+			StringBuilder combined = new StringBuilder();
+			for (Map.Entry<String, File> classEntry : classFiles.entrySet()) {
+				combined.append(classEntry.getKey()).append('=').append(hash(classEntry.getValue())).append('\n');
+			}
+			hash = Hashes.sha1Hex(combined.toString().getBytes(StandardCharsets.UTF_8));
+
+		} else {
+			// packed in a jar: nested classes cannot be listed, the view class itself is still hashed
+			InputStream in = url.openStream();
+			try {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				byte[] buffer = new byte[8192];
+				int count;
+				while ((count = in.read(buffer)) != -1) {
+					bytes.write(buffer, 0, count);
+				}
+				hash = Hashes.sha1Hex(bytes.toByteArray());
+			} finally {
+				in.close();
+			}
+		}
+
+		// racing workers compute the same value
+		classHashes.put(view, hash);
+		return hash;
+	}
+
+	private static File toFile(URL url) throws IOException {
+		try {
+			return new File(url.toURI());
+		} catch (URISyntaxException ex) {
+			throw new IOException("Invalid class location: " + url, ex);
+		}
+	}
+
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes to a temporary file next to the output and moves it into place, so readers never see
+	 * a partially written file.
+	 */
+	private static void write(File output, byte[] content) throws IOException {
+		File dir = output.getAbsoluteFile().getParentFile();
+		dir.mkdirs();
+
+		Path temp = Files.createTempFile(dir.toPath(), '.' + output.getName(), ".tmp");
+		try {
+			Files.write(temp, content);
+			Files.move(temp, output.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	private static void copy(File source, File output) throws IOException {
+		output.getParentFile().mkdirs();
+		Files.copy(source.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Loads the mapping of merge files to CDN files written by the merge builder.
+	 */
+	static Properties loadCdnLinks(String bundle) throws IOException {
+		Properties links = new Properties();
+		InputStream in = StaticAppGenerator.class.getClassLoader().getResourceAsStream(bundle + ".properties");
+		if (in != null) {
+			try {
+				links.load(in);
+			} finally {
+				in.close();
+			}
+		}
+		return links;
+	}
+
+	private Properties loadState() throws IOException {
+		Properties state = new Properties();
+		if (stateFile.isFile()) {
+			InputStream in = new FileInputStream(stateFile);
+			try {
+				state.load(in);
+			} finally {
+				in.close();
+			}
+		}
+		return state;
+	}
+
+	private void saveState(Properties state) throws IOException {
+		stateFile.getAbsoluteFile().getParentFile().mkdirs();
+		OutputStream out = new FileOutputStream(stateFile);
+		try {
+			state.store(out, "staticapp input hashes");
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,192 @@
+package com.todomvc.duel.build;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.todomvc.duel.web.Hashes;
+import com.todomvc.duel.web.StaticAppConfig;
+
+/**
+ * Build step which splits a merged script bundle of the static app by the views each page uses.
+ *
+ * The files of the merge manifest are classified by position: the files before the first compiled view
+ * (e.g. {@code duel.js}) form the runtime chunk shared by all pages, and each page gets an entry bundle
+ * holding only the compiled views reachable through {@code <call view="...">} from its route view and
+ * the client views, followed by the remaining application files. Both are written under {@code cdn/},
+ * named by their content hash, so pages using the same views share their entry bundle.
+ *
+ * Pages whose script no longer points to the merged bundle, e.g. skipped by an incremental build,
+ * are left as they are.
+ *
+ * Usage: {@code ViewBundler <baseDir> <config> <viewsDir> <webappDir> <merge> [<clientView>...]}
+ */
+public class ViewBundler {
+
+	private static final Pattern COMPILED_VIEW = Pattern.compile("/views/([\\w$]+)\\.js$");
+
+	private final StaticAppConfig config;
+	private final ViewGraph viewGraph;
+	private final File targetDir;
+	private final File[] sourceDirs;
+	private final List<String> runtime = new ArrayList<String>();
+	private final List<String> views = new ArrayList<String>();
+	private final List<String> application = new ArrayList<String>();
+
+	/**
+	 * @param manifest the lines of the merge manifest to split
+	 * @param sourceDirs directories the manifest files are looked up in, in order
+	 */
+	public ViewBundler(StaticAppConfig config, File viewsDir, File targetDir, List<String> manifest,
+			File... sourceDirs) {
+
+		this.config = config;
+		this.viewGraph = new ViewGraph(viewsDir);
+		this.targetDir = targetDir;
+		this.sourceDirs = sourceDirs;
+
+		for (String line : manifest) {
+			String path = line.trim();
+			if (path.isEmpty() || path.startsWith("#")) {
+				continue;
+			}
+			if (viewName(path) != null) {
+				views.add(path);
+			} else if (views.isEmpty()) {
+				runtime.add(path);
+			} else {
+				application.add(path);
+			}
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 5) {
+			throw new IllegalArgumentException(
+				"Usage: ViewBundler <baseDir> <config> <viewsDir> <webappDir> <merge> [<clientView>...]");
+		}
+
+		File baseDir = new File(args[0]);
+		StaticAppConfig config = StaticAppConfig.load(new File(args[1]));
+		if (config.isDevMode()) {
+			// pages link the unmerged files
+			return;
+		}
+
+		File webappDir = new File(args[3]);
+		String merge = args[4];
+		String mergedUrl = StaticAppGenerator.loadCdnLinks(config.getCdnMap()).getProperty(merge);
+		File manifest = new File(webappDir, merge);
+		if (mergedUrl == null || !manifest.isFile()) {
+			throw new IOException("Merge file not found: " + merge);
+		}
+
+		ViewBundler bundler = new ViewBundler(config, new File(args[2]), new File(baseDir, config.getTargetDir()),
+			Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8),
+			new File(baseDir, config.getSourceDir()), webappDir);
+
+		List<String> clientViews = Arrays.asList(args).subList(5, args.length);
+		int pages = 0;
+		for (StaticAppConfig.ViewRoute route : config.getRoutes().values()) {
+			if (bundler.bundle(route, config.cdnUrl(mergedUrl), clientViews)) {
+				pages++;
+			}
+		}
+		System.out.println("View bundles: split " + merge + " on " + pages + " pages");
+	}
+
+	/**
+	 * Replaces the merged script of the page with the runtime chunk and the entry bundle of its views.
+	 *
+	 * @param mergedUrl URL of the merged bundle in the generated page
+	 * @param clientViews views rendered by the client on every page
+	 * @return whether the page was changed
+	 */
+	public boolean bundle(StaticAppConfig.ViewRoute route, String mergedUrl, List<String> clientViews)
+			throws IOException {
+
+		File page = new File(targetDir, route.getRoute());
+		if (!page.isFile()) {
+			return false;
+		}
+
+		String markup = new String(Files.readAllBytes(page.toPath()), StandardCharsets.UTF_8);
+		String script = "<script src=\"" + mergedUrl + "\"></script>";
+		if (!markup.contains(script)) {
+			return false;
+		}
+
+		Set<String> pageViews = new LinkedHashSet<String>(viewGraph.collect(route.getView()));
+		for (String view : clientViews) {
+			pageViews.addAll(viewGraph.collect(view));
+		}
+
+		List<String> entry = new ArrayList<String>();
+		for (String path : views) {
+			if (pageViews.contains(viewName(path))) {
+				entry.add(path);
+			}
+		}
+		entry.addAll(application);
+
+		String runtimeUrl = config.cdnUrl(writeChunk(runtime));
+		String entryUrl = config.cdnUrl(writeChunk(entry));
+		markup = markup.replace(script, "<script src=\"" + runtimeUrl + "\"></script>\n"
+			+ "\t<script src=\"" + entryUrl + "\"></script>");
+
+		Files.write(page.toPath(), markup.getBytes(StandardCharsets.UTF_8));
+		return true;
+	}
+
+	/**
+	 * Returns the name of the view compiled into the file, or null.
+	 */
+	private String viewName(String path) {
+		Matcher matcher = COMPILED_VIEW.matcher(path);
+		return matcher.find() && viewGraph.exists(matcher.group(1)) ? matcher.group(1) : null;
+	}
+
+	/**
+	 * Concatenates the files into {@code cdn/<sha1>.js} and returns its path.
+	 */
+	private String writeChunk(List<String> paths) throws IOException {
+		ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+		for (String path : paths) {
+			chunk.write(Files.readAllBytes(find(path).toPath()));
+			// guard against files without a trailing newline or semicolon
+			chunk.write(";\n".getBytes(StandardCharsets.UTF_8));
+		}
+
+		byte[] content = chunk.toByteArray();
+		String cdnPath = "/cdn/" + Hashes.sha1Hex(content) + ".js";
+		for (File dir : new File[] { targetDir, sourceDirs[0] }) {
+			File output = new File(dir, cdnPath.substring(1));
+			if (!output.isFile()) {
+				// named by content hash, so an existing file is up to date
+				output.getParentFile().mkdirs();
+				Files.write(output.toPath(), content);
+			}
+		}
+		return cdnPath;
+	}
+
+	private File find(String path) throws IOException {
+		for (File dir : sourceDirs) {
+			File file = new File(dir, path.startsWith("/") ? path.substring(1) : path);
+			if (file.isFile()) {
+				return file;
+			}
+		}
+		throw new IOException("Bundle file not found: " + path);
+	}
+}
@@ -0,0 +1,57 @@
+package com.todomvc.duel.build;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The {@code <call view="...">} graph of the DUEL view sources.
+ */
+class ViewGraph {
+
+	private static final Pattern CALL_VIEW = Pattern.compile("<call\\s+view=\"([^\"]+)\"");
+
+	private final File viewsDir;
+
+	ViewGraph(File viewsDir) {
+		this.viewsDir = viewsDir;
+	}
+
+	File getSource(String view) {
+		return new File(viewsDir, view + ".duel");
+	}
+
+	boolean exists(String view) {
+		return getSource(view).isFile();
+	}
+
+	/**
+	 * Collects the view and the views it calls, transitively, callers first.
+	 */
+	Set<String> collect(String view) throws IOException {
+		Set<String> views = new LinkedHashSet<String>();
+		collect(view, views);
+		return views;
+	}
+
+	private void collect(String view, Set<String> views) throws IOException {
+		if (!views.add(view)) {
+			return;
+		}
+
+		File source = getSource(view);
+		if (!source.isFile()) {
+			return;
+		}
+
+		Matcher matcher = CALL_VIEW.matcher(new String(Files.readAllBytes(source.toPath()), StandardCharsets.UTF_8));
+		while (matcher.find()) {
+			collect(matcher.group(1), views);
+		}
+	}
+}
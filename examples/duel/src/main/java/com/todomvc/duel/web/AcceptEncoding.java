@@ -0,0 +1,83 @@
+package com.todomvc.duel.web;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Parses the {@code Accept-Encoding} request header into the precompressed variants the client takes.
+ */
+final class AcceptEncoding {
+
+	/**
+	 * Precompressed variants in order of preference, with the file suffix they are stored under.
+	 */
+	enum Variant {
+		BROTLI("br", ".br"),
+		GZIP("gzip", ".gz");
+
+		private final String token;
+		private final String suffix;
+
+		private Variant(String token, String suffix) {
+			this.token = token;
+			this.suffix = suffix;
+		}
+
+		public String getToken() {
+			return token;
+		}
+
+		public String getSuffix() {
+			return suffix;
+		}
+	}
+
+	private AcceptEncoding() {}
+
+	/**
+	 * Gets the variants accepted by the given header, most preferred first.
+	 */
+	static List<Variant> acceptedVariants(String header) {
+		List<Variant> variants = new ArrayList<Variant>();
+		if (header == null) {
+			return variants;
+		}
+
+		for (Variant variant : Variant.values()) {
+			if (accepts(header, variant.getToken())) {
+				variants.add(variant);
+			}
+		}
+		return variants;
+	}
+
+	private static boolean accepts(String header, String token) {
+		boolean wildcard = false;
+		for (String part : header.toLowerCase(Locale.ROOT).split(",")) {
+			String[] params = part.split(";");
+			String coding = params[0].trim();
+			if (coding.equals(token)) {
+				return !isZeroQuality(params);
+			}
+			if (coding.equals("*")) {
+				wildcard = !isZeroQuality(params);
+			}
+		}
+		return wildcard;
+	}
+
+	private static boolean isZeroQuality(String[] params) {
+		for (int i = 1; i < params.length; i++) {
+			String param = params[i].trim();
+			if (param.startsWith("q=")) {
+				try {
+					return Double.parseDouble(param.substring(2)) <= 0d;
+				} catch (NumberFormatException ex) {
+					return false;
+				}
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,193 @@
+package com.todomvc.duel.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Captures the response body in memory so that it can be cached, while status and headers
+ * still go to the wrapped response. Every way of setting the status is tracked, so that
+ * redirects and errors are not taken for a {@code 200}. The headers are recorded too, as
+ * strings, dates and ints, so that they can be sent again with the cached body; cookies and
+ * the headers set from the cached body itself are not.
+ */
+class BufferedResponse extends HttpServletResponseWrapper {
+
+	private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+	private ServletOutputStream stream;
+	private PrintWriter writer;
+	private int status = SC_OK;
+	private final Map<String, List<Object>> headers = new TreeMap<String, List<Object>>(String.CASE_INSENSITIVE_ORDER);
+
+	BufferedResponse(HttpServletResponse response) {
+		super(response);
+	}
+
+	@Override
+	public ServletOutputStream getOutputStream() {
+		if (stream == null) {
+			stream = new ServletOutputStream() {
+				@Override
+				public void write(int b) {
+					buffer.write(b);
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) {
+					buffer.write(b, off, len);
+				}
+			};
+		}
+		return stream;
+	}
+
+	@Override
+	public PrintWriter getWriter() throws IOException {
+		if (writer == null) {
+			String encoding = getCharacterEncoding() != null ? getCharacterEncoding() : "UTF-8";
+			writer = new PrintWriter(new OutputStreamWriter(buffer, encoding));
+		}
+		return writer;
+	}
+
+	@Override
+	public void setStatus(int status) {
+		this.status = status;
+		super.setStatus(status);
+	}
+
+	@Override
+	@SuppressWarnings("deprecation")
+	public void setStatus(int status, String message) {
+		this.status = status;
+		super.setStatus(status, message);
+	}
+
+	@Override
+	public void sendRedirect(String location) throws IOException {
+		this.status = SC_FOUND;
+		super.sendRedirect(location);
+	}
+
+	@Override
+	public void sendError(int status) throws IOException {
+		this.status = status;
+		super.sendError(status);
+	}
+
+	@Override
+	public void sendError(int status, String message) throws IOException {
+		this.status = status;
+		super.sendError(status, message);
+	}
+
+	@Override
+	public void setHeader(String name, String value) {
+		record(name, value, false);
+		super.setHeader(name, value);
+	}
+
+	@Override
+	public void addHeader(String name, String value) {
+		record(name, value, true);
+		super.addHeader(name, value);
+	}
+
+	@Override
+	public void setDateHeader(String name, long date) {
+		record(name, date, false);
+		super.setDateHeader(name, date);
+	}
+
+	@Override
+	public void addDateHeader(String name, long date) {
+		record(name, date, true);
+		super.addDateHeader(name, date);
+	}
+
+	@Override
+	public void setIntHeader(String name, int value) {
+		record(name, value, false);
+		super.setIntHeader(name, value);
+	}
+
+	@Override
+	public void addIntHeader(String name, int value) {
+		record(name, value, true);
+		super.addIntHeader(name, value);
+	}
+
+	private void record(String name, Object value, boolean add) {
+		if (name == null || !isReplayable(name)) {
+			return;
+		}
+		List<Object> values = headers.get(name);
+		if (value == null) {
+			// a null value removes a set header, and is ignored when added
+			if (!add) {
+				headers.remove(name);
+			}
+			return;
+		}
+		if (values == null) {
+			values = new ArrayList<Object>(1);
+			headers.put(name, values);
+		} else if (!add) {
+			values.clear();
+		}
+		values.add(value);
+	}
+
+	/**
+	 * Content type, length and ETag are sent from the cached body, and cookies belong to one client.
+	 */
+	private static boolean isReplayable(String name) {
+		return !"Content-Type".equalsIgnoreCase(name)
+			&& !"Content-Length".equalsIgnoreCase(name)
+			&& !"ETag".equalsIgnoreCase(name)
+			&& !"Set-Cookie".equalsIgnoreCase(name);
+	}
+
+	@Override
+	public void setContentLength(int length) {
+		// the length is set once the body is written out
+	}
+
+	@Override
+	public void flushBuffer() {
+		// keep the response uncommitted until the body is written out
+	}
+
+	int getStatus() {
+		return status;
+	}
+
+	/**
+	 * The recorded headers by name, with their values in the order they were added: {@link String},
+	 * {@link Long} for dates and {@link Integer} for ints.
+	 */
+	Map<String, List<Object>> getHeaders() {
+		Map<String, List<Object>> copy = new TreeMap<String, List<Object>>(String.CASE_INSENSITIVE_ORDER);
+		for (Map.Entry<String, List<Object>> header : headers.entrySet()) {
+			copy.put(header.getKey(), Collections.unmodifiableList(new ArrayList<Object>(header.getValue())));
+		}
+		return Collections.unmodifiableMap(copy);
+	}
+
+	byte[] toByteArray() {
+		if (writer != null) {
+			writer.flush();
+		}
+		return buffer.toByteArray();
+	}
+}
@@ -0,0 +1,191 @@
+package com.todomvc.duel.web;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Serves the content-addressed files produced by the merge builder under {@code /cdn/} without
+ * going through the view engine. Since the file name is the SHA-1 of its contents, responses are
+ * cacheable forever and the hash doubles as a strong ETag. Conditional requests are answered with
+ * 304 without reading the file.
+ *
+ * Files up to {@code max-mapped-size} bytes (init-param, default 4 MB) are memory-mapped once and
+ * shared across requests; larger files are streamed with {@link FileChannel#transferTo}.
+ * Precompressed {@code .br}/{@code .gz} siblings are served when the client accepts them.
+ */
+public class CdnAssetFilter implements Filter {
+
+	private static final Pattern CDN_PATH = Pattern.compile("^/cdn/([0-9a-f]{40})\\.[A-Za-z0-9]+$");
+
+	private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+	private static final long DEFAULT_MAX_MAPPED_SIZE = 4L * 1024L * 1024L;
+
+	private final ConcurrentMap<String, MappedByteBuffer> mapped = new ConcurrentHashMap<String, MappedByteBuffer>();
+
+	private ServletContext context;
+
+	private long maxMappedSize = DEFAULT_MAX_MAPPED_SIZE;
+
+	@Override
+	public void init(FilterConfig config) {
+		context = config.getServletContext();
+
+		String size = config.getInitParameter("max-mapped-size");
+		if (size != null) {
+			maxMappedSize = Long.parseLong(size.trim());
+		}
+	}
+
+	@Override
+	public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
+			throws IOException, ServletException {
+
+		HttpServletRequest request = (HttpServletRequest)req;
+		HttpServletResponse response = (HttpServletResponse)res;
+
+		String path = request.getServletPath() + (request.getPathInfo() != null ? request.getPathInfo() : "");
+		Matcher matcher = CDN_PATH.matcher(path);
+		String method = request.getMethod();
+		if (!matcher.matches() || !("GET".equals(method) || "HEAD".equals(method))) {
+			chain.doFilter(req, res);
+			return;
+		}
+
+		File file = resolve(path);
+		if (file == null) {
+			chain.doFilter(req, res);
+			return;
+		}
+
+		String hash = matcher.group(1);
+		AcceptEncoding.Variant encoding = null;
+		for (AcceptEncoding.Variant variant : AcceptEncoding.acceptedVariants(request.getHeader("Accept-Encoding"))) {
+			File encoded = resolve(path + variant.getSuffix());
+			if (encoded != null) {
+				encoding = variant;
+				file = encoded;
+				break;
+			}
+		}
+
+		String etag = '"' + hash + (encoding != null ? '-' + encoding.getToken() : "") + '"';
+		response.setHeader("Cache-Control", CACHE_CONTROL);
+		response.setHeader("ETag", etag);
+		response.setHeader("Vary", "Accept-Encoding");
+
+		if (matchesETag(request.getHeader("If-None-Match"), etag)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+
+		String contentType = context.getMimeType(path);
+		if (contentType != null) {
+			response.setContentType(contentType);
+		}
+		if (encoding != null) {
+			response.setHeader("Content-Encoding", encoding.getToken());
+		}
+		response.setContentLength((int)file.length());
+
+		if ("HEAD".equals(method)) {
+			return;
+		}
+
+		WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+		if (file.length() <= maxMappedSize) {
+			ByteBuffer buffer = map(file).duplicate();
+			while (buffer.hasRemaining()) {
+				out.write(buffer);
+			}
+		} else {
+			transfer(file, out);
+		}
+	}
+
+	@Override
+	public void destroy() {
+		mapped.clear();
+	}
+
+	private File resolve(String path) {
+		String realPath = context.getRealPath(path);
+		if (realPath == null) {
+			return null;
+		}
+		File file = new File(realPath);
+		return file.isFile() ? file : null;
+	}
+
+	/**
+	 * Maps the file once; CDN files never change under the same name.
+	 */
+	private MappedByteBuffer map(File file) throws IOException {
+		String key = file.getAbsolutePath();
+		MappedByteBuffer buffer = mapped.get(key);
+		if (buffer == null) {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				FileChannel channel = raf.getChannel();
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			} finally {
+				raf.close();
+			}
+			MappedByteBuffer existing = mapped.putIfAbsent(key, buffer);
+			if (existing != null) {
+				buffer = existing;
+			}
+		}
+		return buffer;
+	}
+
+	private static void transfer(File file, WritableByteChannel out) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long position = 0L;
+			long size = channel.size();
+			while (position < size) {
+				position += channel.transferTo(position, size - position, out);
+			}
+		} finally {
+			raf.close();
+		}
+	}
+
+	static boolean matchesETag(String ifNoneMatch, String etag) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+		for (String candidate : ifNoneMatch.split(",")) {
+			String value = candidate.trim();
+			if (value.startsWith("W/")) {
+				value = value.substring(2);
+			}
+			if (value.equals("*") || value.equals(etag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
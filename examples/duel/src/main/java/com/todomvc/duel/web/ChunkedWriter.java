@@ -0,0 +1,93 @@
+package com.todomvc.duel.web;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writer which holds at most {@code chunkSize} characters before passing them on and flushing the
+ * target. When the target is a servlet response, each flush sends a chunk to the client and blocks
+ * while the client is not reading, so a slow client throttles rendering instead of growing a buffer.
+ */
+public class ChunkedWriter extends Writer {
+
+	private final Writer target;
+	private final char[] buffer;
+	private int count;
+	private int chunks;
+
+	public ChunkedWriter(Writer target, int chunkSize) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+		}
+		this.target = target;
+		this.buffer = new char[chunkSize];
+	}
+
+	@Override
+	public void write(char[] chars, int offset, int length) throws IOException {
+		while (length > 0) {
+			int n = Math.min(length, buffer.length - count);
+			System.arraycopy(chars, offset, buffer, count, n);
+			count += n;
+			offset += n;
+			length -= n;
+
+			if (count == buffer.length) {
+				flush();
+			}
+		}
+	}
+
+	@Override
+	public void write(String str, int offset, int length) throws IOException {
+		while (length > 0) {
+			int n = Math.min(length, buffer.length - count);
+			str.getChars(offset, offset + n, buffer, count);
+			count += n;
+			offset += n;
+			length -= n;
+
+			if (count == buffer.length) {
+				flush();
+			}
+		}
+	}
+
+	@Override
+	public void write(int c) throws IOException {
+		buffer[count++] = (char)c;
+		if (count == buffer.length) {
+			flush();
+		}
+	}
+
+	@Override
+	public Writer append(CharSequence csq) throws IOException {
+		String str = String.valueOf(csq);
+		write(str, 0, str.length());
+		return this;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (count > 0) {
+			target.write(buffer, 0, count);
+			count = 0;
+			chunks++;
+		}
+		target.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		flush();
+		target.close();
+	}
+
+	/**
+	 * Number of chunks passed on so far.
+	 */
+	public int getChunks() {
+		return chunks;
+	}
+}
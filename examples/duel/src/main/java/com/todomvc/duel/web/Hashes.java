@@ -0,0 +1,31 @@
+package com.todomvc.duel.web;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Hex digests used for cache keys and ETags.
+ */
+public final class Hashes {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private Hashes() {}
+
+	public static String sha1Hex(byte[] bytes) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+
+		byte[] hash = digest.digest(bytes);
+		char[] hex = new char[hash.length * 2];
+		for (int i = 0; i < hash.length; i++) {
+			hex[2 * i] = HEX[(hash[i] >> 4) & 0xF];
+			hex[2 * i + 1] = HEX[hash[i] & 0xF];
+		}
+		return new String(hex);
+	}
+}
@@ -0,0 +1,156 @@
+package com.todomvc.duel.web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLConnection;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Serves the {@code .br} or {@code .gz} sibling written by the build for HTML, JS and CSS files,
+ * based upon the request {@code Accept-Encoding}. Requests without a matching variant fall through
+ * to the rest of the chain. Directory requests, e.g. {@code /}, are served the variant of their
+ * welcome file (init-param {@code welcome-file}, default {@code index.html}).
+ *
+ * As the default servlet is bypassed, the variants get their own {@code Last-Modified} and
+ * {@code ETag}, which differs per encoding, and conditional requests are answered with 304.
+ */
+public class PrecompressedContentFilter implements Filter {
+
+	private static final String[] EXTENSIONS = { ".html", ".js", ".css" };
+
+	private static final String DEFAULT_WELCOME_FILE = "index.html";
+
+	private ServletContext context;
+	private String welcomeFile;
+
+	@Override
+	public void init(FilterConfig config) {
+		context = config.getServletContext();
+		String welcomeFile = config.getInitParameter("welcome-file");
+		this.welcomeFile = welcomeFile != null ? welcomeFile.trim() : DEFAULT_WELCOME_FILE;
+	}
+
+	@Override
+	public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
+			throws IOException, ServletException {
+
+		HttpServletRequest request = (HttpServletRequest)req;
+		HttpServletResponse response = (HttpServletResponse)res;
+
+		String path = request.getServletPath() + (request.getPathInfo() != null ? request.getPathInfo() : "");
+		if (path.isEmpty() || path.endsWith("/")) {
+			path += welcomeFile;
+		}
+		if (!isCompressible(request.getMethod(), path)) {
+			chain.doFilter(req, res);
+			return;
+		}
+
+		for (AcceptEncoding.Variant variant : AcceptEncoding.acceptedVariants(request.getHeader("Accept-Encoding"))) {
+			URL resource = context.getResource(path + variant.getSuffix());
+			if (resource != null) {
+				response.setHeader("Vary", "Accept-Encoding");
+				send(request, response, resource, context.getMimeType(path), variant);
+				return;
+			}
+		}
+
+		if (hasVariant(path)) {
+			// the response still depends upon the header
+			response.setHeader("Vary", "Accept-Encoding");
+		}
+		chain.doFilter(req, res);
+	}
+
+	@Override
+	public void destroy() {}
+
+	static boolean isCompressible(String method, String path) {
+		if (!"GET".equals(method) && !"HEAD".equals(method)) {
+			return false;
+		}
+		for (String ext : EXTENSIONS) {
+			if (path.endsWith(ext)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean hasVariant(String path) throws IOException {
+		for (AcceptEncoding.Variant variant : AcceptEncoding.Variant.values()) {
+			if (context.getResource(path + variant.getSuffix()) != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	static void send(HttpServletRequest request, HttpServletResponse response, URL resource,
+			String contentType, AcceptEncoding.Variant variant) throws IOException {
+
+		URLConnection connection = resource.openConnection();
+		InputStream in = connection.getInputStream();
+		try {
+			long lastModified = connection.getLastModified();
+			int length = connection.getContentLength();
+			String etag = '"' + Long.toHexString(lastModified) + '-' + Integer.toHexString(length)
+				+ '-' + variant.getToken() + '"';
+			if (lastModified > 0L) {
+				response.setDateHeader("Last-Modified", lastModified);
+			}
+			response.setHeader("ETag", etag);
+			if (isNotModified(request, etag, lastModified)) {
+				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				return;
+			}
+
+			if (contentType != null) {
+				response.setContentType(contentType);
+			}
+			response.setHeader("Content-Encoding", variant.getToken());
+			response.setContentLength(length);
+			if ("HEAD".equals(request.getMethod())) {
+				return;
+			}
+			OutputStream out = response.getOutputStream();
+			byte[] buffer = new byte[8192];
+			int count;
+			while ((count = in.read(buffer)) != -1) {
+				out.write(buffer, 0, count);
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Checks the validators of the request, {@code If-None-Match} taking precedence as in RFC 7232.
+	 */
+	private static boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null) {
+			return CdnAssetFilter.matchesETag(ifNoneMatch, etag);
+		}
+
+		long ifModifiedSince;
+		try {
+			ifModifiedSince = request.getDateHeader("If-Modified-Since");
+		} catch (IllegalArgumentException ex) {
+			return false;
+		}
+		// HTTP dates have a resolution of seconds
+		return ifModifiedSince != -1L && lastModified > 0L && lastModified / 1000L <= ifModifiedSince / 1000L;
+	}
+}
@@ -0,0 +1,94 @@
+package com.todomvc.duel.web;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Size-bounded LRU cache of rendered views.
+ */
+public class RenderCache {
+
+	/**
+	 * A rendered view, with the headers the view set.
+	 */
+	public static class Entry {
+
+		private final byte[] content;
+		private final String contentType;
+		private final Map<String, List<Object>> headers;
+		private final String etag;
+
+		/**
+		 * @param headers the header values by name, each a {@link String}, a {@link Long} date or an
+		 *        {@link Integer}
+		 */
+		public Entry(byte[] content, String contentType, Map<String, List<Object>> headers) {
+			this.content = content;
+			this.contentType = contentType;
+			this.headers = headers != null ? headers : Collections.<String, List<Object>>emptyMap();
+			this.etag = '"' + Hashes.sha1Hex(content) + '"';
+		}
+
+		public byte[] getContent() {
+			return content;
+		}
+
+		public String getContentType() {
+			return contentType;
+		}
+
+		public Map<String, List<Object>> getHeaders() {
+			return headers;
+		}
+
+		public String getETag() {
+			return etag;
+		}
+	}
+
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private final long maxBytes;
+	private long totalBytes;
+
+	/**
+	 * @param maxBytes upper bound of the rendered bytes held
+	 */
+	public RenderCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	public synchronized Entry get(String key) {
+		return entries.get(key);
+	}
+
+	public synchronized void put(String key, Entry entry) {
+		if (entry.getContent().length > maxBytes) {
+			return;
+		}
+
+		Entry previous = entries.put(key, entry);
+		if (previous != null) {
+			totalBytes -= previous.getContent().length;
+		}
+		totalBytes += entry.getContent().length;
+
+		// evict least recently used
+		Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+		while (totalBytes > maxBytes && it.hasNext()) {
+			totalBytes -= it.next().getValue().getContent().length;
+			it.remove();
+		}
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		totalBytes = 0L;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+}
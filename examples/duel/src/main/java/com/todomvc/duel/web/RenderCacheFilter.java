@@ -0,0 +1,206 @@
+package com.todomvc.duel.web;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Caches the views rendered by the routing servlet, keyed by view name and a hash of the view data
+ * configured in {@code staticapp.json}. Repeated requests are answered from memory with an ETag
+ * computed from the rendered bytes, or with 304 when the client already has them. The headers set
+ * by the view, such as {@code Cache-Control} or {@code Vary}, are cached with the body and sent with
+ * both; cookies are not.
+ *
+ * The cache is dropped whenever the config file changes or any class of the server-side view
+ * package is recompiled. Init-params: {@code config-path} (see {@link StaticAppConfig#locate}) and
+ * {@code max-bytes} (default 16 MB).
+ *
+ * Only complete {@code 200} responses to {@code GET} are cached. A {@code HEAD} which misses the
+ * cache goes down the chain uncached, as its body is empty, and so do redirects, errors and
+ * responses which the view committed itself.
+ */
+public class RenderCacheFilter implements Filter {
+
+	private static final long DEFAULT_MAX_BYTES = 16L * 1024L * 1024L;
+
+	private static final long CHECK_INTERVAL_MS = 1000L;
+
+	private File configFile;
+	private RenderCache cache;
+
+	private StaticAppConfig config;
+	private long viewClassesSignature;
+	private long lastCheck;
+
+	@Override
+	public void init(FilterConfig filterConfig) throws ServletException {
+		String configPath = filterConfig.getInitParameter("config-path");
+		configFile = StaticAppConfig.locate(filterConfig.getServletContext(), configPath);
+
+		String maxBytes = filterConfig.getInitParameter("max-bytes");
+		cache = new RenderCache(maxBytes != null ? Long.parseLong(maxBytes.trim()) : DEFAULT_MAX_BYTES);
+	}
+
+	@Override
+	public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
+			throws IOException, ServletException {
+
+		HttpServletRequest request = (HttpServletRequest)req;
+		HttpServletResponse response = (HttpServletResponse)res;
+
+		String method = request.getMethod();
+		StaticAppConfig.ViewRoute route = null;
+		if ("GET".equals(method) || "HEAD".equals(method)) {
+			String path = request.getServletPath() + (request.getPathInfo() != null ? request.getPathInfo() : "");
+			route = currentConfig().findRoute(path);
+		}
+		if (route == null) {
+			chain.doFilter(req, res);
+			return;
+		}
+
+		String key = route.getView() + '@' + route.getDataHash();
+		RenderCache.Entry entry = cache.get(key);
+		boolean hit = entry != null;
+		if (entry == null) {
+			if (!"GET".equals(method)) {
+				chain.doFilter(req, res);
+				return;
+			}
+
+			BufferedResponse buffered = new BufferedResponse(response);
+			chain.doFilter(req, buffered);
+
+			byte[] content = buffered.toByteArray();
+			if (buffered.getStatus() != HttpServletResponse.SC_OK || response.isCommitted()) {
+				// errors and redirects are passed through uncached
+				if (!response.isCommitted()) {
+					response.setContentLength(content.length);
+					response.getOutputStream().write(content);
+				}
+				return;
+			}
+
+			entry = new RenderCache.Entry(content, buffered.getContentType(), buffered.getHeaders());
+			cache.put(key, entry);
+		}
+
+		// on a miss the headers of the view already went to the response
+		send(request, response, entry, hit);
+	}
+
+	@Override
+	public void destroy() {
+		cache.clear();
+	}
+
+	private void send(HttpServletRequest request, HttpServletResponse response, RenderCache.Entry entry,
+			boolean replayHeaders) throws IOException {
+
+		if (replayHeaders) {
+			for (Map.Entry<String, List<Object>> header : entry.getHeaders().entrySet()) {
+				List<Object> values = header.getValue();
+				for (int i = 0; i < values.size(); i++) {
+					setHeader(response, header.getKey(), values.get(i), i > 0);
+				}
+			}
+		}
+		response.setHeader("ETag", entry.getETag());
+		if (CdnAssetFilter.matchesETag(request.getHeader("If-None-Match"), entry.getETag())) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+
+		if (entry.getContentType() != null) {
+			response.setContentType(entry.getContentType());
+		}
+		response.setContentLength(entry.getContent().length);
+		if (!"HEAD".equals(request.getMethod())) {
+			response.getOutputStream().write(entry.getContent());
+		}
+	}
+
+	private static void setHeader(HttpServletResponse response, String name, Object value, boolean add) {
+		if (value instanceof Long) {
+			if (add) {
+				response.addDateHeader(name, (Long)value);
+			} else {
+				response.setDateHeader(name, (Long)value);
+			}
+		} else if (value instanceof Integer) {
+			if (add) {
+				response.addIntHeader(name, (Integer)value);
+			} else {
+				response.setIntHeader(name, (Integer)value);
+			}
+		} else if (add) {
+			response.addHeader(name, (String)value);
+		} else {
+			response.setHeader(name, (String)value);
+		}
+	}
+
+	/**
+	 * Reloads the config and drops the cache when the config or the view classes changed.
+	 * Checks at most once per {@link #CHECK_INTERVAL_MS}.
+	 */
+	private synchronized StaticAppConfig currentConfig() throws IOException {
+		long now = System.currentTimeMillis();
+		if (config != null && now - lastCheck < CHECK_INTERVAL_MS) {
+			return config;
+		}
+		lastCheck = now;
+
+		if (config == null || config.isStale()) {
+			config = StaticAppConfig.load(configFile);
+			cache.clear();
+		}
+
+		long signature = viewClassesSignature(config.getServerPrefix());
+		if (signature != viewClassesSignature) {
+			viewClassesSignature = signature;
+			cache.clear();
+		}
+		return config;
+	}
+
+	/**
+	 * Combines names and timestamps of the compiled view classes.
+	 */
+	static long viewClassesSignature(String serverPrefix) {
+		URL url = Thread.currentThread().getContextClassLoader().getResource(serverPrefix.replace('.', '/'));
+		if (url == null || !"file".equals(url.getProtocol())) {
+			return 0L;
+		}
+
+		File[] files;
+		try {
+			files = new File(url.toURI()).listFiles();
+		} catch (URISyntaxException ex) {
+			return 0L;
+		}
+		if (files == null) {
+			return 0L;
+		}
+
+		long signature = files.length;
+		for (File file : files) {
+			if (file.getName().endsWith(".class")) {
+				signature += file.getName().hashCode() * 31L + file.lastModified();
+			}
+		}
+		return signature;
+	}
+}
@@ -0,0 +1,207 @@
+package com.todomvc.duel.web;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * The parts of {@code staticapp.json} needed to render views outside of the static app builder:
+ * the server-side view package, the view, data and extras of each route, and the output settings.
+ */
+public class StaticAppConfig {
+
+	/**
+	 * A route of the static app, e.g. {@code index.html}.
+	 */
+	public static class ViewRoute {
+
+		private final String route;
+		private final String view;
+		private final Object data;
+		private final Map<String, Object> extras;
+		private final String dataHash;
+
+		ViewRoute(String route, String view, Object data, Map<String, Object> extras, String dataHash) {
+			this.route = route;
+			this.view = view;
+			this.data = data;
+			this.extras = extras;
+			this.dataHash = dataHash;
+		}
+
+		public String getRoute() {
+			return route;
+		}
+
+		public String getView() {
+			return view;
+		}
+
+		public Object getData() {
+			return data;
+		}
+
+		public Map<String, Object> getExtras() {
+			return extras;
+		}
+
+		/**
+		 * SHA-1 of the canonical JSON of the view data.
+		 */
+		public String getDataHash() {
+			return dataHash;
+		}
+	}
+
+	/**
+	 * Location of the config in the webapp, where the build packages it.
+	 */
+	public static final String DEFAULT_CONFIG_PATH = "/WEB-INF/staticapp.json";
+
+	private static final ObjectMapper MAPPER = new ObjectMapper()
+		.configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+	private final File file;
+	private final long lastModified;
+	private final JsonNode root;
+	private final Map<String, ViewRoute> routes;
+
+	private StaticAppConfig(File file, long lastModified, JsonNode root, Map<String, ViewRoute> routes) {
+		this.file = file;
+		this.lastModified = lastModified;
+		this.root = root;
+		this.routes = routes;
+	}
+
+	/**
+	 * Resolves the {@code config-path} init-param of a filter or servlet: a path within the webapp,
+	 * by default {@link #DEFAULT_CONFIG_PATH}, or an absolute file path. Relative paths are never
+	 * resolved against the working directory, which depends on how the container was started.
+	 */
+	public static File locate(ServletContext context, String configPath) throws ServletException {
+		String path = configPath != null ? configPath.trim() : DEFAULT_CONFIG_PATH;
+
+		String realPath = context.getRealPath(path.startsWith("/") ? path : '/' + path);
+		if (realPath != null && new File(realPath).isFile()) {
+			return new File(realPath);
+		}
+
+		File file = new File(path);
+		if (file.isAbsolute() && file.isFile()) {
+			return file;
+		}
+		throw new ServletException("Static app config not found in the webapp nor as an absolute path: " + path);
+	}
+
+	@SuppressWarnings("unchecked")
+	public static StaticAppConfig load(File file) throws IOException {
+		long lastModified = file.lastModified();
+		JsonNode root = MAPPER.readTree(file);
+
+		Map<String, ViewRoute> routes = new LinkedHashMap<String, ViewRoute>();
+		JsonNode views = root.path("views");
+		for (Iterator<Map.Entry<String, JsonNode>> it = views.fields(); it.hasNext();) {
+			Map.Entry<String, JsonNode> entry = it.next();
+			JsonNode page = entry.getValue();
+
+			Object data = MAPPER.treeToValue(page.path("data"), Object.class);
+			Map<String, Object> extras = page.has("extras")
+				? MAPPER.treeToValue(page.get("extras"), Map.class)
+				: Collections.<String, Object>emptyMap();
+
+			routes.put(entry.getKey(), new ViewRoute(entry.getKey(), page.path("view").asText(),
+				data, extras, Hashes.sha1Hex(MAPPER.writeValueAsBytes(data))));
+		}
+
+		return new StaticAppConfig(file, lastModified, root, Collections.unmodifiableMap(routes));
+	}
+
+	/**
+	 * Gets whether the config file changed since it was loaded.
+	 */
+	public boolean isStale() {
+		return file.lastModified() != lastModified;
+	}
+
+	public String getServerPrefix() {
+		return root.path("serverPrefix").asText();
+	}
+
+	/**
+	 * Directory the static app is generated into, relative to the project.
+	 */
+	public String getTargetDir() {
+		return root.path("targetDir").asText("www/");
+	}
+
+	/**
+	 * Directory of the built webapp the static files are taken from, relative to the project.
+	 */
+	public String getSourceDir() {
+		return root.path("sourceDir").asText();
+	}
+
+	/**
+	 * Name of the resource bundle which maps merge files to CDN files.
+	 */
+	public String getCdnMap() {
+		return root.path("cdnMap").asText("cdn");
+	}
+
+	public String getCdnHost() {
+		return root.path("cdnHost").asText("");
+	}
+
+	/**
+	 * Builds the URL of a CDN file, e.g. {@code /cdn/<hash>.js}, on the configured host.
+	 */
+	public String cdnUrl(String path) {
+		String host = getCdnHost();
+		if (host.endsWith("/") && path.startsWith("/")) {
+			return host + path.substring(1);
+		}
+		return host + path;
+	}
+
+	public boolean isDevMode() {
+		return root.path("isDevMode").asBoolean(false);
+	}
+
+	/**
+	 * Static files copied as-is into the target directory.
+	 */
+	public List<String> getFiles() {
+		List<String> files = new ArrayList<String>();
+		for (JsonNode node : root.path("files")) {
+			files.add(node.asText());
+		}
+		return files;
+	}
+
+	public Map<String, ViewRoute> getRoutes() {
+		return routes;
+	}
+
+	/**
+	 * Finds the route for a request path, e.g. {@code /} maps to {@code index.html}.
+	 */
+	public ViewRoute findRoute(String path) {
+		String route = path.startsWith("/") ? path.substring(1) : path;
+		if (route.isEmpty() || route.endsWith("/")) {
+			route += "index.html";
+		}
+		return routes.get(route);
+	}
+}
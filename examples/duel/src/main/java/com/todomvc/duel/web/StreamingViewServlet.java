@@ -0,0 +1,67 @@
+package com.todomvc.duel.web;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Renders the routes of {@code staticapp.json} with the server-side views, streaming the markup
+ * to the client in chunks of {@code chunk-size} characters (init-param, default 8192) as it is
+ * produced. Time-to-first-byte does not depend on the size of the view data, e.g. the number of
+ * tasks rendered by the {@code Tasks} view, and memory per request stays bounded by the chunk size.
+ *
+ * A request for {@code <mapping>/index.html} renders the {@code index.html} route. The config is
+ * located by {@link StaticAppConfig#locate}.
+ */
+public class StreamingViewServlet extends HttpServlet {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int DEFAULT_CHUNK_SIZE = 8192;
+
+	private File configFile;
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+	private StaticAppConfig config;
+
+	@Override
+	public void init() throws ServletException {
+		String configPath = getInitParameter("config-path");
+		configFile = StaticAppConfig.locate(getServletContext(), configPath);
+
+		String size = getInitParameter("chunk-size");
+		if (size != null) {
+			chunkSize = Integer.parseInt(size.trim());
+		}
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response)
+			throws ServletException, IOException {
+
+		StaticAppConfig config = currentConfig();
+		StaticAppConfig.ViewRoute route = config.findRoute(request.getPathInfo() != null ? request.getPathInfo() : "/");
+		if (route == null) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+
+		response.setContentType("text/html;charset=utf-8");
+		response.setBufferSize(chunkSize);
+
+		ChunkedWriter writer = new ChunkedWriter(new OutputStreamWriter(response.getOutputStream(), "UTF-8"), chunkSize);
+		new ViewRenderer(config.getServerPrefix()).render(route.getView(), route.getData(), route.getExtras(), writer);
+		writer.flush();
+	}
+
+	private synchronized StaticAppConfig currentConfig() throws IOException {
+		if (config == null || config.isStale()) {
+			config = StaticAppConfig.load(configFile);
+		}
+		return config;
+	}
+}
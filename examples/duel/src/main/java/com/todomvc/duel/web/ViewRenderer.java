@@ -0,0 +1,57 @@
+package com.todomvc.duel.web;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.duelengine.duel.DuelContext;
+import org.duelengine.duel.DuelView;
+
+/**
+ * Renders the compiled server-side views of a static app by name.
+ */
+public class ViewRenderer {
+
+	private final String serverPrefix;
+	private final ClassLoader classLoader;
+
+	public ViewRenderer(String serverPrefix) {
+		this(serverPrefix, Thread.currentThread().getContextClassLoader());
+	}
+
+	public ViewRenderer(String serverPrefix, ClassLoader classLoader) {
+		this.serverPrefix = serverPrefix;
+		this.classLoader = classLoader;
+	}
+
+	/**
+	 * Renders the view into the output.
+	 *
+	 * @param viewName simple name of the view, e.g. {@code HomePage}
+	 * @param data the view data
+	 * @param extras the view extras, may be empty
+	 */
+	public void render(String viewName, Object data, Map<String, ?> extras, Appendable output)
+			throws IOException {
+
+		DuelContext context = new DuelContext();
+		context.setOutput(output);
+		if (extras != null && !extras.isEmpty()) {
+			context.putExtras(extras);
+		}
+
+		createView(viewName).render(context, data);
+	}
+
+	private DuelView createView(String viewName) throws IOException {
+		String className = serverPrefix + '.' + viewName;
+		try {
+			return Class.forName(className, true, classLoader).asSubclass(DuelView.class).newInstance();
+		} catch (ClassNotFoundException ex) {
+			throw new IOException("View not found: " + className, ex);
+		} catch (InstantiationException ex) {
+			throw new IOException("View cannot be created: " + className, ex);
+		} catch (IllegalAccessException ex) {
+			throw new IOException("View cannot be created: " + className, ex);
+		}
+	}
+}
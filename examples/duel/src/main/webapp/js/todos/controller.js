@@ -71,81 +71,137 @@ var todos = todos || {};
 		}
 	}
 
-	/*-- export public interface -------------------------------*/
+	function taskId(elem) {
+		while (elem && elem.tagName !== 'LI') {
+			elem = elem.parentNode;
+		}
+		return elem && elem.getAttribute('data-id');
+	}
+
+	function is(elem, className) {
+		return (' ' + elem.className + ' ').indexOf(' ' + className + ' ') >= 0;
+	}
+
+	/**
+	 * Checks whether the server-rendered app already shows the view data,
+	 * comparing each task rather than rendering the view again.
+	 */
+	function isRendered(app, data) {
+		if (!app || !find('.new-todo', app)) {
+			return false;
+		}
+
+		var items = app.querySelectorAll('.todo-list > li');
+		if (items.length !== data.tasks.length) {
+			return false;
+		}
+
+		for (var i = 0; i < items.length; i++) {
+			var task = data.tasks[i];
+			var item = items[i];
+			if (item.getAttribute('data-id') !== task.id ||
+				is(item, 'completed') !== !!task.completed ||
+				find('label', item).textContent !== task.title) {
+				return false;
+			}
+		}
 
-	// event handlers
-	todos.actions = {
-		addOnKeydown: function (e) {
+		var stats = data.stats;
+		var count = find('.todo-count strong', app);
+		if (!stats.total) {
+			return !count;
+		}
+
+		var selected = find('.filters .selected', app);
+		return !!count && count.textContent === String(stats.active) &&
+			!!selected && selected.getAttribute('href') === '#/' + stats.filter &&
+			find('.toggle-all', app).checked === !stats.active &&
+			!find('.clear-completed', app) === !stats.completed;
+	}
+
+	/*-- event handlers -------------------------------*/
+
+	// Handlers are delegated from the document so that they work on
+	// server-rendered markup as well as on views rendered by the client.
+
+	document.addEventListener('keydown', function (e) {
+		var input = e.target;
+		if (is(input, 'new-todo')) {
 			if (e.keyCode === ENTER_KEY) {
-				add(this);
+				add(input);
 			} else if (e.keyCode === ESC_KEY) {
 				refreshView();
 			}
-		},
-
-		editOnBlur: function (id) {
-			// create a closure around the ID
-			return function () {
-				edit(this, id);
-			};
-		},
-
-		editOnKeydown: function (id) {
-			// create a closure around the ID
-			return function (e) {
-				if (e.keyCode === ENTER_KEY) {
-					// just blur so doesn't get triggered twice
-					this.blur();
-				} else if (e.keyCode === ESC_KEY) {
-					reset(this, id);
-					this.blur();
-				}
-			};
-		},
-
-		removeOnClick: function (id) {
-			// create a closure around the ID
-			return function () {
-				todos.model.remove(id);
-				refreshView();
-			};
-		},
 
-		clearOnClick: function () {
-			todos.model.expunge();
-			refreshView();
-		},
-
-		editOnDblclick: function () {
-			var self = this;
-			while (self.tagName !== 'LI') {
-				self = self.parentNode;
+		} else if (is(input, 'edit')) {
+			if (e.keyCode === ENTER_KEY) {
+				// just blur so doesn't get triggered twice
+				input.blur();
+			} else if (e.keyCode === ESC_KEY) {
+				reset(input, taskId(input));
+				input.blur();
 			}
+		}
+	}, false);
 
-			self.className = 'editing';
+	// blur does not bubble, so listen while capturing
+	document.addEventListener('blur', function (e) {
+		var input = e.target;
+		if (input.className && is(input, 'edit')) {
+			edit(input, taskId(input));
+		}
+	}, true);
 
-			var input = find('input[type=text]', self);
-			if (input) {
-				input.focus();
-			}
-		},
+	document.addEventListener('change', function (e) {
+		var input = e.target;
+		if (is(input, 'toggle-all')) {
+			todos.model.toggleAll(input.checked);
+			refreshView();
 
-		completedOnChange: function (id) {
-			// create a closure around the ID
-			return function () {
-				todos.model.toggle(id, this.checked);
-				refreshView();
-			};
-		},
+		} else if (is(input, 'toggle')) {
+			todos.model.toggle(taskId(input), input.checked);
+			refreshView();
+		}
+	}, false);
 
-		toggleOnChange: function () {
-			todos.model.toggleAll(this.checked);
+	document.addEventListener('click', function (e) {
+		var button = e.target;
+		if (is(button, 'destroy')) {
+			todos.model.remove(taskId(button));
+			refreshView();
+
+		} else if (is(button, 'clear-completed')) {
+			todos.model.expunge();
 			refreshView();
 		}
-	};
+	}, false);
+
+	document.addEventListener('dblclick', function (e) {
+		var label = e.target;
+		if (label.tagName !== 'LABEL' || !taskId(label)) {
+			return;
+		}
+
+		var self = label;
+		while (self.tagName !== 'LI') {
+			self = self.parentNode;
+		}
+
+		self.className = 'editing';
+
+		var input = find('input[type=text]', self);
+		if (input) {
+			input.focus();
+		}
+	}, false);
 
 	/*-- init task list -------------------------------*/
 
-	refreshView();
+	// attach to the server-rendered app when it shows the stored tasks
+	if (isRendered(find('.todoapp'), todos.model.viewData(curFilter()))) {
+		find('.new-todo').focus();
+	} else {
+		refreshView();
+	}
 
 })(todos, window.document);
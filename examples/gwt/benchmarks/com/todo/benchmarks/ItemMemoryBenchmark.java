@@ -0,0 +1,165 @@
+package com.todo.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.todo.client.ToDoItem;
+import com.todo.client.ToDoOperation;
+import com.todo.client.ToDoSearchIndex;
+import com.todo.client.ToDoStore;
+
+/**
+ * Measures the heap used per item by the presenter, the sync between tabs and the IndexedDB storage
+ * on the JVM.
+ *
+ * Before {@link ToDoStore}, the presenter held one {@link ToDoItem} per item in a list, with a map by
+ * id and the active items copied into a filtered list; the sync kept the version, state and title of
+ * each item in a map, and the storage another such map and a map of list orders. Now the presenter
+ * holds a {@link ToDoStore}, filled by {@link ToDoOperation}s as the user adds items, and a subset of
+ * its active items. The sync reads the versions from the store, and the storage keeps the list orders
+ * in it, so neither holds anything per item. The sync and storage classes depend on GWT, so their
+ * state is built here as they build it. The search index is measured apart, as it is only built on
+ * the first search.
+ *
+ * The ids and titles are created first and shared by all, so the figures are the cost of holding
+ * them; the size of the strings is printed apart. Run with a fixed heap, e.g. {@code -Xms1g -Xmx1g},
+ * for stable figures.
+ *
+ * Usage: {@code ItemMemoryBenchmark [items...]} (default 10000 100000)
+ */
+public class ItemMemoryBenchmark {
+
+	private static final String[] WORDS = { "buy", "milk", "call", "mom", "write", "report", "fix", "bike",
+			"book", "flights", "pay", "rent", "clean", "kitchen", "review", "pull", "request", "water", "plants",
+			"plan", "meeting", "email", "team", "update", "budget", "renew", "passport", "order", "groceries" };
+
+	private static final int ROUNDS = 3;
+
+	/**
+	 * Keeps what is being measured reachable.
+	 */
+	private static Object retained;
+
+	public static void main(String[] args) {
+		int[] sizes = args.length > 0 ? new int[args.length] : new int[] { 10000, 100000 };
+		for (int i = 0; i < args.length; i++) {
+			sizes[i] = Integer.parseInt(args[i]);
+		}
+
+		for (int size : sizes) {
+			Random random = new Random(42);
+			long before = usedMemory();
+			String[] ids = new String[size];
+			String[] titles = new String[size];
+			boolean[] completed = new boolean[size];
+			for (int i = 0; i < size; i++) {
+				ids[i] = ToDoItem.newId();
+				titles[i] = title(random, i);
+				completed[i] = random.nextBoolean();
+			}
+			long strings = usedMemory() - before;
+
+			long objects = Long.MAX_VALUE;
+			long columns = Long.MAX_VALUE;
+			long index = Long.MAX_VALUE;
+			for (int round = 0; round < ROUNDS; round++) {
+				before = usedMemory();
+				retained = objects(ids, titles, completed);
+				objects = Math.min(objects, usedMemory() - before);
+				retained = null;
+
+				before = usedMemory();
+				ToDoStore store = columns(ids, titles, completed);
+				retained = new Object[] { store, store.withCompleted(false) };
+				columns = Math.min(columns, usedMemory() - before);
+
+				before = usedMemory();
+				ToDoSearchIndex searchIndex = new ToDoSearchIndex();
+				for (ToDoItem item : store) {
+					searchIndex.add(item);
+				}
+				retained = new Object[] { retained, searchIndex };
+				index = Math.min(index, usedMemory() - before);
+				retained = null;
+			}
+
+			System.out.printf("%d items%n", size);
+			System.out.printf("  %-28s %6.1f bytes/item%n", "ids and titles", (double) strings / size);
+			System.out.printf("  %-28s %6.1f bytes/item%n", "objects and maps", (double) objects / size);
+			System.out.printf("  %-28s %6.1f bytes/item%n", "store and subset", (double) columns / size);
+			System.out.printf("  %-28s %6.1f bytes/item%n", "search index", (double) index / size);
+		}
+	}
+
+	/**
+	 * The items as held before {@link ToDoStore}: the list, map and filtered copy of the presenter, the
+	 * states kept by the sync, and the states and orders kept by the storage.
+	 */
+	private static Object[] objects(String[] ids, String[] titles, boolean[] completed) {
+		List<ToDoItem> items = new ArrayList<ToDoItem>();
+		Map<String, ToDoItem> byId = new HashMap<String, ToDoItem>();
+		for (int i = 0; i < ids.length; i++) {
+			ToDoItem item = new ToDoItem(ids[i], titles[i], completed[i], 1);
+			items.add(item);
+			byId.put(ids[i], item);
+		}
+		List<ToDoItem> active = new ArrayList<ToDoItem>();
+		Map<String, String> syncStates = new HashMap<String, String>();
+		Map<String, String> storedStates = new HashMap<String, String>();
+		Map<String, Double> orders = new HashMap<String, Double>();
+		for (ToDoItem item : items) {
+			if (!item.isCompleted()) {
+				active.add(item);
+			}
+			syncStates.put(item.getId(), state(item));
+			storedStates.put(item.getId(), state(item));
+			orders.put(item.getId(), (double) orders.size());
+		}
+		return new Object[] { items, byId, active, syncStates, storedStates, orders };
+	}
+
+	/**
+	 * The store as filled by the presenter, with the version the sync gives each added item and the
+	 * order the storage gives it.
+	 */
+	private static ToDoStore columns(String[] ids, String[] titles, boolean[] completed) {
+		ToDoStore store = new ToDoStore();
+		for (int i = 0; i < ids.length; i++) {
+			ToDoOperation.add(new ToDoItem(ids[i], titles[i], completed[i]), store.size()).apply(store);
+			store.get(i).setVersion(1);
+			store.setOrder(i, i);
+		}
+		// look an item up, so that the id table is built
+		store.indexOf(ids[0]);
+		return store;
+	}
+
+	private static String state(ToDoItem item) {
+		return item.getVersion() + (item.isCompleted() ? "+" : "-") + item.getTitle();
+	}
+
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 4; i++) {
+			System.gc();
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static String title(Random random, int n) {
+		StringBuilder title = new StringBuilder();
+		int words = 2 + random.nextInt(4);
+		for (int i = 0; i < words; i++) {
+			title.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+		}
+		return title.append("task ").append(n).toString();
+	}
+}
@@ -0,0 +1,210 @@
+package com.todo.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.todo.client.ToDoItem;
+import com.todo.client.storage.ToDoListCodec;
+
+/**
+ * Compares the size and decode time of the {@link ToDoListCodec} encoding with the JSON array stored
+ * by earlier versions, on the JVM.
+ *
+ * GWT's JSON classes need a browser, so the JSON list is decoded here by a minimal parser which, like
+ * {@code JSONParser.parseStrict}, builds a tree of values that the items are then read from.
+ *
+ * Usage: {@code ListCodecBenchmark [items...]} (default 10000 100000)
+ */
+public class ListCodecBenchmark {
+
+	private static final String[] WORDS = { "buy", "milk", "call", "mom", "write", "report", "fix", "bike",
+			"book", "flights", "pay", "rent", "clean", "kitchen", "review", "pull", "request", "water", "plants",
+			"plan", "meeting", "email", "team", "update", "budget", "renew", "passport", "order", "groceries" };
+
+	private static final int WARMUP_ROUNDS = 5;
+
+	private static final int ROUNDS = 10;
+
+	public static void main(String[] args) {
+		int[] sizes = args.length > 0 ? new int[args.length] : new int[] { 10000, 100000 };
+		for (int i = 0; i < args.length; i++) {
+			sizes[i] = Integer.parseInt(args[i]);
+		}
+
+		for (int size : sizes) {
+			Random random = new Random(42);
+			List<ToDoItem> items = new ArrayList<ToDoItem>(size);
+			for (int i = 0; i < size; i++) {
+				items.add(new ToDoItem(ToDoItem.newId(), title(random, i), random.nextBoolean(), random.nextInt(5)));
+			}
+
+			String json = toJson(items);
+			String compact = ToDoListCodec.encode(items);
+			check(items, fromJson(json));
+			check(items, ToDoListCodec.decode(compact));
+
+			long[] jsonTimes = new long[ROUNDS];
+			long[] compactTimes = new long[ROUNDS];
+			for (int round = -WARMUP_ROUNDS; round < ROUNDS; round++) {
+				long start = System.nanoTime();
+				fromJson(json);
+				long jsonTime = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				ToDoListCodec.decode(compact);
+				long compactTime = System.nanoTime() - start;
+
+				if (round >= 0) {
+					jsonTimes[round] = jsonTime;
+					compactTimes[round] = compactTime;
+				}
+			}
+
+			System.out.printf("%d items%n", size);
+			print("json", json, jsonTimes);
+			print("compact", compact, compactTimes);
+		}
+	}
+
+	private static String title(Random random, int n) {
+		StringBuilder title = new StringBuilder();
+		int words = 2 + random.nextInt(4);
+		for (int i = 0; i < words; i++) {
+			title.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+		}
+		return title.append("task ").append(n).toString();
+	}
+
+	private static void check(List<ToDoItem> expected, List<ToDoItem> actual) {
+		for (int i = 0; i < expected.size(); i++) {
+			ToDoItem a = expected.get(i);
+			ToDoItem b = actual.get(i);
+			if (!a.getId().equals(b.getId()) || !a.getTitle().equals(b.getTitle())
+					|| a.isCompleted() != b.isCompleted() || a.getVersion() != b.getVersion()) {
+				throw new IllegalStateException("Item " + i + " differs after decoding");
+			}
+		}
+	}
+
+	private static void print(String format, String data, long[] nanos) {
+		long[] sorted = nanos.clone();
+		Arrays.sort(sorted);
+		System.out.printf("  %-8s %10d chars  decode p50 %8.2f ms  min %8.2f ms%n", format, data.length(),
+				sorted[sorted.length / 2] / 1e6, sorted[0] / 1e6);
+	}
+
+	/**
+	 * Encodes the items as earlier versions stored them.
+	 */
+	private static String toJson(List<ToDoItem> items) {
+		StringBuilder out = new StringBuilder("[");
+		for (int i = 0; i < items.size(); i++) {
+			ToDoItem item = items.get(i);
+			if (i > 0) {
+				out.append(',');
+			}
+			out.append("{\"id\":");
+			quote(item.getId(), out);
+			out.append(",\"task\":");
+			quote(item.getTitle(), out);
+			out.append(",\"complete\":").append(item.isCompleted());
+			out.append(",\"version\":").append(item.getVersion()).append('}');
+		}
+		return out.append(']').toString();
+	}
+
+	private static void quote(String value, StringBuilder out) {
+		out.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char ch = value.charAt(i);
+			if (ch == '"' || ch == '\\') {
+				out.append('\\');
+			}
+			out.append(ch);
+		}
+		out.append('"');
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<ToDoItem> fromJson(String json) {
+		List<Object> array = (List<Object>) new JsonParser(json).value();
+		List<ToDoItem> items = new ArrayList<ToDoItem>(array.size());
+		for (Object value : array) {
+			Map<String, Object> object = (Map<String, Object>) value;
+			items.add(new ToDoItem((String) object.get("id"), (String) object.get("task"),
+				(Boolean) object.get("complete"), ((Double) object.get("version")).intValue()));
+		}
+		return items;
+	}
+
+	/**
+	 * Parses the subset of JSON used by the stored list.
+	 */
+	private static class JsonParser {
+
+		private final String json;
+
+		private int pos;
+
+		JsonParser(String json) {
+			this.json = json;
+		}
+
+		Object value() {
+			char ch = json.charAt(pos);
+			switch (ch) {
+				case '[':
+					List<Object> array = new ArrayList<Object>();
+					pos++;
+					while (json.charAt(pos) != ']') {
+						array.add(value());
+						if (json.charAt(pos) == ',') {
+							pos++;
+						}
+					}
+					pos++;
+					return array;
+				case '{':
+					Map<String, Object> object = new HashMap<String, Object>();
+					pos++;
+					while (json.charAt(pos) != '}') {
+						String key = string();
+						pos++; // ':'
+						object.put(key, value());
+						if (json.charAt(pos) == ',') {
+							pos++;
+						}
+					}
+					pos++;
+					return object;
+				case '"':
+					return string();
+				case 't':
+					pos += 4;
+					return Boolean.TRUE;
+				case 'f':
+					pos += 5;
+					return Boolean.FALSE;
+				default:
+					int start = pos;
+					while (pos < json.length() && "-+.eE0123456789".indexOf(json.charAt(pos)) >= 0) {
+						pos++;
+					}
+					return Double.valueOf(json.substring(start, pos));
+			}
+		}
+
+		private String string() {
+			StringBuilder value = new StringBuilder();
+			pos++;
+			for (char ch = json.charAt(pos++); ch != '"'; ch = json.charAt(pos++)) {
+				value.append(ch == '\\' ? json.charAt(pos++) : ch);
+			}
+			return value.toString();
+		}
+	}
+}
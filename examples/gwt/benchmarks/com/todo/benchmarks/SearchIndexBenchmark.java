@@ -0,0 +1,104 @@
+package com.todo.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.todo.client.ToDoItem;
+import com.todo.client.ToDoSearchIndex;
+
+/**
+ * Measures update and query latency of the {@link ToDoSearchIndex} on the JVM.
+ *
+ * Usage: {@code SearchIndexBenchmark [items]} (default 100000)
+ */
+public class SearchIndexBenchmark {
+
+	private static final String[] WORDS = { "buy", "milk", "call", "mom", "write", "report", "fix", "bike",
+			"book", "flights", "pay", "rent", "clean", "kitchen", "review", "pull", "request", "water", "plants",
+			"plan", "meeting", "email", "team", "update", "budget", "renew", "passport", "order", "groceries" };
+
+	private static final int WARMUP_ROUNDS = 2;
+
+	private static final int OPERATIONS = 10000;
+
+	public static void main(String[] args) {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		Random random = new Random(42);
+
+		List<ToDoItem> items = new ArrayList<ToDoItem>(size);
+		for (int i = 0; i < size; i++) {
+			items.add(new ToDoItem(title(random, i)));
+		}
+
+		for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+			boolean report = round == WARMUP_ROUNDS;
+			ToDoSearchIndex index = new ToDoSearchIndex();
+
+			long start = System.nanoTime();
+			for (ToDoItem item : items) {
+				index.add(item);
+			}
+			long build = System.nanoTime() - start;
+
+			long[] adds = new long[OPERATIONS];
+			long[] edits = new long[OPERATIONS];
+			long[] removes = new long[OPERATIONS];
+			for (int i = 0; i < OPERATIONS; i++) {
+				ToDoItem added = new ToDoItem(title(random, size + i));
+				start = System.nanoTime();
+				index.add(added);
+				adds[i] = System.nanoTime() - start;
+
+				ToDoItem edited = items.get(random.nextInt(size));
+				edited.setTitle(title(random, i));
+				start = System.nanoTime();
+				index.update(edited);
+				edits[i] = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				index.remove(added);
+				removes[i] = System.nanoTime() - start;
+			}
+
+			String[] queries = { "milk", "mi", "b", "buy milk", "task 12345", "passport renew", "nomatch" };
+			long[][] queryTimes = new long[queries.length][OPERATIONS / 10];
+			int[] matches = new int[queries.length];
+			for (int q = 0; q < queries.length; q++) {
+				for (int i = 0; i < queryTimes[q].length; i++) {
+					start = System.nanoTime();
+					matches[q] = index.search(queries[q]).size();
+					queryTimes[q][i] = System.nanoTime() - start;
+				}
+			}
+
+			if (report) {
+				System.out.printf("%d items, index built in %.1f ms%n", size, build / 1e6);
+				print("add", adds);
+				print("edit", edits);
+				print("remove", removes);
+				for (int q = 0; q < queries.length; q++) {
+					print("query \"" + queries[q] + "\" (" + matches[q] + " matches)", queryTimes[q]);
+				}
+			}
+		}
+	}
+
+	private static String title(Random random, int n) {
+		StringBuilder title = new StringBuilder();
+		int words = 2 + random.nextInt(4);
+		for (int i = 0; i < words; i++) {
+			title.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+		}
+		return title.append("task ").append(n).toString();
+	}
+
+	private static void print(String operation, long[] nanos) {
+		long[] sorted = nanos.clone();
+		Arrays.sort(sorted);
+		System.out.printf("%-40s p50 %8.1f us  p99 %8.1f us  max %8.1f us%n", operation,
+				sorted[sorted.length / 2] / 1e3, sorted[sorted.length * 99 / 100] / 1e3,
+				sorted[sorted.length - 1] / 1e3);
+	}
+}
@@ -0,0 +1,59 @@
+package com.todo.server;
+
+import java.util.Map;
+
+/**
+ * A change of a single item, in the format the client posts to other tabs:
+ * {@code {"id", "task", "complete", "version", "after"}}, or {@code {"id", "version", "removed": true}}.
+ * {@code after} is the id of the preceding item in the list of the client, if any.
+ */
+record Change(String id, String title, boolean completed, int version, boolean removed, String after) {
+
+	static Change fromJson(Object json) {
+		if (!(json instanceof Map<?, ?> object) || !(object.get("id") instanceof String id)
+				|| !(object.get("version") instanceof Double version)) {
+			throw new IllegalArgumentException("Invalid change: " + json);
+		}
+		if (Boolean.TRUE.equals(object.get("removed"))) {
+			return new Change(id, "", false, version.intValue(), true, null);
+		}
+		if (!(object.get("task") instanceof String title) || !(object.get("complete") instanceof Boolean completed)) {
+			throw new IllegalArgumentException("Invalid change: " + json);
+		}
+		return new Change(id, title, completed, version.intValue(), false,
+			object.get("after") instanceof String after ? after : null);
+	}
+
+	StringBuilder toJson(StringBuilder out) {
+		Json.quote(id, out.append("{\"id\":"));
+		if (removed) {
+			out.append(",\"removed\":true");
+		} else {
+			Json.quote(title, out.append(",\"task\":"));
+			out.append(",\"complete\":").append(completed);
+			if (after != null) {
+				Json.quote(after, out.append(",\"after\":"));
+			}
+		}
+		return out.append(",\"version\":").append(version).append('}');
+	}
+
+	/**
+	 * Whether this change wins over the given change of the same item. The rule is the one the clients
+	 * apply between tabs: the higher version wins, and on equal versions a removal wins, otherwise the
+	 * greater state.
+	 */
+	boolean supersedes(Change other) {
+		if (version != other.version) {
+			return version > other.version;
+		}
+		if (removed || other.removed) {
+			return removed && !other.removed;
+		}
+		return state().compareTo(other.state()) > 0;
+	}
+
+	private String state() {
+		return (completed ? "+" : "-") + title;
+	}
+}
@@ -0,0 +1,207 @@
+package com.todo.server;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The small subset of JSON used by the sync protocol. Objects are parsed into maps, arrays into lists,
+ * numbers into doubles.
+ */
+final class Json {
+
+	private final String text;
+	private int pos;
+
+	private Json(String text) {
+		this.text = text;
+	}
+
+	/**
+	 * Parses a JSON value.
+	 *
+	 * @throws IllegalArgumentException if the text is not valid JSON
+	 */
+	static Object parse(String text) {
+		Json json = new Json(text);
+		Object value = json.value();
+		json.skipWhitespace();
+		if (json.pos != text.length()) {
+			throw json.error("Unexpected content");
+		}
+		return value;
+	}
+
+	/**
+	 * Appends the string as a quoted JSON string.
+	 */
+	static StringBuilder quote(String value, StringBuilder out) {
+		out.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char ch = value.charAt(i);
+			switch (ch) {
+				case '"': out.append("\\\""); break;
+				case '\\': out.append("\\\\"); break;
+				case '\n': out.append("\\n"); break;
+				case '\r': out.append("\\r"); break;
+				case '\t': out.append("\\t"); break;
+				default:
+					if (ch < 0x20 || ch == '\u2028' || ch == '\u2029') {
+						out.append(String.format("\\u%04x", (int) ch));
+					} else {
+						out.append(ch);
+					}
+			}
+		}
+		return out.append('"');
+	}
+
+	private Object value() {
+		skipWhitespace();
+		if (pos >= text.length()) {
+			throw error("Unexpected end");
+		}
+		char ch = text.charAt(pos);
+		switch (ch) {
+			case '{': return object();
+			case '[': return array();
+			case '"': return string();
+			case 't': return literal("true", Boolean.TRUE);
+			case 'f': return literal("false", Boolean.FALSE);
+			case 'n': return literal("null", null);
+			default:
+				if (ch == '-' || (ch >= '0' && ch <= '9')) {
+					return number();
+				}
+				throw error("Unexpected character");
+		}
+	}
+
+	private Map<String, Object> object() {
+		Map<String, Object> object = new LinkedHashMap<>();
+		pos++;
+		skipWhitespace();
+		if (peek() == '}') {
+			pos++;
+			return object;
+		}
+		while (true) {
+			skipWhitespace();
+			if (peek() != '"') {
+				throw error("Expected a key");
+			}
+			String key = string();
+			skipWhitespace();
+			expect(':');
+			object.put(key, value());
+			skipWhitespace();
+			if (peek() == ',') {
+				pos++;
+			} else {
+				expect('}');
+				return object;
+			}
+		}
+	}
+
+	private List<Object> array() {
+		List<Object> array = new ArrayList<>();
+		pos++;
+		skipWhitespace();
+		if (peek() == ']') {
+			pos++;
+			return array;
+		}
+		while (true) {
+			array.add(value());
+			skipWhitespace();
+			if (peek() == ',') {
+				pos++;
+			} else {
+				expect(']');
+				return array;
+			}
+		}
+	}
+
+	private String string() {
+		pos++;
+		StringBuilder out = new StringBuilder();
+		while (pos < text.length()) {
+			char ch = text.charAt(pos++);
+			if (ch == '"') {
+				return out.toString();
+			}
+			if (ch != '\\') {
+				out.append(ch);
+				continue;
+			}
+			if (pos >= text.length()) {
+				break;
+			}
+			char escaped = text.charAt(pos++);
+			switch (escaped) {
+				case 'b': out.append('\b'); break;
+				case 'f': out.append('\f'); break;
+				case 'n': out.append('\n'); break;
+				case 'r': out.append('\r'); break;
+				case 't': out.append('\t'); break;
+				case 'u':
+					if (pos + 4 > text.length()) {
+						throw error("Invalid escape");
+					}
+					try {
+						out.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+					} catch (NumberFormatException e) {
+						throw error("Invalid escape");
+					}
+					pos += 4;
+					break;
+				default: out.append(escaped);
+			}
+		}
+		throw error("Unterminated string");
+	}
+
+	private Double number() {
+		int start = pos;
+		while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+			pos++;
+		}
+		try {
+			return Double.valueOf(text.substring(start, pos));
+		} catch (NumberFormatException e) {
+			throw error("Invalid number");
+		}
+	}
+
+	private Object literal(String literal, Object value) {
+		if (!text.startsWith(literal, pos)) {
+			throw error("Unexpected character");
+		}
+		pos += literal.length();
+		return value;
+	}
+
+	private char peek() {
+		return pos < text.length() ? text.charAt(pos) : 0;
+	}
+
+	private void expect(char ch) {
+		if (peek() != ch) {
+			throw error("Expected '" + ch + "'");
+		}
+		pos++;
+	}
+
+	private void skipWhitespace() {
+		while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+			pos++;
+		}
+	}
+
+	private IllegalArgumentException error(String message) {
+		return new IllegalArgumentException(message + " at " + pos);
+	}
+}
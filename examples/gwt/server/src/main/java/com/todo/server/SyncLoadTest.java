@@ -0,0 +1,166 @@
+package com.todo.server;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test of the sync service, simulating many clients syncing at the same time, each on a virtual
+ * thread. The clients are grouped into lists, like the tabs of one user. Every client owns a few items
+ * of its list and on each round edits one of them, syncs, and checks that the response only holds
+ * changes of other clients. Without a URL, a server with an in-memory store is started in this process.
+ *
+ * Usage: {@code SyncLoadTest [--url <sync url>] [--clients <n>] [--tabs <clients per list>] [--rounds <n>]
+ * [--items <n>]}
+ */
+public class SyncLoadTest {
+
+	private final HttpClient http;
+	private final URI uri;
+	private final int tabs;
+	private final int rounds;
+	private final int items;
+
+	private final AtomicLong received = new AtomicLong();
+	private final AtomicInteger failures = new AtomicInteger();
+
+	public SyncLoadTest(HttpClient http, URI uri, int tabs, int rounds, int items) {
+		this.http = http;
+		this.uri = uri;
+		this.tabs = tabs;
+		this.rounds = rounds;
+		this.items = items;
+	}
+
+	public static void main(String[] args) throws Exception {
+		String url = null;
+		int clients = 2000;
+		int tabs = 4;
+		int rounds = 20;
+		int items = 5;
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			switch (args[i]) {
+				case "--url" -> url = args[i + 1];
+				case "--clients" -> clients = Integer.parseInt(args[i + 1]);
+				case "--tabs" -> tabs = Integer.parseInt(args[i + 1]);
+				case "--rounds" -> rounds = Integer.parseInt(args[i + 1]);
+				case "--items" -> items = Integer.parseInt(args[i + 1]);
+				default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+			}
+		}
+
+		SyncServer server = null;
+		if (url == null) {
+			server = new SyncServer(TodoStore.inMemory(), 0, null);
+			server.start();
+			url = "http://localhost:" + server.getPort() + "/sync";
+		}
+
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			HttpClient http = HttpClient.newBuilder()
+				.executor(executor)
+				.connectTimeout(Duration.ofSeconds(30))
+				.build();
+			new SyncLoadTest(http, URI.create(url), tabs, rounds, items).run(clients, executor);
+		} finally {
+			if (server != null) {
+				server.stop();
+			}
+		}
+	}
+
+	public void run(int clients, ExecutorService executor) throws InterruptedException {
+		long[][] latencies = new long[clients][];
+		CountDownLatch start = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(clients);
+
+		for (int c = 0; c < clients; c++) {
+			int client = c;
+			executor.submit(() -> {
+				try {
+					start.await();
+					latencies[client] = runClient("list-" + client / tabs, "load-" + client);
+				} catch (Exception e) {
+					failures.incrementAndGet();
+				} finally {
+					done.countDown();
+				}
+			});
+		}
+
+		long started = System.nanoTime();
+		start.countDown();
+		done.await();
+		double seconds = (System.nanoTime() - started) / 1e9;
+
+		long[] all = Arrays.stream(latencies).filter(l -> l != null).flatMapToLong(Arrays::stream).sorted().toArray();
+		System.out.printf("Sync load: %d clients in lists of %d x %d rounds, %d requests in %.2f s, %.0f requests/s%n",
+			clients, tabs, rounds, all.length, seconds, all.length / seconds);
+		if (all.length > 0) {
+			System.out.printf("Latency (ms): p50 %.2f, p90 %.2f, p99 %.2f, max %.2f%n",
+				percentile(all, 0.50), percentile(all, 0.90), percentile(all, 0.99), all[all.length - 1] / 1e6);
+		}
+		System.out.println("Remote changes received: " + received.get() + ", failed clients: " + failures.get());
+	}
+
+	/**
+	 * Runs the rounds of one client and returns the latency of each request, in nanoseconds.
+	 */
+	private long[] runClient(String list, String client) throws Exception {
+		long[] latencies = new long[rounds];
+		int[] versions = new int[items];
+		String epoch = null;
+		long since = 0;
+
+		for (int round = 0; round < rounds; round++) {
+			int item = round % items;
+			versions[item]++;
+			Change change = new Change(client + "-" + item, "Task " + item + " of " + client, round % 2 == 0,
+				versions[item], false, null);
+			StringBuilder body = Json.quote(list, new StringBuilder("{\"list\":"));
+			Json.quote(client, body.append(",\"client\":"));
+			if (epoch != null) {
+				Json.quote(epoch, body.append(",\"epoch\":"));
+			}
+			body.append(",\"since\":").append(since).append(",\"changes\":[");
+			change.toJson(body).append("]}");
+
+			long sent = System.nanoTime();
+			HttpResponse<String> response = http.send(HttpRequest.newBuilder(uri)
+					.header("Content-Type", "application/json")
+					.POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+					.build(),
+				HttpResponse.BodyHandlers.ofString());
+			latencies[round] = System.nanoTime() - sent;
+
+			if (response.statusCode() != 200) {
+				throw new IllegalStateException("HTTP " + response.statusCode() + ": " + response.body());
+			}
+			Map<?, ?> result = (Map<?, ?>) Json.parse(response.body());
+			epoch = (String) result.get("epoch");
+			since = ((Double) result.get("version")).longValue();
+			List<?> changes = (List<?>) result.get("changes");
+			for (Object remote : changes) {
+				if (Change.fromJson(remote).id().startsWith(client + "-")) {
+					throw new IllegalStateException("Own change sent back to " + client);
+				}
+			}
+			received.addAndGet(changes.size());
+		}
+		return latencies;
+	}
+
+	private static double percentile(long[] sorted, double p) {
+		return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))] / 1e6;
+	}
+}
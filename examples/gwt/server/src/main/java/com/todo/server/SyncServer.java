@@ -0,0 +1,187 @@
+package com.todo.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * HTTP service the GWT ToDo clients sync their items with. Each request is handled on its own virtual
+ * thread.
+ *
+ * <pre>
+ * POST /sync
+ * {"list": "&lt;list&gt;", "client": "&lt;tab id&gt;", "epoch": "&lt;epoch&gt;", "since": &lt;version&gt;,
+ *  "changes": [&lt;change&gt;...]}
+ *
+ * 200
+ * {"epoch": "&lt;epoch&gt;", "version": &lt;version&gt;, "changes": [&lt;change&gt;...]}
+ * </pre>
+ *
+ * A client sends the changes made since its previous sync together with the store epoch and version it
+ * received then, and receives only the changes made by other clients after that version. When the epoch
+ * differs, e.g. after an in-memory server restarted, it receives every change of the list instead, see
+ * {@link TodoStore}. The changes are those
+ * the tabs exchange, see {@link Change}. Lists are independent, the default list is {@code default}.
+ *
+ * The application itself can be served from a directory, so that it syncs with the same origin.
+ *
+ * Usage: {@code SyncServer [--port <port>] [--journal <file>] [--static <dir>]}
+ */
+public class SyncServer {
+
+	private static final String JSON = "application/json; charset=utf-8";
+
+	static {
+		// keep the connections of many polling clients open, the JDK server closes idle connections above 200
+		if (System.getProperty("sun.net.httpserver.maxIdleConnections") == null) {
+			System.setProperty("sun.net.httpserver.maxIdleConnections", "100000");
+		}
+	}
+
+	private final TodoStore store;
+	private final HttpServer server;
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+	/**
+	 * @param staticDir directory served under {@code /}, or null
+	 */
+	public SyncServer(TodoStore store, int port, Path staticDir) throws IOException {
+		this.store = store;
+		server = HttpServer.create(new InetSocketAddress(port), 4096);
+		server.setExecutor(executor);
+		server.createContext("/sync", this::handleSync);
+		if (staticDir != null) {
+			server.createContext("/", exchange -> handleStatic(exchange, staticDir));
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		int port = 8080;
+		Path journal = null;
+		Path staticDir = null;
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (i + 1 >= args.length) {
+				throw new IllegalArgumentException("Usage: SyncServer [--port <port>] [--journal <file>] [--static <dir>]");
+			}
+			switch (arg) {
+				case "--port" -> port = Integer.parseInt(args[++i]);
+				case "--journal" -> journal = Paths.get(args[++i]);
+				case "--static" -> staticDir = Paths.get(args[++i]).toAbsolutePath().normalize();
+				default -> throw new IllegalArgumentException("Unknown option: " + arg);
+			}
+		}
+
+		TodoStore store = journal != null ? TodoStore.open(journal) : TodoStore.inMemory();
+		SyncServer server = new SyncServer(store, port, staticDir);
+		server.start();
+		System.out.println("Sync server: listening on port " + server.getPort() + ", " + store.size() + " items"
+			+ (journal != null ? " in " + journal : " in memory"));
+	}
+
+	public void start() {
+		server.start();
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	public void stop() {
+		server.stop(0);
+		executor.shutdown();
+	}
+
+	private void handleSync(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			if (!"POST".equals(exchange.getRequestMethod())) {
+				exchange.getResponseHeaders().set("Allow", "POST");
+				send(exchange, 405, "{\"error\":\"POST only\"}");
+				return;
+			}
+
+			String list;
+			String client;
+			String epoch;
+			long since;
+			List<Change> changes = new ArrayList<>();
+			try {
+				String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+				if (!(Json.parse(body) instanceof Map<?, ?> request)
+						|| !(request.get("client") instanceof String id) || id.isEmpty()) {
+					throw new IllegalArgumentException("Missing client");
+				}
+				client = id;
+				list = request.get("list") instanceof String name && !name.isEmpty() ? name : "default";
+				epoch = request.get("epoch") instanceof String value && !value.isEmpty() ? value : null;
+				since = request.get("since") instanceof Double version ? version.longValue() : 0;
+				if (request.get("changes") instanceof List<?> posted) {
+					for (Object change : posted) {
+						changes.add(Change.fromJson(change));
+					}
+				}
+			} catch (IllegalArgumentException e) {
+				send(exchange, 400, Json.quote(e.getMessage(), new StringBuilder("{\"error\":")).append('}').toString());
+				return;
+			}
+
+			TodoStore.SyncResult result = store.sync(list, client, epoch, since, changes);
+			StringBuilder response = new StringBuilder(128 + result.changes().size() * 64);
+			Json.quote(result.epoch(), response.append("{\"epoch\":"));
+			response.append(",\"version\":").append(result.version()).append(",\"changes\":[");
+			for (int i = 0; i < result.changes().size(); i++) {
+				if (i > 0) {
+					response.append(',');
+				}
+				result.changes().get(i).toJson(response);
+			}
+			send(exchange, 200, response.append("]}").toString());
+		}
+	}
+
+	private static void handleStatic(HttpExchange exchange, Path staticDir) throws IOException {
+		try (exchange) {
+			String path = exchange.getRequestURI().getPath();
+			Path file = staticDir.resolve(path.substring(1)).normalize();
+			if (Files.isDirectory(file)) {
+				file = file.resolve("index.html");
+			}
+			if (!file.startsWith(staticDir) || !Files.isRegularFile(file)) {
+				exchange.sendResponseHeaders(404, -1);
+				return;
+			}
+
+			String type = Files.probeContentType(file);
+			if (type != null) {
+				exchange.getResponseHeaders().set("Content-Type", type);
+			}
+			exchange.sendResponseHeaders(200, Files.size(file));
+			try (InputStream in = Files.newInputStream(file); OutputStream out = exchange.getResponseBody()) {
+				in.transferTo(out);
+			}
+		}
+	}
+
+	private static void send(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", JSON);
+		exchange.getResponseHeaders().set("Cache-Control", "no-store");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+}
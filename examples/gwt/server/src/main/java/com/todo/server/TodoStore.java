@@ -0,0 +1,216 @@
+package com.todo.server;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Holds the todo lists the clients sync with. For each list, the store keeps the latest accepted change
+ * of every item, removals included, each stamped with the list version at which it was accepted. A
+ * client which last synced at version {@code v} receives the changes stamped after {@code v}, which are
+ * looked up by range rather than by scanning all items. Lists are locked independently.
+ *
+ * The store is held in memory. When a journal file is given, every accepted change is appended to it
+ * and the journal is replayed on open.
+ *
+ * Versions only mean something within one store: an in-memory store starts again from version 0 when
+ * the server restarts. Each store therefore has an epoch, sent with every sync. A client which synced
+ * with another epoch, or which is ahead of the list, receives every change of the list again, and
+ * learns from the new epoch that the server may be missing its own items. A journal keeps its epoch on
+ * its first line.
+ */
+public class TodoStore implements Closeable {
+
+	/**
+	 * The result of a sync: the list version the client is now in step with, and the changes made by
+	 * other clients since its previous sync.
+	 */
+	public record SyncResult(String epoch, long version, List<Change> changes) {
+	}
+
+	private record Entry(Change change, String origin, long version) {
+	}
+
+	/**
+	 * The items of one list. Locks rather than synchronized, which would pin the carrier thread of the
+	 * virtual threads.
+	 */
+	private static class TodoList {
+
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Map<String, Entry> items = new HashMap<>();
+		private final TreeMap<Long, Entry> byVersion = new TreeMap<>();
+		private long version;
+
+		private boolean accept(Change change, String origin) {
+			Entry current = items.get(change.id());
+			if (current != null) {
+				if (!change.supersedes(current.change())) {
+					return false;
+				}
+				byVersion.remove(current.version());
+			}
+			Entry entry = new Entry(change, origin, ++version);
+			items.put(change.id(), entry);
+			byVersion.put(entry.version(), entry);
+			return true;
+		}
+	}
+
+	private final ConcurrentMap<String, TodoList> lists = new ConcurrentHashMap<>();
+	private final ReentrantLock journalLock = new ReentrantLock();
+	private final String epoch;
+	private BufferedWriter journal;
+
+	private TodoStore(String epoch) {
+		this.epoch = epoch;
+	}
+
+	public static TodoStore inMemory() {
+		return new TodoStore(UUID.randomUUID().toString());
+	}
+
+	/**
+	 * Opens a store backed by the journal file, which is created if missing.
+	 */
+	public static TodoStore open(Path journalFile) throws IOException {
+		List<String> lines = Files.isRegularFile(journalFile)
+			? Files.readAllLines(journalFile, StandardCharsets.UTF_8) : List.of();
+
+		String epoch = null;
+		if (!lines.isEmpty() && Json.parse(lines.get(0)) instanceof Map<?, ?> header
+				&& header.get("epoch") instanceof String value) {
+			epoch = value;
+		}
+		// a journal written before epochs were introduced gets a new one on every start
+		TodoStore store = new TodoStore(epoch != null ? epoch : UUID.randomUUID().toString());
+
+		for (int i = epoch != null ? 1 : 0; i < lines.size(); i++) {
+			String line = lines.get(i);
+			if (line.isBlank()) {
+				continue;
+			}
+			Map<?, ?> record = (Map<?, ?>) Json.parse(line);
+			store.list((String) record.get("list")).accept(Change.fromJson(record.get("change")),
+				(String) record.get("origin"));
+		}
+		store.journal = Files.newBufferedWriter(journalFile, StandardCharsets.UTF_8,
+			StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		if (lines.isEmpty()) {
+			store.journal.write(Json.quote(store.epoch, new StringBuilder("{\"epoch\":")).append("}\n").toString());
+			store.journal.flush();
+		}
+		return store;
+	}
+
+	/**
+	 * Gets the epoch of this store, which changes when the versions of its lists start again.
+	 */
+	public String epoch() {
+		return epoch;
+	}
+
+	/**
+	 * Applies the changes of a client and returns the changes of the other clients since the given version.
+	 *
+	 * @param listName the list the client syncs
+	 * @param client identifies the client, whose own changes are not sent back to it
+	 * @param clientEpoch the epoch of the previous sync of the client, null when not known
+	 * @param since the list version of the previous sync of the client, 0 for the first one
+	 */
+	public SyncResult sync(String listName, String client, String clientEpoch, long since, List<Change> changes)
+			throws IOException {
+		TodoList list = list(listName);
+		List<Change> accepted = new ArrayList<>(changes.size());
+		List<Change> remote = new ArrayList<>();
+		long version;
+
+		list.lock.lock();
+		try {
+			for (Change change : changes) {
+				if (list.accept(change, client)) {
+					accepted.add(change);
+				}
+			}
+			if ((clientEpoch != null && !clientEpoch.equals(epoch)) || since > list.version) {
+				// the version is from another store, or from this one before it lost changes
+				since = 0;
+			}
+			for (Entry entry : list.byVersion.tailMap(since, false).values()) {
+				if (!entry.origin().equals(client)) {
+					remote.add(entry.change());
+				}
+			}
+			version = list.version;
+
+			if (journal != null && !accepted.isEmpty()) {
+				// still holding the list lock, so the journal has the changes of a list in version order
+				journal(listName, client, accepted);
+			}
+		} finally {
+			list.lock.unlock();
+		}
+		return new SyncResult(epoch, version, remote);
+	}
+
+	/**
+	 * Gets the number of items in all lists, removed items included.
+	 */
+	public int size() {
+		int size = 0;
+		for (TodoList list : lists.values()) {
+			list.lock.lock();
+			try {
+				size += list.items.size();
+			} finally {
+				list.lock.unlock();
+			}
+		}
+		return size;
+	}
+
+	private TodoList list(String name) {
+		return lists.computeIfAbsent(name, key -> new TodoList());
+	}
+
+	private void journal(String listName, String client, List<Change> changes) throws IOException {
+		StringBuilder lines = new StringBuilder();
+		for (Change change : changes) {
+			Json.quote(listName, lines.append("{\"list\":"));
+			Json.quote(client, lines.append(",\"origin\":"));
+			change.toJson(lines.append(",\"change\":")).append("}\n");
+		}
+		journalLock.lock();
+		try {
+			journal.write(lines.toString());
+			journal.flush();
+		} finally {
+			journalLock.unlock();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (journal != null) {
+			journalLock.lock();
+			try {
+				journal.close();
+			} finally {
+				journalLock.unlock();
+			}
+		}
+	}
+}
@@ -1,17 +1,63 @@
 package com.todo.client;
 
 import com.google.gwt.core.client.EntryPoint;
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.core.client.RunAsyncCallback;
+import com.google.gwt.user.client.Window;
 import com.google.gwt.user.client.ui.RootPanel;
+import com.todo.client.storage.IndexedDbToDoPersistence;
+import com.todo.client.storage.LocalStorageToDoPersistence;
+import com.todo.client.storage.ToDoListWorker;
+import com.todo.client.storage.ToDoPersistence;
+import com.todo.client.sync.ServerSync;
+import com.todo.client.sync.ToDoSync;
+import com.todo.client.sync.ToDoSyncChannel;
 
 /**
- * Entry point class
+ * Entry point class. The view is shown first; the presenter, storage and sync code, with the JSON
+ * module they use, are loaded in a fragment of their own once the page is displayed.
  */
 public class GwtToDo implements EntryPoint {
 
 	@Override
 	public void onModuleLoad() {
-		ToDoView toDoView = new ToDoView();
-		new ToDoPresenter(toDoView);
+		final ToDoView toDoView = new ToDoView();
 		RootPanel.get().add(toDoView);
+
+		GWT.runAsync(ToDoPresenter.class, new RunAsyncCallback() {
+			@Override
+			public void onSuccess() {
+				start(toDoView);
+			}
+
+			@Override
+			public void onFailure(Throwable reason) {
+				Window.alert("The application could not be loaded, please reload the page.");
+			}
+		});
 	}
+
+	private static void start(ToDoView toDoView) {
+		// encode and decode the list stored in local storage in a worker, where supported
+		ToDoListWorker worker = ToDoListWorker.create();
+		ToDoPersistence persistence = IndexedDbToDoPersistence.isSupported()
+			? new IndexedDbToDoPersistence(worker)
+			: new LocalStorageToDoPersistence(worker);
+		// sync with the server when the page is served by it, see server/
+		ServerSync serverSync = Window.Location.getProtocol().startsWith("http")
+			? new ServerSync(GWT.getHostPageBaseURL() + "sync", "default")
+			: null;
+		ToDoPresenter presenter = new ToDoPresenter(toDoView,
+			new ToDoSync(persistence, ToDoSyncChannel.create(), serverSync));
+		exportStorageTimings(presenter);
+	}
+
+	/**
+	 * Lets the storage timings be read from the browser console, with {@code todoStorageTimings()}.
+	 */
+	private static native void exportStorageTimings(ToDoPresenter presenter) /*-{
+		$wnd.todoStorageTimings = $entry(function() {
+			return presenter.@com.todo.client.ToDoPresenter::getStorageTimings()().@java.lang.Object::toString()();
+		});
+	}-*/;
 }
@@ -11,14 +11,11 @@ import com.google.gwt.dom.client.EventTarget;
 import com.google.gwt.dom.client.InputElement;
 import com.google.gwt.dom.client.NativeEvent;
 import com.google.gwt.event.dom.client.KeyCodes;
-import com.google.gwt.event.shared.EventBus;
 import com.google.gwt.safehtml.client.SafeHtmlTemplates;
 import com.google.gwt.safehtml.shared.SafeHtml;
 import com.google.gwt.safehtml.shared.SafeHtmlBuilder;
 import com.google.gwt.safehtml.shared.SafeHtmlUtils;
-import com.todo.client.events.ToDoEvent;
-import com.todo.client.events.ToDoRemovedEvent;
-import com.todo.client.events.ToDoUpdatedEvent;
+import com.todo.client.events.ToDoEventChannel;
 
 /**
  * A cell that renders {@link ToDoItem} instances. This cell is rendered in both view and edit modes
@@ -73,11 +70,20 @@ public class ToDoCell extends AbstractCell<ToDoItem> {
 	 */
 	private boolean beginningEdit = false;
 
-	private EventBus eventBus;
+	/**
+	 * The channel to the presenter
+	 */
+	private ToDoEventChannel events;
 
 	public ToDoCell() {
 		super("click", "keyup", "blur", "dblclick");
-		eventBus = ToDoEvent.getGlobalEventBus();
+	}
+
+	/**
+	 * Sets the channel on which the changes made by the user are fired.
+	 */
+	public void setEventChannel(ToDoEventChannel events) {
+		this.events = events;
 	}
 
 	@Override
@@ -161,8 +167,9 @@ public class ToDoCell extends AbstractCell<ToDoItem> {
 
 					// if so, synchronize the model state
 					InputElement input = clickedElement.cast();
+					boolean previousCompleted = value.isCompleted();
 					value.setCompleted(input.isChecked());
-					eventBus.fireEvent(new ToDoUpdatedEvent(value));
+					events.fireUpdated(value, value.getTitle(), previousCompleted);
 
 					// update the 'row' style
 					if (input.isChecked()) {
@@ -173,7 +180,7 @@ public class ToDoCell extends AbstractCell<ToDoItem> {
 
 				} else if (tagName.equals("BUTTON")) {
 					// if the delete anchor was clicked - delete the item
-					eventBus.fireEvent(new ToDoRemovedEvent(value));
+					events.fireRemoved(value);
 				}
 			}
 		}
@@ -185,8 +192,9 @@ public class ToDoCell extends AbstractCell<ToDoItem> {
 	 */
 	private void commitEdit(Element parent, ToDoItem value) {
 		InputElement input = getInputElement(parent);
+		String previousTitle = value.getTitle();
 		value.setTitle(input.getValue());
-		eventBus.fireEvent(new ToDoUpdatedEvent(value));
+		events.fireUpdated(value, previousTitle, value.isCompleted());
 	}
 
 	/**
@@ -218,7 +226,8 @@ public class ToDoCell extends AbstractCell<ToDoItem> {
 	 * Gets whether the given item is being edited.
 	 */
 	private boolean isEditing(ToDoItem item) {
-		return editingItem == item;
+		// the list renders new views of its items, compare ids
+		return editingItem != null && editingItem.equals(item);
 	}
 
 	/**
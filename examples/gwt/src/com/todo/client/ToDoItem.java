@@ -1,7 +1,11 @@
 package com.todo.client;
 
+import java.util.Random;
+
 /**
- * An individual ToDo item.
+ * An individual ToDo item. The items of a {@link ToDoStore} are views of its columns: their values are
+ * read from and written to the store, until the item is removed from it. Items are equal when they
+ * have the same id.
  *
  * @author ceberhardt
  * @author dprotti
@@ -9,33 +13,154 @@ package com.todo.client;
  */
 public class ToDoItem {
 
+	private static final Random RANDOM = new Random();
+
+	private static int counter;
+
+	private final String id;
+
 	private String title;
 
 	private boolean completed;
 
+	private int version;
+
+	/**
+	 * The store this item is a view of, or null.
+	 */
+	private ToDoStore store;
+
+	/**
+	 * The position where the item was last found in its store.
+	 */
+	private int position;
+
 	public ToDoItem(String title) {
 		this(title, false);
 	}
 
 	public ToDoItem(String title, boolean completed) {
+		this(newId(), title, completed);
+	}
+
+	public ToDoItem(String id, String title, boolean completed) {
+		this(id, title, completed, 0);
+	}
+
+	public ToDoItem(String id, String title, boolean completed, int version) {
+		this.id = id;
 		this.title = title;
 		this.completed = completed;
+		this.version = version;
+	}
+
+	/**
+	 * Creates a view of the item at the given position of the store.
+	 */
+	ToDoItem(ToDoStore store, int position) {
+		this(store.getId(position), store.getTitle(position), store.isCompleted(position),
+			store.getVersion(position));
+		attach(store, position);
+	}
+
+	/**
+	 * Creates an id which is unique across sessions and browser tabs, e.g. {@code 1350000000000-1-k2x1d3}.
+	 */
+	public static String newId() {
+		return System.currentTimeMillis() + "-" + Integer.toString(++counter, 36) + "-"
+				+ Integer.toString(RANDOM.nextInt(Integer.MAX_VALUE), 36);
+	}
+
+	/**
+	 * Gets the id which identifies this item in storage.
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * Gets the number of changes made to this item, used to order concurrent edits from several
+	 * browser tabs.
+	 */
+	public int getVersion() {
+		if (isAttached()) {
+			version = store.getVersion(position);
+		}
+		return version;
+	}
+
+	public void setVersion(int version) {
+		this.version = version;
+		if (isAttached()) {
+			store.setVersion(position, version);
+		}
 	}
 
 	public boolean isCompleted() {
+		if (isAttached()) {
+			completed = store.isCompleted(position);
+		}
 		return completed;
 	}
 
 	public void setCompleted(boolean completed) {
 		this.completed = completed;
+		if (isAttached()) {
+			store.setCompleted(position, completed);
+		}
 	}
 
 	public String getTitle() {
+		if (isAttached()) {
+			title = store.getTitle(position);
+		}
 		return title;
 	}
 
 	public void setTitle(String title) {
 		this.title = title;
+		if (isAttached()) {
+			store.setTitle(position, title);
+		}
+	}
+
+	/**
+	 * Gets the order under which the item is stored, or NaN when it is not a view of a store.
+	 */
+	double getOrder() {
+		return isAttached() ? store.getOrder(position) : Double.NaN;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof ToDoItem && id.equals(((ToDoItem) obj).id);
+	}
+
+	@Override
+	public int hashCode() {
+		return id.hashCode();
+	}
+
+	/**
+	 * Makes this item a view of the item at the given position of the store.
+	 */
+	void attach(ToDoStore store, int position) {
+		this.store = store;
+		this.position = position;
+	}
+
+	/**
+	 * Gets whether the item is still in its store, and where. Once removed, the item keeps the values
+	 * it last had.
+	 */
+	private boolean isAttached() {
+		if (store != null) {
+			position = store.indexOf(id, position);
+			if (position < 0) {
+				store = null;
+			}
+		}
+		return store != null;
 	}
 
 }
@@ -0,0 +1,264 @@
+package com.todo.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A change made by the user to the {@link ToDoItem} list. An operation holds only the items it affects,
+ * with the values needed to replay it on a stored list and to revert it, so the history of the list is
+ * kept without copies of the list.
+ *
+ * Operations refer to items by id. Replaying an operation whose items are missing, or were already
+ * added, leaves them as they are. An entry may carry the version the item had once the operation was
+ * synced, which replaying restores, so that items do not go back to an older version on reload.
+ *
+ * This class does not depend on GWT, so it can be exercised on the JVM.
+ */
+public class ToDoOperation {
+
+	/**
+	 * The changes made by the user, and {@link #UPDATE}, which stores the title and completed state of
+	 * items changed in another tab or on a server, and cannot be reverted.
+	 */
+	public enum Type {
+		ADD, TOGGLE, RETITLE, DELETE, CLEAR_COMPLETED, MARK_ALL, UPDATE
+	}
+
+	/**
+	 * An item affected by an operation.
+	 */
+	public static class Entry {
+
+		private final String id;
+
+		private final int index;
+
+		private final String title;
+
+		private final boolean completed;
+
+		private final String previousTitle;
+
+		private final int version;
+
+		/**
+		 * @param index position of the item in the list, for additions and removals
+		 * @param title the title of the item, for a retitle the new one
+		 * @param completed the completed state of the item, for a toggle the new one
+		 * @param previousTitle the title before a retitle, otherwise null
+		 */
+		public Entry(String id, int index, String title, boolean completed, String previousTitle) {
+			this(id, index, title, completed, previousTitle, -1);
+		}
+
+		/**
+		 * @param version the version of the item after the operation, or -1 when not known
+		 */
+		public Entry(String id, int index, String title, boolean completed, String previousTitle, int version) {
+			this.id = id;
+			this.index = index;
+			this.title = title;
+			this.completed = completed;
+			this.previousTitle = previousTitle;
+			this.version = version;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public int getIndex() {
+			return index;
+		}
+
+		public String getTitle() {
+			return title;
+		}
+
+		public boolean isCompleted() {
+			return completed;
+		}
+
+		public String getPreviousTitle() {
+			return previousTitle;
+		}
+
+		/**
+		 * Gets the version of the item after the operation, or -1 when not known.
+		 */
+		public int getVersion() {
+			return version;
+		}
+	}
+
+	private final Type type;
+
+	private final List<Entry> entries;
+
+	/**
+	 * The version each item had when the operation was last applied, before it changed, by entry, or -1
+	 * when the entry was skipped.
+	 */
+	private int[] appliedVersions;
+
+	/**
+	 * @param entries the affected items, for additions and removals in list order
+	 */
+	public ToDoOperation(Type type, List<Entry> entries) {
+		this.type = type;
+		this.entries = entries;
+	}
+
+	public static ToDoOperation add(ToDoItem item, int index) {
+		return single(Type.ADD, new Entry(item.getId(), index, item.getTitle(), item.isCompleted(), null));
+	}
+
+	/**
+	 * An item was removed; the title and completed state are those it had before, so it can be restored.
+	 */
+	public static ToDoOperation delete(ToDoItem item, int index, String title, boolean completed) {
+		return single(Type.DELETE, new Entry(item.getId(), index, title, completed, null));
+	}
+
+	public static ToDoOperation toggle(ToDoItem item) {
+		return single(Type.TOGGLE, new Entry(item.getId(), -1, item.getTitle(), item.isCompleted(), null));
+	}
+
+	public static ToDoOperation retitle(ToDoItem item, String previousTitle) {
+		return single(Type.RETITLE, new Entry(item.getId(), -1, item.getTitle(), item.isCompleted(), previousTitle));
+	}
+
+	/**
+	 * Removes the completed items, or returns null when there are none.
+	 */
+	public static ToDoOperation clearCompleted(List<ToDoItem> items) {
+		List<Entry> entries = new ArrayList<Entry>();
+		for (int i = 0; i < items.size(); i++) {
+			ToDoItem item = items.get(i);
+			if (item.isCompleted()) {
+				entries.add(new Entry(item.getId(), i, item.getTitle(), true, null));
+			}
+		}
+		return entries.isEmpty() ? null : new ToDoOperation(Type.CLEAR_COMPLETED, entries);
+	}
+
+	/**
+	 * Sets the completed state of all items, or returns null when they all have it already.
+	 */
+	public static ToDoOperation markAll(List<ToDoItem> items, boolean completed) {
+		List<Entry> entries = new ArrayList<Entry>();
+		for (ToDoItem item : items) {
+			if (item.isCompleted() != completed) {
+				entries.add(new Entry(item.getId(), -1, item.getTitle(), completed, null));
+			}
+		}
+		return entries.isEmpty() ? null : new ToDoOperation(Type.MARK_ALL, entries);
+	}
+
+	private static ToDoOperation single(Type type, Entry entry) {
+		List<Entry> entries = new ArrayList<Entry>(1);
+		entries.add(entry);
+		return new ToDoOperation(type, entries);
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public List<Entry> getEntries() {
+		return Collections.unmodifiableList(entries);
+	}
+
+	/**
+	 * Gets the operation which reverts this one.
+	 */
+	public ToDoOperation inverse() {
+		switch (type) {
+			case ADD:
+				return new ToDoOperation(Type.DELETE, entries);
+			case DELETE:
+			case CLEAR_COMPLETED:
+				return new ToDoOperation(Type.ADD, entries);
+			case RETITLE:
+				List<Entry> retitled = new ArrayList<Entry>(entries.size());
+				for (Entry entry : entries) {
+					retitled.add(new Entry(entry.id, entry.index, entry.previousTitle, entry.completed, entry.title));
+				}
+				return new ToDoOperation(Type.RETITLE, retitled);
+			case UPDATE:
+				throw new UnsupportedOperationException("received changes are not reverted");
+			default:
+				List<Entry> toggled = new ArrayList<Entry>(entries.size());
+				for (Entry entry : entries) {
+					toggled.add(new Entry(entry.id, entry.index, entry.title, !entry.completed, null));
+				}
+				return new ToDoOperation(type, toggled);
+		}
+	}
+
+	/**
+	 * Gets the version the item of an entry had when the operation was last applied, before it changed,
+	 * or -1 when the entry was skipped, e.g. an item which was already removed.
+	 */
+	public int getAppliedVersion(int entry) {
+		return appliedVersions != null ? appliedVersions[entry] : -1;
+	}
+
+	/**
+	 * Applies the operation to the list.
+	 *
+	 * @return the items added, removed or changed; removed items keep the values they had
+	 */
+	public List<ToDoItem> apply(ToDoStore items) {
+		List<ToDoItem> affected = new ArrayList<ToDoItem>(entries.size());
+		appliedVersions = new int[entries.size()];
+		switch (type) {
+			case ADD:
+				// in list order, so each item is inserted where it was before its removal
+				for (int i = 0; i < entries.size(); i++) {
+					Entry entry = entries.get(i);
+					appliedVersions[i] = -1;
+					if (items.indexOf(entry.id) < 0) {
+						ToDoItem item = new ToDoItem(entry.id, entry.title, entry.completed, Math.max(0, entry.version));
+						items.add(Math.max(0, Math.min(entry.index, items.size())), item);
+						affected.add(item);
+						appliedVersions[i] = item.getVersion();
+					}
+				}
+				break;
+			case DELETE:
+			case CLEAR_COMPLETED:
+				for (int i = 0; i < entries.size(); i++) {
+					int index = items.indexOf(entries.get(i).id);
+					appliedVersions[i] = index >= 0 ? items.getVersion(index) : -1;
+					if (index >= 0) {
+						affected.add(items.get(index));
+					}
+				}
+				if (!affected.isEmpty()) {
+					items.removeAll(affected);
+				}
+				break;
+			default:
+				for (int i = 0; i < entries.size(); i++) {
+					Entry entry = entries.get(i);
+					ToDoItem item = items.getById(entry.id);
+					appliedVersions[i] = item != null ? item.getVersion() : -1;
+					if (item != null) {
+						if (type == Type.RETITLE || type == Type.UPDATE) {
+							item.setTitle(entry.title);
+						}
+						if (type != Type.RETITLE) {
+							item.setCompleted(entry.completed);
+						}
+						if (entry.version >= 0) {
+							item.setVersion(entry.version);
+						}
+						affected.add(item);
+					}
+				}
+		}
+		return affected;
+	}
+}
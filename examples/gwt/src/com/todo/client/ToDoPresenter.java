@@ -1,26 +1,24 @@
 package com.todo.client;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.List;
 
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.core.client.RunAsyncCallback;
 import com.google.gwt.event.logical.shared.ValueChangeEvent;
 import com.google.gwt.event.logical.shared.ValueChangeHandler;
-import com.google.gwt.event.shared.EventBus;
-import com.google.gwt.json.client.JSONArray;
-import com.google.gwt.json.client.JSONBoolean;
-import com.google.gwt.json.client.JSONObject;
-import com.google.gwt.json.client.JSONParser;
-import com.google.gwt.json.client.JSONString;
-import com.google.gwt.storage.client.Storage;
 import com.google.gwt.user.client.History;
 import com.google.gwt.view.client.AbstractDataProvider;
 import com.google.gwt.view.client.ListDataProvider;
 import com.todo.client.ToDoItem;
 import com.todo.client.ToDoRouting;
-import com.todo.client.events.ToDoEvent;
+import com.todo.client.events.ToDoEventChannel;
 import com.todo.client.events.ToDoRemovedEvent;
 import com.todo.client.events.ToDoUpdatedEvent;
+import com.todo.client.storage.ToDoPersistence;
+import com.todo.client.storage.ToDoStorageTimings;
+import com.todo.client.sync.ToDoSync;
 
 /**
  * The presenter for the ToDo application. This class is responsible for the lifecycle of the
@@ -32,7 +30,9 @@ import com.todo.client.events.ToDoUpdatedEvent;
  */
 public class ToDoPresenter {
 
-	private static final String STORAGE_KEY = "todo-gwt";
+	private static final String SEARCH_TOKEN = "/search/";
+
+	private static final int UNDO_LIMIT = 100;
 
 	/**
 	 * The interface that a view for this presenter must implement.
@@ -68,6 +68,11 @@ public class ToDoPresenter {
 		 * Informs the view of the current routing state.
 		 */
 		void setRouting(ToDoRouting routing);
+
+		/**
+		 * Sets the channel on which the view fires the changes made by the user to single tasks.
+		 */
+		void setEventChannel(ToDoEventChannel events);
 	}
 
 	/**
@@ -88,6 +93,16 @@ public class ToDoPresenter {
 		 * Sets the completed state of all tasks to the given state.
 		 */
 		void markAllCompleted(boolean completed);
+
+		/**
+		 * Reverts the last change.
+		 */
+		void undo();
+
+		/**
+		 * Makes the last reverted change again.
+		 */
+		void redo();
 	}
 
 	/**
@@ -108,22 +123,112 @@ public class ToDoPresenter {
 		public void markAllCompleted(boolean completed) {
 			ToDoPresenter.this.markAllCompleted(completed);
 		}
+
+		@Override
+		public void undo() {
+			ToDoPresenter.this.undo();
+		}
+
+		@Override
+		public void redo() {
+			ToDoPresenter.this.redo();
+		}
+	};
+
+	/**
+	 * Applies the changes made in other browser tabs, or received from the sync server.
+	 */
+	private final ToDoSync.Listener syncListener = new ToDoSync.Listener() {
+		@Override
+		public void onAdded(ToDoItem item, ToDoItem after) {
+			todos.add(after == null ? 0 : todos.indexOf(after) + 1, item);
+			if (searchIndex != null) {
+				searchIndex.add(item);
+			}
+			// the position in the filtered list is not known
+			filteredListChanged = true;
+		}
+
+		@Override
+		public void onUpdated(ToDoItem item) {
+			if (searchIndex != null) {
+				searchIndex.update(item);
+			}
+			refreshFilteredItem(item);
+		}
+
+		@Override
+		public void onRemoved(ToDoItem item) {
+			todos.remove(item);
+			if (searchIndex != null) {
+				searchIndex.remove(item);
+			}
+			// the positions held by the filtered list have moved
+			filteredListChanged = true;
+		}
+
+		@Override
+		public void onChangesApplied() {
+			if (filteredListChanged) {
+				updateFilteredList();
+			}
+			updateTaskStatistics();
+		}
+
+		@Override
+		public ToDoItem getItem(String id) {
+			return todos.getById(id);
+		}
+
+		@Override
+		public ToDoStore getItems() {
+			return todos;
+		}
 	};
 
-	private final List<ToDoItem> todos = new ArrayList<ToDoItem>();
+	private final ToDoStore todos = new ToDoStore();
+
+	/**
+	 * The operations which can be undone, the last one at the end.
+	 */
+	private final List<ToDoOperation> undoOperations = new ArrayList<ToDoOperation>();
+
+	/**
+	 * The operations which were undone and can be redone, the last one at the end.
+	 */
+	private final List<ToDoOperation> redoOperations = new ArrayList<ToDoOperation>();
 
 	private final ListDataProvider<ToDoItem> filteredTodos = new ListDataProvider<ToDoItem>();
 
+	/**
+	 * The subset of the tasks shown by the filtered list.
+	 */
+	private ToDoStore.Subset filteredSubset;
+
 	private final View view;
 
+	private final ToDoSync sync;
+
+	/**
+	 * The index of the task titles, built when the search route is first used, behind a split point so
+	 * that its code need not be loaded at startup.
+	 */
+	private ToDoSearchIndex searchIndex;
+
+	private boolean searchIndexRequested;
+
 	private ToDoRouting routing = ToDoRouting.ALL;
 
-	private EventBus eventBus;
+	private String searchQuery = "";
 
-	public ToDoPresenter(View view) {
-		this.view = view;
+	private boolean filteredListChanged;
 
-		loadState();
+	private final ToDoEventChannel events = new ToDoEventChannel();
+
+	public ToDoPresenter(View view, ToDoSync sync) {
+		this.view = view;
+		this.sync = sync;
+		sync.setListener(syncListener);
 
 		String initialToken = History.getToken();
 		routing = parseRoutingToken(initialToken);
@@ -131,28 +236,49 @@ public class ToDoPresenter {
 		view.addhandler(viewHandler);
 		view.setDataProvider(filteredTodos);
 		view.setRouting(routing);
+		view.setEventChannel(events);
 
 		updateTaskStatistics();
 		setupHistoryHandler();
-		eventBus = ToDoEvent.getGlobalEventBus();
 		// listen to edits on individual items
-		eventBus.addHandler(ToDoUpdatedEvent.TYPE, new ToDoUpdatedEvent.Handler() {
+		events.addUpdatedHandler(new ToDoUpdatedEvent.Handler() {
 
 			@Override
 			public void onEvent(ToDoUpdatedEvent event) {
-				itemStateChanged(event.getToDo());
+				for (int i = 0; i < event.size(); i++) {
+					itemStateChanged(event.getToDo(i), event.getPreviousTitle(i), event.isPreviousCompleted(i));
+				}
 			}
 
 		});
 		// listen to removals
-		eventBus.addHandler(ToDoRemovedEvent.TYPE, new ToDoRemovedEvent.Handler() {
+		events.addRemovedHandler(new ToDoRemovedEvent.Handler() {
 
 			@Override
 			public void onEvent(ToDoRemovedEvent event) {
-				deleteTask(event.getToDo());
+				for (int i = 0; i < event.size(); i++) {
+					deleteTask(event.getToDo(i));
+				}
 			}
 
 		});
+
+		loadState();
+	}
+
+	/**
+	 * Gets the time spent encoding and decoding the stored list, on the UI thread and in a worker.
+	 */
+	public ToDoStorageTimings getStorageTimings() {
+		return sync.getTimings();
+	}
+
+	/**
+	 * Gets the channel on which the view reports the changes made to single tasks, with its dispatch
+	 * counters.
+	 */
+	public ToDoEventChannel getEventChannel() {
+		return events;
 	}
 
 	/**
@@ -173,7 +299,11 @@ public class ToDoPresenter {
 	 * Converts the string routing token into the equivalent enum value.
 	 */
 	private ToDoRouting parseRoutingToken(String token ) {
-		if (token.equals("/active")) {
+		searchQuery = "";
+		if (token.startsWith(SEARCH_TOKEN)) {
+			searchQuery = token.substring(SEARCH_TOKEN.length());
+			return ToDoRouting.SEARCH;
+		} else if (token.equals("/active")) {
 			return ToDoRouting.ACTIVE;
 		} else if (token.equals("/completed")) {
 			return ToDoRouting.COMPLETED;
@@ -183,74 +313,185 @@ public class ToDoPresenter {
 	}
 
 	/**
-	 * Updates the filtered list, which is rendered in the UI.
+	 * Updates the filtered list, which is rendered in the UI. It holds the positions of the matching
+	 * tasks rather than the tasks.
 	 */
 	private void updateFilteredList() {
-		filteredTodos.getList().clear();
-		for (ToDoItem task : todos) {
-			if (routing.getMatcher().matches(task)) {
-				filteredTodos.getList().add(task);
-			}
+		filteredListChanged = false;
+		switch (routing) {
+			case SEARCH:
+				if (searchIndex != null) {
+					showFiltered(todos.withIds(searchIndex.search(searchQuery)));
+				} else {
+					showFiltered(todos.withIds(Collections.<String> emptyList()));
+					loadSearchIndex();
+				}
+				break;
+			case ACTIVE:
+				showFiltered(todos.withCompleted(false));
+				break;
+			case COMPLETED:
+				showFiltered(todos.withCompleted(true));
+				break;
+			default:
+				showFiltered(todos.all());
 		}
 	}
 
+	private void showFiltered(ToDoStore.Subset subset) {
+		filteredSubset = subset;
+		filteredTodos.setList(subset);
+	}
+
 	/**
-	 * Computes the tasks statistics and updates the view.
+	 * Loads the code of the search index and builds it from the current tasks, then shows the results
+	 * of the current search.
 	 */
-	private void updateTaskStatistics() {
-		int totalTasks = todos.size();
+	private void loadSearchIndex() {
+		if (searchIndexRequested) {
+			return;
+		}
+		searchIndexRequested = true;
+		GWT.runAsync(ToDoSearchIndex.class, new RunAsyncCallback() {
+			@Override
+			public void onSuccess() {
+				ToDoSearchIndex index = new ToDoSearchIndex();
+				for (ToDoItem toDoItem : todos) {
+					index.add(toDoItem);
+				}
+				searchIndex = index;
+				if (routing == ToDoRouting.SEARCH) {
+					updateFilteredList();
+				}
+			}
 
-		int completeTask = 0;
-		for (ToDoItem task : todos) {
-			if (task.isCompleted()) {
-				completeTask++;
+			@Override
+			public void onFailure(Throwable reason) {
+				// try again on the next search
+				searchIndexRequested = false;
 			}
+		});
+	}
+
+	/**
+	 * Redraws a changed item, or adds or removes it when it no longer matches the current filter. Once
+	 * the filtered list is to be built again, e.g. after an addition earlier in the same batch of
+	 * changes, its positions are out of date and it is left alone.
+	 */
+	private void refreshFilteredItem(ToDoItem toDoItem) {
+		if (filteredListChanged || !routing.refresh(filteredTodos.getList(), filteredSubset, toDoItem)) {
+			filteredListChanged = true;
 		}
+	}
 
-		view.setTaskStatistics(totalTasks, completeTask);
+	/**
+	 * Computes the tasks statistics and updates the view.
+	 */
+	private void updateTaskStatistics() {
+		view.setTaskStatistics(todos.size(), todos.getCompletedCount());
 	}
 
 	/**
 	 * Deletes the given task and updates statistics.
 	 */
 	protected void deleteTask(ToDoItem toDoItem) {
-		todos.remove(toDoItem);
-		taskStateChanged();
+		perform(ToDoOperation.delete(toDoItem, todos.indexOf(toDoItem), toDoItem.getTitle(),
+			toDoItem.isCompleted()));
 	}
 
 	/**
 	 * Invoked by a task when its state changes so that we can update the view statistics and persist.
 	 */
-	protected void itemStateChanged(ToDoItem toDoItem) {
+	protected void itemStateChanged(ToDoItem toDoItem, String previousTitle, boolean previousCompleted) {
 
 		toDoItem.setTitle(toDoItem.getTitle().trim());
 
 		if (toDoItem.getTitle().isEmpty()) {
-			todos.remove(toDoItem);
+			// removed with its previous title, so that undo brings it back
+			perform(ToDoOperation.delete(toDoItem, todos.indexOf(toDoItem), previousTitle, previousCompleted));
+		} else if (!toDoItem.getTitle().equals(previousTitle)) {
+			perform(ToDoOperation.retitle(toDoItem, previousTitle));
+		} else if (toDoItem.isCompleted() != previousCompleted) {
+			perform(ToDoOperation.toggle(toDoItem));
 		}
+	}
 
-		taskStateChanged();
+	/**
+	 * Applies an operation made by the user, which can then be undone.
+	 */
+	private void perform(ToDoOperation operation) {
+		if (operation == null) {
+			return;
+		}
+
+		apply(operation);
+		undoOperations.add(operation);
+		if (undoOperations.size() > UNDO_LIMIT) {
+			undoOperations.remove(0);
+		}
+		redoOperations.clear();
 	}
 
 	/**
-	 * When the task state has changed, this method will update the UI and persist.
+	 * Reverts the last operation.
 	 */
-	private void taskStateChanged() {
+	private void undo() {
+		if (undoOperations.isEmpty()) {
+			return;
+		}
+
+		ToDoOperation operation = undoOperations.remove(undoOperations.size() - 1);
+		apply(operation.inverse());
+		redoOperations.add(operation);
+	}
+
+	/**
+	 * Applies the last reverted operation again.
+	 */
+	private void redo() {
+		if (redoOperations.isEmpty()) {
+			return;
+		}
+
+		ToDoOperation operation = redoOperations.remove(redoOperations.size() - 1);
+		apply(operation);
+		undoOperations.add(operation);
+	}
+
+	/**
+	 * Applies the operation to the tasks, then updates the UI and persists the operation.
+	 */
+	private void apply(ToDoOperation operation) {
+		List<ToDoItem> affected = operation.apply(todos);
+		if (searchIndex != null) {
+			for (ToDoItem toDoItem : affected) {
+				switch (operation.getType()) {
+					case ADD:
+						searchIndex.add(toDoItem);
+						break;
+					case DELETE:
+					case CLEAR_COMPLETED:
+						searchIndex.remove(toDoItem);
+						break;
+					case RETITLE:
+						searchIndex.update(toDoItem);
+						break;
+					default:
+						break;
+				}
+			}
+		}
+
 		updateFilteredList();
 		updateTaskStatistics();
-		saveState();
+		sync.apply(operation, todos);
 	}
 
 	/**
 	 * Sets the completed state of all tasks.
 	 */
 	private void markAllCompleted(boolean completed) {
-
-		for (ToDoItem task : todos) {
-			task.setCompleted(completed);
-		}
-
-		taskStateChanged();
+		perform(ToDoOperation.markAll(todos, completed));
 	}
 
 	/**
@@ -263,73 +504,37 @@ public class ToDoPresenter {
 		if (taskTitle.equals(""))
 			return;
 
-		ToDoItem toDoItem = new ToDoItem(taskTitle);
 		view.clearTaskText();
-		todos.add(toDoItem);
-
-		taskStateChanged();
+		perform(ToDoOperation.add(new ToDoItem(taskTitle), todos.size()));
 	}
 
 	/**
 	 * Clears completed tasks and updates the view.
 	 */
 	private void clearCompletedTasks() {
-		Iterator<ToDoItem> iterator = todos.iterator();
-		while (iterator.hasNext()) {
-			ToDoItem item = iterator.next();
-			if (item.isCompleted()) {
-				iterator.remove();
-			}
-		}
-
-		taskStateChanged();
+		perform(ToDoOperation.clearCompleted(todos));
 	}
 
 	/**
-	 * Saves the current to-do items to local storage.
+	 * Loads the stored to-do items, which may complete after the view has been set up.
 	 */
-	private void saveState() {
-		Storage storage = Storage.getLocalStorageIfSupported();
-		if (storage != null) {
-
-			// JSON encode the items
-			JSONArray todoItems = new JSONArray();
-			for (int i = 0; i < todos.size(); i++) {
-				ToDoItem toDoItem = todos.get(i);
-				JSONObject jsonObject = new JSONObject();
-				jsonObject.put("task", new JSONString(toDoItem.getTitle()));
-				jsonObject.put("complete", JSONBoolean.getInstance(toDoItem.isCompleted()));
-				todoItems.set(i, jsonObject);
-			}
-
-			// save to local storage
-			storage.setItem(STORAGE_KEY, todoItems.toString());
-		}
-	}
-
 	private void loadState() {
-		Storage storage = Storage.getLocalStorageIfSupported();
-		if (storage != null) {
-			try {
-				// get state
-				String state = storage.getItem(STORAGE_KEY);
-
-				// parse the JSON array
-				JSONArray todoItems = JSONParser.parseStrict(state).isArray();
-				for (int i = 0; i < todoItems.size(); i++) {
-					// extract the to-do item values
-					JSONObject jsonObject = todoItems.get(i).isObject();
-					String task = jsonObject.get("task").isString().stringValue();
-					boolean completed = jsonObject.get("complete").isBoolean().booleanValue();
-					// add a new item to our list
-					todos.add(new ToDoItem(task, completed));
+		sync.load(new ToDoPersistence.LoadCallback() {
+			@Override
+			public void onLoaded(List<ToDoItem> items) {
+				for (ToDoItem toDoItem : items) {
+					if (todos.contains(toDoItem)) {
+						continue;
+					}
+					todos.add(toDoItem);
+					if (searchIndex != null) {
+						searchIndex.add(toDoItem);
+					}
 				}
-			} catch (Exception e) {
-
+				updateFilteredList();
+				updateTaskStatistics();
 			}
-		}
-
-		updateFilteredList();
+		});
 	}
 
 }
@@ -1,5 +1,7 @@
 package com.todo.client;
 
+import java.util.List;
+
 public enum ToDoRouting {
 	/**
 	 * Displays all todo items.
@@ -12,7 +14,12 @@ public enum ToDoRouting {
 	/**
 	 * Displays completed todo items - i.e. those that have been done.
 	 */
-	COMPLETED(new MatchCompleted());
+	COMPLETED(new MatchCompleted()),
+	/**
+	 * Displays the todo items whose title matches a search query, e.g. {@code #/search/milk}. The
+	 * matching items are looked up in the {@link ToDoSearchIndex} rather than by this matcher.
+	 */
+	SEARCH(new MatchAll());
 
 	/**
 	 * Matcher used to filter todo items, based on some criteria.
@@ -63,4 +70,27 @@ public enum ToDoRouting {
 	public Matcher getMatcher() {
 		return matcher;
 	}
+
+	/**
+	 * Redraws a changed item in the filtered list, or removes it when it no longer matches.
+	 *
+	 * @param filtered the list shown, backed by the subset
+	 * @return false when the filtered list must be built again instead: the position of the item is not
+	 *         known, or items were added to or removed from the store since the subset was made
+	 */
+	public boolean refresh(List<ToDoItem> filtered, ToDoStore.Subset subset, ToDoItem item) {
+		if (this == SEARCH || subset == null || !subset.isCurrent()) {
+			return false;
+		}
+		int index = filtered.indexOf(item);
+		if (index < 0) {
+			return !matcher.matches(item);
+		}
+		if (matcher.matches(item)) {
+			filtered.set(index, item);
+		} else {
+			filtered.remove(index);
+		}
+		return true;
+	}
 }
@@ -0,0 +1,231 @@
+package com.todo.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * An inverted index of the words in {@link ToDoItem} titles, maintained incrementally as items are
+ * added, edited and removed.
+ *
+ * Titles are normalized to lower case words. The words are held in a sorted dictionary, so the words
+ * starting with a query prefix are found with a range lookup rather than by scanning the items. A query
+ * matches the items which contain, for every query word, a word starting with it. Only the items posted
+ * under the most selective query word are visited, so query cost depends on the number of candidates
+ * rather than on the size of the list. Items are indexed by id, and searches return ids, so the index
+ * holds no item objects.
+ *
+ * This class does not depend on GWT, so it can be exercised on the JVM.
+ */
+public class ToDoSearchIndex {
+
+	private static final String SEPARATORS = "[\\s.,;:!?()\\[\\]{}\"'/\\\\<>|@#$%^&*+=~`_-]+";
+
+	/**
+	 * The highest character, used to bound prefix ranges in the dictionary.
+	 */
+	private static final char MAX_CHAR = '\uffff';
+
+	/**
+	 * An indexed item with its words and its position in the list.
+	 */
+	private static class Entry {
+
+		private final String id;
+
+		private final int position;
+
+		private String[] words;
+
+		Entry(String id, int position, String[] words) {
+			this.id = id;
+			this.position = position;
+			this.words = words;
+		}
+
+		boolean hasWordStartingWith(String prefix) {
+			for (String word : words) {
+				if (word.startsWith(prefix)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	private static final Comparator<Entry> LIST_ORDER = new Comparator<Entry>() {
+		@Override
+		public int compare(Entry a, Entry b) {
+			return a.position < b.position ? -1 : (a.position == b.position ? 0 : 1);
+		}
+	};
+
+	private final TreeMap<String, Set<Entry>> postings = new TreeMap<String, Set<Entry>>();
+
+	private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+	private int nextPosition;
+
+	/**
+	 * Splits the text into distinct lower case words.
+	 */
+	public static String[] normalize(String text) {
+		Set<String> words = new HashSet<String>();
+		for (String word : text.toLowerCase().split(SEPARATORS)) {
+			if (!word.isEmpty()) {
+				words.add(word);
+			}
+		}
+		return words.toArray(new String[words.size()]);
+	}
+
+	/**
+	 * Adds an item at the end of the list.
+	 */
+	public void add(ToDoItem item) {
+		if (entries.containsKey(item.getId())) {
+			update(item);
+			return;
+		}
+
+		Entry entry = new Entry(item.getId(), nextPosition++, normalize(item.getTitle()));
+		entries.put(item.getId(), entry);
+		for (String word : entry.words) {
+			post(word, entry);
+		}
+	}
+
+	/**
+	 * Re-indexes the title of an item, touching only the words that changed.
+	 */
+	public void update(ToDoItem item) {
+		Entry entry = entries.get(item.getId());
+		if (entry == null) {
+			add(item);
+			return;
+		}
+
+		String[] newWords = normalize(item.getTitle());
+		Set<String> added = new HashSet<String>();
+		Collections.addAll(added, newWords);
+
+		for (String word : entry.words) {
+			if (!added.remove(word)) {
+				unpost(word, entry);
+			}
+		}
+		// what is left was not indexed yet
+		for (String word : added) {
+			post(word, entry);
+		}
+		entry.words = newWords;
+	}
+
+	/**
+	 * Removes an item from the index.
+	 */
+	public void remove(ToDoItem item) {
+		Entry entry = entries.remove(item.getId());
+		if (entry == null) {
+			return;
+		}
+
+		for (String word : entry.words) {
+			unpost(word, entry);
+		}
+	}
+
+	/**
+	 * Removes all items.
+	 */
+	public void clear() {
+		postings.clear();
+		entries.clear();
+		nextPosition = 0;
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Finds the ids of the items matching every word of the query, in the order the items were added.
+	 * An empty query matches nothing.
+	 */
+	public List<String> search(String query) {
+		List<String> results = new ArrayList<String>();
+		String[] words = normalize(query);
+		if (words.length == 0) {
+			return results;
+		}
+
+		// only collect the candidates of the most selective word, then check the others on each candidate
+		Collection<Set<Entry>> selective = null;
+		int candidateCount = Integer.MAX_VALUE;
+		for (String word : words) {
+			Collection<Set<Entry>> posted = postings.subMap(word, word + MAX_CHAR).values();
+			int count = 0;
+			for (Set<Entry> items : posted) {
+				count += items.size();
+			}
+			if (count < candidateCount) {
+				selective = posted;
+				candidateCount = count;
+			}
+		}
+		if (candidateCount == 0) {
+			return results;
+		}
+
+		List<Entry> candidates = new ArrayList<Entry>(candidateCount);
+		for (Set<Entry> items : selective) {
+			candidates.addAll(items);
+		}
+		// sorting also brings together the items found under several words
+		Collections.sort(candidates, LIST_ORDER);
+
+		Entry previous = null;
+		for (Entry candidate : candidates) {
+			if (candidate != previous && matchesAll(candidate, words)) {
+				results.add(candidate.id);
+			}
+			previous = candidate;
+		}
+		return results;
+	}
+
+	private static boolean matchesAll(Entry entry, String[] words) {
+		for (String word : words) {
+			if (!entry.hasWordStartingWith(word)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void post(String word, Entry entry) {
+		Set<Entry> posted = postings.get(word);
+		if (posted == null) {
+			posted = new HashSet<Entry>();
+			postings.put(word, posted);
+		}
+		posted.add(entry);
+	}
+
+	private void unpost(String word, Entry entry) {
+		Set<Entry> posted = postings.get(word);
+		if (posted != null) {
+			posted.remove(entry);
+			if (posted.isEmpty()) {
+				postings.remove(word);
+			}
+		}
+	}
+}
@@ -0,0 +1,602 @@
+package com.todo.client;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The list of {@link ToDoItem}, stored column by column rather than as one object per item: the ids,
+ * titles, versions and storage orders are held in parallel arrays, the completed states in a bit set,
+ * and an open addressed table of positions finds an item by id without an entry object per item.
+ *
+ * The items returned by the list are views of its columns. They are created when asked for, so only
+ * the items being rendered or edited exist as objects, and reading or changing one reads or changes
+ * the columns. A view whose item has been removed keeps the values it last had. Items added to the list
+ * have their values copied into the columns, and become views themselves. Views are equal when they
+ * have the same id.
+ *
+ * Filtered lists are {@link Subset}s, which hold the positions of their items in an int array instead
+ * of a copy of the items.
+ *
+ * This class does not depend on GWT, so it can be exercised on the JVM.
+ */
+public class ToDoStore extends AbstractList<ToDoItem> {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private String[] ids = new String[INITIAL_CAPACITY];
+
+	private String[] titles = new String[INITIAL_CAPACITY];
+
+	private int[] versions = new int[INITIAL_CAPACITY];
+
+	/**
+	 * The order under which each item is stored, kept here for the persistence so that it needs no map
+	 * of its own, or NaN until the item is stored.
+	 */
+	private double[] orders = new double[INITIAL_CAPACITY];
+
+	/**
+	 * The completed states, 32 items per int.
+	 */
+	private int[] completed = new int[INITIAL_CAPACITY / 32 + 1];
+
+	private int size;
+
+	private int completedCount;
+
+	/**
+	 * The position plus one of each item, by the hash of its id, or 0 for a free slot. The table is
+	 * rebuilt on the first lookup after items have been moved, so removing items is a single shift of
+	 * the columns.
+	 */
+	private int[] table = new int[INITIAL_CAPACITY * 2];
+
+	private boolean tableValid = true;
+
+	/**
+	 * Incremented when items are added or removed, which moves the positions held by subsets.
+	 */
+	private int structureVersion;
+
+	public ToDoStore() {
+	}
+
+	/**
+	 * Creates a list of the given items. Items whose id is already in the list are skipped.
+	 */
+	public ToDoStore(Collection<ToDoItem> items) {
+		for (ToDoItem item : items) {
+			if (indexOf(item.getId()) < 0) {
+				add(item);
+			}
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * The number of completed items, kept up to date as items change.
+	 */
+	public int getCompletedCount() {
+		return completedCount;
+	}
+
+	@Override
+	public ToDoItem get(int index) {
+		checkIndex(index, size);
+		return new ToDoItem(this, index);
+	}
+
+	/**
+	 * Gets the item with the given id, or null when there is none.
+	 */
+	public ToDoItem getById(String id) {
+		int index = indexOf(id);
+		return index < 0 ? null : new ToDoItem(this, index);
+	}
+
+	public String getId(int index) {
+		checkIndex(index, size);
+		return ids[index];
+	}
+
+	public String getTitle(int index) {
+		checkIndex(index, size);
+		return titles[index];
+	}
+
+	public boolean isCompleted(int index) {
+		checkIndex(index, size);
+		return (completed[index >> 5] & (1 << (index & 31))) != 0;
+	}
+
+	public int getVersion(int index) {
+		checkIndex(index, size);
+		return versions[index];
+	}
+
+	/**
+	 * Gets the order under which the item is stored, or NaN when it has none.
+	 */
+	public double getOrder(int index) {
+		checkIndex(index, size);
+		return orders[index];
+	}
+
+	public void setOrder(int index, double order) {
+		checkIndex(index, size);
+		orders[index] = order;
+	}
+
+	void setTitle(int index, String title) {
+		checkIndex(index, size);
+		titles[index] = title;
+	}
+
+	void setCompleted(int index, boolean value) {
+		if (isCompleted(index) == value) {
+			return;
+		}
+		completed[index >> 5] ^= 1 << (index & 31);
+		completedCount += value ? 1 : -1;
+	}
+
+	void setVersion(int index, int version) {
+		checkIndex(index, size);
+		versions[index] = version;
+	}
+
+	/**
+	 * Gets the position of the item with the given id, or -1 when there is none.
+	 */
+	public int indexOf(String id) {
+		if (id == null) {
+			return -1;
+		}
+		if (!tableValid) {
+			rebuildTable();
+		}
+		int mask = table.length - 1;
+		for (int slot = hash(id) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+			int index = table[slot] - 1;
+			if (id.equals(ids[index])) {
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds an item again, checking first the position where it was last found.
+	 */
+	int indexOf(String id, int lastIndex) {
+		if (lastIndex >= 0 && lastIndex < size && ids[lastIndex] == id) {
+			return lastIndex;
+		}
+		return indexOf(id);
+	}
+
+	@Override
+	public int indexOf(Object o) {
+		return o instanceof ToDoItem ? indexOf(((ToDoItem) o).getId()) : -1;
+	}
+
+	@Override
+	public int lastIndexOf(Object o) {
+		return indexOf(o);
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return indexOf(o) >= 0;
+	}
+
+	/**
+	 * Inserts the values of the item, which becomes a view of this list. A view of another list brings
+	 * its storage order along.
+	 *
+	 * @throws IllegalArgumentException if the list has an item with the same id
+	 */
+	@Override
+	public void add(int index, ToDoItem item) {
+		checkIndex(index, size + 1);
+		String id = item.getId();
+		if (indexOf(id) >= 0) {
+			throw new IllegalArgumentException("Duplicate item id: " + id);
+		}
+		String title = item.getTitle();
+		boolean itemCompleted = item.isCompleted();
+		int version = item.getVersion();
+		double order = item.getOrder();
+
+		ensureCapacity(size + 1);
+		if (index < size) {
+			System.arraycopy(ids, index, ids, index + 1, size - index);
+			System.arraycopy(titles, index, titles, index + 1, size - index);
+			System.arraycopy(versions, index, versions, index + 1, size - index);
+			System.arraycopy(orders, index, orders, index + 1, size - index);
+			shiftCompleted(index, 1);
+			tableValid = false;
+		}
+		size++;
+		ids[index] = id;
+		titles[index] = title;
+		versions[index] = version;
+		orders[index] = order;
+		completed[index >> 5] &= ~(1 << (index & 31));
+		setCompleted(index, itemCompleted);
+		if (tableValid) {
+			put(id, index);
+		}
+		structureVersion++;
+		item.attach(this, index);
+	}
+
+	/**
+	 * Replaces the values at the given position with those of the item, which becomes a view of this
+	 * list.
+	 *
+	 * @return the item which was replaced, with its values
+	 * @throws IllegalArgumentException if another item of the list has the same id
+	 */
+	@Override
+	public ToDoItem set(int index, ToDoItem item) {
+		ToDoItem previous = copy(index);
+		String id = item.getId();
+		if (!id.equals(ids[index])) {
+			if (indexOf(id) >= 0) {
+				throw new IllegalArgumentException("Duplicate item id: " + id);
+			}
+			ids[index] = id;
+			tableValid = false;
+		}
+		titles[index] = item.getTitle();
+		versions[index] = item.getVersion();
+		orders[index] = item.getOrder();
+		setCompleted(index, item.isCompleted());
+		item.attach(this, index);
+		return previous;
+	}
+
+	/**
+	 * Removes the item at the given position.
+	 *
+	 * @return the item which was removed, with its values
+	 */
+	@Override
+	public ToDoItem remove(int index) {
+		ToDoItem removed = copy(index);
+		setCompleted(index, false);
+		int moved = size - index - 1;
+		System.arraycopy(ids, index + 1, ids, index, moved);
+		System.arraycopy(titles, index + 1, titles, index, moved);
+		System.arraycopy(versions, index + 1, versions, index, moved);
+		System.arraycopy(orders, index + 1, orders, index, moved);
+		shiftCompleted(index + 1, -1);
+		size--;
+		completed[size >> 5] &= ~(1 << (size & 31));
+		ids[size] = null;
+		titles[size] = null;
+		tableValid = false;
+		structureVersion++;
+		return removed;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		int index = indexOf(o);
+		if (index < 0) {
+			return false;
+		}
+		remove(index);
+		return true;
+	}
+
+	/**
+	 * Removes the given items, moving the remaining ones once.
+	 */
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		Set<String> removedIds = new HashSet<String>();
+		for (Object o : c) {
+			if (o instanceof ToDoItem) {
+				removedIds.add(((ToDoItem) o).getId());
+			}
+		}
+
+		int kept = 0;
+		for (int i = 0; i < size; i++) {
+			if (removedIds.contains(ids[i])) {
+				continue;
+			}
+			if (kept != i) {
+				boolean itemCompleted = isCompleted(i);
+				ids[kept] = ids[i];
+				titles[kept] = titles[i];
+				versions[kept] = versions[i];
+				orders[kept] = orders[i];
+				completed[kept >> 5] = itemCompleted
+					? completed[kept >> 5] | (1 << (kept & 31))
+					: completed[kept >> 5] & ~(1 << (kept & 31));
+			}
+			kept++;
+		}
+		if (kept == size) {
+			return false;
+		}
+
+		Arrays.fill(ids, kept, size, null);
+		Arrays.fill(titles, kept, size, null);
+		size = kept;
+		clearCompletedFrom(kept);
+		completedCount = countCompleted();
+		tableValid = false;
+		structureVersion++;
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(ids, 0, size, null);
+		Arrays.fill(titles, 0, size, null);
+		Arrays.fill(completed, 0);
+		size = 0;
+		completedCount = 0;
+		tableValid = false;
+		structureVersion++;
+	}
+
+	/**
+	 * Gets all the items, in list order.
+	 */
+	public Subset all() {
+		return new Subset(null, size);
+	}
+
+	/**
+	 * Gets the items with the given completed state, in list order.
+	 */
+	public Subset withCompleted(boolean value) {
+		int[] positions = new int[value ? completedCount : size - completedCount];
+		int count = 0;
+		for (int i = 0; i < size && count < positions.length; i++) {
+			if (isCompleted(i) == value) {
+				positions[count++] = i;
+			}
+		}
+		return new Subset(positions, count);
+	}
+
+	/**
+	 * Gets the items with the given ids, in list order. Ids which are not in the list are ignored.
+	 */
+	public Subset withIds(Collection<String> itemIds) {
+		int[] positions = new int[itemIds.size()];
+		int count = 0;
+		for (String id : itemIds) {
+			int index = indexOf(id);
+			if (index >= 0) {
+				positions[count++] = index;
+			}
+		}
+		if (count < positions.length) {
+			int[] found = new int[count];
+			System.arraycopy(positions, 0, found, 0, count);
+			positions = found;
+		}
+		Arrays.sort(positions);
+		return new Subset(positions, count);
+	}
+
+	/**
+	 * Some items of a {@link ToDoStore}, in list order, held by their positions. A subset reads and
+	 * changes the items of the store; removing an item from a subset leaves it in the store. A subset
+	 * cannot be used once items have been added to or removed from the store, and must be created again.
+	 */
+	public class Subset extends AbstractList<ToDoItem> {
+
+		/**
+		 * The positions of the items in the store, in ascending order, or null for all the items.
+		 */
+		private int[] positions;
+
+		private int count;
+
+		private final int expectedStructureVersion = structureVersion;
+
+		private Subset(int[] positions, int count) {
+			this.positions = positions;
+			this.count = count;
+		}
+
+		@Override
+		public int size() {
+			return count;
+		}
+
+		/**
+		 * Gets the position in the store of an item of the subset.
+		 */
+		public int getPosition(int index) {
+			checkStructure();
+			checkIndex(index, count);
+			return positions == null ? index : positions[index];
+		}
+
+		@Override
+		public ToDoItem get(int index) {
+			return ToDoStore.this.get(getPosition(index));
+		}
+
+		@Override
+		public ToDoItem set(int index, ToDoItem item) {
+			return ToDoStore.this.set(getPosition(index), item);
+		}
+
+		@Override
+		public ToDoItem remove(int index) {
+			ToDoItem removed = get(index);
+			if (positions == null) {
+				positions = new int[count];
+				for (int i = 0; i < count; i++) {
+					positions[i] = i;
+				}
+			}
+			System.arraycopy(positions, index + 1, positions, index, count - index - 1);
+			count--;
+			return removed;
+		}
+
+		@Override
+		public int indexOf(Object o) {
+			checkStructure();
+			int position = ToDoStore.this.indexOf(o);
+			if (position < 0 || positions == null) {
+				return position;
+			}
+			// the positions are sorted
+			int low = 0;
+			int high = count - 1;
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				if (positions[middle] < position) {
+					low = middle + 1;
+				} else if (positions[middle] > position) {
+					high = middle - 1;
+				} else {
+					return middle;
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		public int lastIndexOf(Object o) {
+			return indexOf(o);
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return indexOf(o) >= 0;
+		}
+
+		/**
+		 * Gets whether the subset can still be used: no items were added to or removed from the store
+		 * since it was made.
+		 */
+		public boolean isCurrent() {
+			return structureVersion == expectedStructureVersion;
+		}
+
+		private void checkStructure() {
+			if (structureVersion != expectedStructureVersion) {
+				throw new ConcurrentModificationException();
+			}
+		}
+	}
+
+	private ToDoItem copy(int index) {
+		return new ToDoItem(getId(index), titles[index], isCompleted(index), versions[index]);
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= ids.length) {
+			return;
+		}
+		int newCapacity = Math.max(capacity, ids.length * 2);
+		ids = grow(ids, newCapacity);
+		titles = grow(titles, newCapacity);
+		int[] grownVersions = new int[newCapacity];
+		System.arraycopy(versions, 0, grownVersions, 0, size);
+		versions = grownVersions;
+		double[] grownOrders = new double[newCapacity];
+		System.arraycopy(orders, 0, grownOrders, 0, size);
+		orders = grownOrders;
+		int[] grownCompleted = new int[newCapacity / 32 + 1];
+		System.arraycopy(completed, 0, grownCompleted, 0, completed.length);
+		completed = grownCompleted;
+
+		table = new int[Integer.highestOneBit(newCapacity - 1) * 4];
+		tableValid = false;
+	}
+
+	private String[] grow(String[] column, int capacity) {
+		String[] grown = new String[capacity];
+		System.arraycopy(column, 0, grown, 0, size);
+		return grown;
+	}
+
+	/**
+	 * Moves the completed states of the items from the given position on by one position, up or down.
+	 */
+	private void shiftCompleted(int from, int by) {
+		if (by > 0) {
+			for (int i = size - 1; i >= from; i--) {
+				copyCompleted(i, i + 1);
+			}
+		} else {
+			for (int i = from; i < size; i++) {
+				copyCompleted(i, i - 1);
+			}
+		}
+	}
+
+	private void copyCompleted(int from, int to) {
+		if ((completed[from >> 5] & (1 << (from & 31))) != 0) {
+			completed[to >> 5] |= 1 << (to & 31);
+		} else {
+			completed[to >> 5] &= ~(1 << (to & 31));
+		}
+	}
+
+	private void clearCompletedFrom(int from) {
+		int word = from >> 5;
+		if (word < completed.length) {
+			completed[word] &= (1 << (from & 31)) - 1;
+			Arrays.fill(completed, word + 1, completed.length, 0);
+		}
+	}
+
+	private int countCompleted() {
+		int count = 0;
+		for (int bits : completed) {
+			count += Integer.bitCount(bits);
+		}
+		return count;
+	}
+
+	private void rebuildTable() {
+		Arrays.fill(table, 0);
+		for (int i = 0; i < size; i++) {
+			put(ids[i], i);
+		}
+		tableValid = true;
+	}
+
+	private void put(String id, int index) {
+		int mask = table.length - 1;
+		int slot = hash(id) & mask;
+		while (table[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		table[slot] = index + 1;
+	}
+
+	private static int hash(String id) {
+		int h = id.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	private static void checkIndex(int index, int size) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+}
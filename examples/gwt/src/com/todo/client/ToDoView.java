@@ -3,6 +3,7 @@ package com.todo.client;
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.InputElement;
+import com.google.gwt.dom.client.NativeEvent;
 import com.google.gwt.dom.client.SpanElement;
 import com.google.gwt.dom.client.Style.Display;
 import com.google.gwt.event.dom.client.ClickEvent;
@@ -16,6 +17,8 @@ import com.google.gwt.user.cellview.client.CellList;
 import com.google.gwt.user.cellview.client.HasKeyboardSelectionPolicy.KeyboardSelectionPolicy;
 import com.google.gwt.user.client.DOM;
 import com.google.gwt.user.client.Event;
+import com.google.gwt.user.client.Event.NativePreviewEvent;
+import com.google.gwt.user.client.Event.NativePreviewHandler;
 import com.google.gwt.user.client.EventListener;
 import com.google.gwt.user.client.ui.Button;
 import com.google.gwt.user.client.ui.Composite;
@@ -23,6 +26,7 @@ import com.google.gwt.user.client.ui.Hyperlink;
 import com.google.gwt.user.client.ui.Widget;
 import com.google.gwt.view.client.AbstractDataProvider;
 import com.todo.client.ToDoPresenter.ViewEventHandler;
+import com.todo.client.events.ToDoEventChannel;
 
 /**
  * A view for the {@link ToDoPresenter}
@@ -65,8 +69,10 @@ public class ToDoView extends Composite implements ToDoPresenter.View {
 	@UiField
 	InputElement toggleAll;
 
+	private final ToDoCell todoCell = new ToDoCell();
+
 	@UiField(provided = true)
-	CellList<ToDoItem> todoTable = new CellList<ToDoItem>(new ToDoCell());
+	CellList<ToDoItem> todoTable = new CellList<ToDoItem>(todoCell);
 
 	public ToDoView() {
 		initWidget(uiBinder.createAndBindUi(this));
@@ -124,6 +130,29 @@ public class ToDoView extends Composite implements ToDoPresenter.View {
 				handler.clearCompletedTasks();
 			}
 		});
+
+		// Ctrl+Z undoes the last change, Ctrl+Y or Ctrl+Shift+Z redoes it, Cmd on the Mac. Text inputs
+		// keep their own undo.
+		Event.addNativePreviewHandler(new NativePreviewHandler() {
+			@Override
+			public void onPreviewNativeEvent(NativePreviewEvent event) {
+				NativeEvent nativeEvent = event.getNativeEvent();
+				if (event.getTypeInt() != Event.ONKEYDOWN
+						|| !(nativeEvent.getCtrlKey() || nativeEvent.getMetaKey())
+						|| "INPUT".equals(Element.as(nativeEvent.getEventTarget()).getTagName())) {
+					return;
+				}
+
+				int keyCode = nativeEvent.getKeyCode();
+				if (keyCode == 'Z' && !nativeEvent.getShiftKey()) {
+					nativeEvent.preventDefault();
+					handler.undo();
+				} else if (keyCode == 'Y' || keyCode == 'Z') {
+					nativeEvent.preventDefault();
+					handler.redo();
+				}
+			}
+		});
 	}
 
 	@Override
@@ -157,6 +186,11 @@ public class ToDoView extends Composite implements ToDoPresenter.View {
 		selectRoutingHyperlink(routingCompleted, ToDoRouting.COMPLETED, routing);
 	}
 
+	@Override
+	public void setEventChannel(ToDoEventChannel events) {
+		todoCell.setEventChannel(events);
+	}
+
 	private void selectRoutingHyperlink(Hyperlink hyperlink, ToDoRouting currentRoutingState,
 	    ToDoRouting routingStateToMatch) {
 		if (currentRoutingState == routingStateToMatch) {
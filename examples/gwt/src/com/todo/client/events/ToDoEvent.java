@@ -1,29 +1,61 @@
 package com.todo.client.events;
 
-import com.google.gwt.event.shared.EventBus;
-import com.google.gwt.event.shared.EventHandler;
-import com.google.gwt.event.shared.GwtEvent;
-import com.google.gwt.event.shared.SimpleEventBus;
-import com.todo.client.ToDoItem;
+import java.util.Arrays;
 
-public abstract class ToDoEvent<H extends EventHandler> extends GwtEvent<H> {
+import com.todo.client.ToDoItem;
 
-	private final ToDoItem toDo;
+/**
+ * A batch of items the user acted on, delivered by a {@link ToDoEventChannel}. Events are reused by
+ * the channel, so they are only valid while they are being dispatched.
+ */
+public abstract class ToDoEvent {
 
-	public ToDoEvent(ToDoItem toDo) {
-		this.toDo = toDo;
+	public enum Type {
+		UPDATED, REMOVED
 	}
 
-	public ToDoItem getToDo() {
-		return toDo;
+	private ToDoItem[] toDos = new ToDoItem[4];
+
+	private int size;
+
+	public abstract Type getType();
+
+	/**
+	 * The number of items in the batch.
+	 */
+	public int size() {
+		return size;
 	}
 
-	/* This acts as a global event bus factory */
+	public ToDoItem getToDo(int index) {
+		return toDos[index];
+	}
 
-	private static EventBus eventBus = new SimpleEventBus();
+	/**
+	 * Adds an item to the batch, and returns its index.
+	 */
+	int add(ToDoItem toDo) {
+		if (size == toDos.length) {
+			ToDoItem[] grown = new ToDoItem[size * 2];
+			System.arraycopy(toDos, 0, grown, 0, size);
+			toDos = grown;
+		}
+		toDos[size] = toDo;
+		return size++;
+	}
 
-	public static EventBus getGlobalEventBus() {
-		return eventBus;
+	/**
+	 * The capacity of the batch, for the values subclasses keep per item.
+	 */
+	int capacity() {
+		return toDos.length;
 	}
 
+	/**
+	 * Empties the batch so that the event can be reused.
+	 */
+	void clear() {
+		Arrays.fill(toDos, 0, size, null);
+		size = 0;
+	}
 }
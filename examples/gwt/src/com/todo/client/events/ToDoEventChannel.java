@@ -0,0 +1,178 @@
+package com.todo.client.events;
+
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import com.google.gwt.event.shared.HandlerRegistration;
+import com.todo.client.ToDoItem;
+
+/**
+ * Delivers the actions of the user on single items, raised by the cells of the list, to a presenter.
+ * Each presenter has a channel of its own.
+ *
+ * The items acted on while handling a browser event are delivered together, once that event has been
+ * handled: one {@link ToDoUpdatedEvent} with all the updated items, then one {@link ToDoRemovedEvent}
+ * with all the removed items. The events, and the command which schedules the delivery, are reused from
+ * one delivery to the next. Items fired while a delivery runs are delivered next.
+ */
+public class ToDoEventChannel {
+
+	/**
+	 * The handlers, replaced by a new array when one is added or removed, so that a delivery iterates the
+	 * array it started with without copying it.
+	 */
+	private ToDoUpdatedEvent.Handler[] updatedHandlers = new ToDoUpdatedEvent.Handler[0];
+
+	private ToDoRemovedEvent.Handler[] removedHandlers = new ToDoRemovedEvent.Handler[0];
+
+	/**
+	 * The events being filled, and the ones used by the delivery running, if any; they are swapped on
+	 * each delivery.
+	 */
+	private ToDoUpdatedEvent updated = new ToDoUpdatedEvent();
+
+	private ToDoUpdatedEvent updatedSpare = new ToDoUpdatedEvent();
+
+	private ToDoRemovedEvent removed = new ToDoRemovedEvent();
+
+	private ToDoRemovedEvent removedSpare = new ToDoRemovedEvent();
+
+	private boolean flushScheduled;
+
+	private final ScheduledCommand flushCommand = new ScheduledCommand() {
+		@Override
+		public void execute() {
+			flushScheduled = false;
+			flush();
+		}
+	};
+
+	private final int[] dispatches = new int[ToDoEvent.Type.values().length];
+
+	private final int[] items = new int[ToDoEvent.Type.values().length];
+
+	public HandlerRegistration addUpdatedHandler(final ToDoUpdatedEvent.Handler handler) {
+		ToDoUpdatedEvent.Handler[] handlers = new ToDoUpdatedEvent.Handler[updatedHandlers.length + 1];
+		System.arraycopy(updatedHandlers, 0, handlers, 0, updatedHandlers.length);
+		handlers[updatedHandlers.length] = handler;
+		updatedHandlers = handlers;
+		return new HandlerRegistration() {
+			@Override
+			public void removeHandler() {
+				int index = indexOf(updatedHandlers, handler);
+				if (index >= 0) {
+					ToDoUpdatedEvent.Handler[] handlers = new ToDoUpdatedEvent.Handler[updatedHandlers.length - 1];
+					copyWithout(updatedHandlers, index, handlers);
+					updatedHandlers = handlers;
+				}
+			}
+		};
+	}
+
+	public HandlerRegistration addRemovedHandler(final ToDoRemovedEvent.Handler handler) {
+		ToDoRemovedEvent.Handler[] handlers = new ToDoRemovedEvent.Handler[removedHandlers.length + 1];
+		System.arraycopy(removedHandlers, 0, handlers, 0, removedHandlers.length);
+		handlers[removedHandlers.length] = handler;
+		removedHandlers = handlers;
+		return new HandlerRegistration() {
+			@Override
+			public void removeHandler() {
+				int index = indexOf(removedHandlers, handler);
+				if (index >= 0) {
+					ToDoRemovedEvent.Handler[] handlers = new ToDoRemovedEvent.Handler[removedHandlers.length - 1];
+					copyWithout(removedHandlers, index, handlers);
+					removedHandlers = handlers;
+				}
+			}
+		};
+	}
+
+	private static int indexOf(Object[] handlers, Object handler) {
+		for (int i = 0; i < handlers.length; i++) {
+			if (handlers[i] == handler) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static void copyWithout(Object[] handlers, int index, Object[] copy) {
+		System.arraycopy(handlers, 0, copy, 0, index);
+		System.arraycopy(handlers, index + 1, copy, index, handlers.length - index - 1);
+	}
+
+	/**
+	 * The user changed the title or completed state of an item.
+	 */
+	public void fireUpdated(ToDoItem toDo, String previousTitle, boolean previousCompleted) {
+		updated.add(toDo, previousTitle, previousCompleted);
+		scheduleFlush();
+	}
+
+	/**
+	 * The user removed an item.
+	 */
+	public void fireRemoved(ToDoItem toDo) {
+		removed.add(toDo);
+		scheduleFlush();
+	}
+
+	private void scheduleFlush() {
+		if (flushScheduled) {
+			return;
+		}
+		flushScheduled = true;
+		Scheduler.get().scheduleFinally(flushCommand);
+	}
+
+	/**
+	 * Delivers the items fired so far.
+	 */
+	public void flush() {
+		if (updated.size() > 0) {
+			ToDoUpdatedEvent event = updated;
+			updated = updatedSpare;
+			updatedSpare = event;
+			count(event);
+			try {
+				for (ToDoUpdatedEvent.Handler handler : updatedHandlers) {
+					handler.onEvent(event);
+				}
+			} finally {
+				event.clear();
+			}
+		}
+
+		if (removed.size() > 0) {
+			ToDoRemovedEvent event = removed;
+			removed = removedSpare;
+			removedSpare = event;
+			count(event);
+			try {
+				for (ToDoRemovedEvent.Handler handler : removedHandlers) {
+					handler.onEvent(event);
+				}
+			} finally {
+				event.clear();
+			}
+		}
+	}
+
+	private void count(ToDoEvent event) {
+		dispatches[event.getType().ordinal()]++;
+		items[event.getType().ordinal()] += event.size();
+	}
+
+	/**
+	 * The number of deliveries of the given type of event so far.
+	 */
+	public int getDispatchCount(ToDoEvent.Type type) {
+		return dispatches[type.ordinal()];
+	}
+
+	/**
+	 * The number of items delivered in the given type of event so far.
+	 */
+	public int getItemCount(ToDoEvent.Type type) {
+		return items[type.ordinal()];
+	}
+}
@@ -1,28 +1,20 @@
 package com.todo.client.events;
 
-import com.google.gwt.event.shared.EventHandler;
-import com.todo.client.ToDoItem;
+/**
+ * The user removed items.
+ */
+public class ToDoRemovedEvent extends ToDoEvent {
 
-public class ToDoRemovedEvent extends ToDoEvent<ToDoRemovedEvent.Handler> {
-
-	public static final Type<ToDoRemovedEvent.Handler> TYPE = new Type<ToDoRemovedEvent.Handler>();
-
-	public static interface Handler extends EventHandler {
+	public static interface Handler {
 
 		void onEvent(ToDoRemovedEvent event);
 	}
 
-	public ToDoRemovedEvent(ToDoItem toDo) {
-		super(toDo);
-	}
-
-	@Override
-	public Type<ToDoRemovedEvent.Handler> getAssociatedType() {
-		return TYPE;
+	ToDoRemovedEvent() {
 	}
 
 	@Override
-	protected void dispatch(ToDoRemovedEvent.Handler handler) {
-		handler.onEvent(this);
+	public Type getType() {
+		return Type.REMOVED;
 	}
-}
\ No newline at end of file
+}
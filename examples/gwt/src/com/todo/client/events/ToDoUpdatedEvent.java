@@ -1,28 +1,62 @@
 package com.todo.client.events;
 
-import com.google.gwt.event.shared.EventHandler;
-import com.todo.client.ToDoItem;
+import java.util.Arrays;
 
-public class ToDoUpdatedEvent extends ToDoEvent<ToDoUpdatedEvent.Handler> {
+import com.todo.client.ToDoItem;
 
-	public static final Type<ToDoUpdatedEvent.Handler> TYPE = new Type<ToDoUpdatedEvent.Handler>();
+/**
+ * The user changed the title or completed state of items.
+ */
+public class ToDoUpdatedEvent extends ToDoEvent {
 
-	public static interface Handler extends EventHandler {
+	public static interface Handler {
 
 		void onEvent(ToDoUpdatedEvent event);
 	}
 
-	public ToDoUpdatedEvent(ToDoItem toDo) {
-		super(toDo);
+	private String[] previousTitles = new String[4];
+
+	private boolean[] previousCompleted = new boolean[4];
+
+	ToDoUpdatedEvent() {
 	}
 
 	@Override
-	public Type<ToDoUpdatedEvent.Handler> getAssociatedType() {
-		return TYPE;
+	public Type getType() {
+		return Type.UPDATED;
+	}
+
+	/**
+	 * The title of the item before the change.
+	 */
+	public String getPreviousTitle(int index) {
+		return previousTitles[index];
+	}
+
+	/**
+	 * The completed state of the item before the change.
+	 */
+	public boolean isPreviousCompleted(int index) {
+		return previousCompleted[index];
+	}
+
+	void add(ToDoItem toDo, String previousTitle, boolean previousCompleted) {
+		int index = add(toDo);
+		if (previousTitles.length < capacity()) {
+			String[] titles = new String[capacity()];
+			boolean[] completed = new boolean[capacity()];
+			System.arraycopy(previousTitles, 0, titles, 0, index);
+			System.arraycopy(this.previousCompleted, 0, completed, 0, index);
+			previousTitles = titles;
+			this.previousCompleted = completed;
+		}
+		previousTitles[index] = previousTitle;
+		this.previousCompleted[index] = previousCompleted;
 	}
 
 	@Override
-	protected void dispatch(ToDoUpdatedEvent.Handler handler) {
-		handler.onEvent(this);
+	void clear() {
+		Arrays.fill(previousTitles, 0, size(), null);
+		super.clear();
 	}
-}
\ No newline at end of file
+}
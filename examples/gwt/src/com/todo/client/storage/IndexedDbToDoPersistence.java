@@ -0,0 +1,451 @@
+package com.todo.client.storage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArray;
+import com.google.gwt.core.client.JsArrayString;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import com.todo.client.ToDoItem;
+import com.todo.client.ToDoOperation;
+import com.todo.client.ToDoStore;
+
+/**
+ * Stores each item as a record keyed by its id in an IndexedDB object store. Reads and writes are
+ * asynchronous, so large lists do not block the UI thread, and they are not limited by the local
+ * storage quota.
+ *
+ * Saves are coalesced: all the operations applied while handling an event are written together, in a
+ * single transaction which puts or deletes only the records of their items, so the cost of a write
+ * does not depend on the length of the list. A full save puts every record of the list, and deletes
+ * only the records of the items it no longer holds, so that records written by other tabs in the
+ * meantime are kept. A failed write is run again with the next one. A write waits for the previous
+ * transaction to complete.
+ *
+ * The list order of the records is kept in the {@link ToDoStore} of the items, so no state is kept per
+ * item here. An item added between two others is given an order between theirs, so that the other
+ * records are not rewritten.
+ *
+ * Items stored by {@link LocalStorageToDoPersistence} are imported on first load. They are removed
+ * from local storage once they have been written to IndexedDB, so an import which fails, or which
+ * is cut short by closing the page, is run again on the next load. When IndexedDB cannot be opened,
+ * local storage is used instead. It is also used from then on when the database is deleted or upgraded
+ * by another page, or keeps failing to write, and the list is saved there, so that it is imported when
+ * the database is gone.
+ */
+public class IndexedDbToDoPersistence implements ToDoPersistence {
+
+	private static final String DATABASE = "todo-gwt";
+
+	private static final String STORE = "todos";
+
+	private static final int MAX_FAILURES = 3;
+
+	private static final Comparator<ToDoRecord> BY_ORDER = new Comparator<ToDoRecord>() {
+		@Override
+		public int compare(ToDoRecord a, ToDoRecord b) {
+			return Double.compare(a.getOrder(), b.getOrder());
+		}
+	};
+
+	private final LocalStorageToDoPersistence localStorage;
+
+	private JavaScriptObject database;
+
+	private boolean fallback;
+
+	private double nextOrder;
+
+	/**
+	 * The list given to the last full save, written with the next transaction.
+	 */
+	private ToDoStore pending;
+
+	/**
+	 * The list given with the last operation or full save.
+	 */
+	private ToDoStore latest;
+
+	/**
+	 * The ids of the items of the operations applied since the last write.
+	 */
+	private final Set<String> changed = new LinkedHashSet<String>();
+
+	/**
+	 * The ids of the items written by the transaction in flight, written again when it fails.
+	 */
+	private final Set<String> written = new LinkedHashSet<String>();
+
+	/**
+	 * Whether the transaction in flight writes a whole list.
+	 */
+	private boolean writingAll;
+
+	/**
+	 * Whether the last transaction failed while writing a whole list, so that it is written again.
+	 */
+	private boolean rewrite;
+
+	/**
+	 * The number of transactions which failed in a row.
+	 */
+	private int failures;
+
+	private boolean flushScheduled;
+
+	private boolean writing;
+
+	/**
+	 * Whether items imported from local storage are waiting to be written, which they are kept in
+	 * until then.
+	 */
+	private boolean importing;
+
+	public IndexedDbToDoPersistence() {
+		this(null);
+	}
+
+	/**
+	 * @param worker encodes and decodes the list when local storage is used, or null to do it on the UI
+	 *        thread
+	 */
+	public IndexedDbToDoPersistence(ToDoListWorker worker) {
+		localStorage = new LocalStorageToDoPersistence(worker);
+	}
+
+	/**
+	 * Gets whether the browser supports IndexedDB.
+	 */
+	public static native boolean isSupported() /*-{
+		return !!$wnd.indexedDB;
+	}-*/;
+
+	@Override
+	public void load(final LoadCallback callback) {
+		open(callback);
+	}
+
+	/**
+	 * Records are already stored one per item, so an operation is stored like any other change: only the
+	 * records it changed are written.
+	 */
+	@Override
+	public void apply(ToDoOperation operation, ToDoStore items) {
+		if (fallback) {
+			localStorage.apply(operation, items);
+			return;
+		}
+
+		for (ToDoOperation.Entry entry : operation.getEntries()) {
+			changed.add(entry.getId());
+		}
+		latest = items;
+		scheduleFlush();
+	}
+
+	/**
+	 * The items are written as they are when the write runs. Their orders are assigned straight away, so
+	 * that they are known to the lists the items are added to.
+	 */
+	@Override
+	public void save(List<ToDoItem> items) {
+		if (fallback) {
+			localStorage.save(items);
+			return;
+		}
+
+		pending = items instanceof ToDoStore ? (ToDoStore) items : new ToDoStore(items);
+		for (int i = 0; i < pending.size(); i++) {
+			if (Double.isNaN(pending.getOrder(i))) {
+				assignOrders(pending, i);
+			}
+		}
+		if (latest != null && latest != pending) {
+			// the items of the previous list which are gone are deleted, the records of others are kept
+			for (int i = 0; i < latest.size(); i++) {
+				if (pending.indexOf(latest.getId(i)) < 0) {
+					changed.add(latest.getId(i));
+				}
+			}
+		}
+		latest = pending;
+		scheduleFlush();
+	}
+
+	/**
+	 * Records are written as they are, only the list stored in local storage is encoded: the one
+	 * imported on first load, or the one used instead of IndexedDB.
+	 */
+	@Override
+	public ToDoStorageTimings getTimings() {
+		return localStorage.getTimings();
+	}
+
+	private void scheduleFlush() {
+		if (flushScheduled || writing || database == null) {
+			return;
+		}
+		flushScheduled = true;
+		Scheduler.get().scheduleDeferred(new ScheduledCommand() {
+			@Override
+			public void execute() {
+				flushScheduled = false;
+				flush();
+			}
+		});
+	}
+
+	private void flush() {
+		if (fallback) {
+			return;
+		}
+		ToDoStore all = pending != null ? pending : rewrite ? latest : null;
+		if (all == null && changed.isEmpty()) {
+			return;
+		}
+		pending = null;
+		rewrite = false;
+
+		JsArray<ToDoRecord> puts = JavaScriptObject.createArray().cast();
+		JsArrayString deletes = JavaScriptObject.createArray().cast();
+		if (all != null) {
+			for (int i = 0; i < all.size(); i++) {
+				puts.push(record(all, i));
+			}
+		}
+
+		// the items changed by operations, after the full save if any
+		for (String id : changed) {
+			int index = latest.indexOf(id);
+			if (index >= 0) {
+				puts.push(record(latest, index));
+			} else {
+				deletes.push(id);
+			}
+		}
+		written.addAll(changed);
+		writingAll = all != null;
+		changed.clear();
+
+		writing = true;
+		write(database, puts, deletes);
+	}
+
+	private ToDoRecord record(ToDoStore items, int index) {
+		if (Double.isNaN(items.getOrder(index))) {
+			assignOrders(items, index);
+		}
+		return ToDoRecord.create(items.getId(index), items.getTitle(index), items.isCompleted(index),
+			items.getVersion(index), items.getOrder(index));
+	}
+
+	/**
+	 * Assigns orders to the run of items without one around the given position, spread between the
+	 * orders of the items on either side.
+	 */
+	private void assignOrders(ToDoStore items, int index) {
+		int start = index;
+		while (start > 0 && Double.isNaN(items.getOrder(start - 1))) {
+			start--;
+		}
+		int end = index + 1;
+		while (end < items.size() && Double.isNaN(items.getOrder(end))) {
+			end++;
+		}
+		if (end == items.size()) {
+			for (int i = start; i < end; i++) {
+				items.setOrder(i, nextOrder++);
+			}
+			return;
+		}
+
+		double after = items.getOrder(end);
+		double before = start > 0 ? items.getOrder(start - 1) : after - (end - start) - 1;
+		double step = (after - before) / (end - start + 1);
+		for (int i = start; i < end; i++) {
+			items.setOrder(i, before + step * (i - start + 1));
+		}
+	}
+
+	/**
+	 * Invoked when a write transaction completed or failed.
+	 */
+	private void onWritten(boolean success) {
+		writing = false;
+		if (fallback) {
+			// completed after the database was given up, the list is in local storage
+			return;
+		}
+		if (success) {
+			failures = 0;
+			if (importing) {
+				importing = false;
+				localStorage.clear();
+			}
+		} else {
+			// nothing of the transaction was stored, write its items again with the next one
+			changed.addAll(written);
+			rewrite |= writingAll;
+			if (++failures >= MAX_FAILURES) {
+				useLocalStorage();
+				return;
+			}
+		}
+		written.clear();
+		writingAll = false;
+		if (pending != null || rewrite || !changed.isEmpty()) {
+			scheduleFlush();
+		}
+	}
+
+	/**
+	 * Invoked when another page deletes or upgrades the database, which waits for this connection to be
+	 * closed.
+	 */
+	private void onVersionChange() {
+		useLocalStorage();
+	}
+
+	/**
+	 * Closes the database and stores the list in local storage from now on.
+	 */
+	private void useLocalStorage() {
+		if (database != null) {
+			close(database);
+			database = null;
+		}
+		fallback = true;
+		ToDoStore items = pending != null ? pending : latest;
+		pending = null;
+		changed.clear();
+		written.clear();
+		if (items != null) {
+			localStorage.save(items);
+		}
+	}
+
+	private void onOpened(JavaScriptObject database, JsArray<ToDoRecord> records, LoadCallback callback) {
+		this.database = database;
+
+		List<ToDoRecord> sorted = new ArrayList<ToDoRecord>(records.length());
+		for (int i = 0; i < records.length(); i++) {
+			sorted.add(records.get(i));
+		}
+		Collections.sort(sorted, BY_ORDER);
+
+		// the items bring their orders along to the list of the application
+		ToDoStore items = new ToDoStore();
+		for (ToDoRecord record : sorted) {
+			items.add(new ToDoItem(record.getId(), record.getTitle(), record.isCompleted(), record.getVersion()));
+			items.setOrder(items.size() - 1, record.getOrder());
+			nextOrder = Math.max(nextOrder, record.getOrder() + 1);
+		}
+
+		if (items.isEmpty()) {
+			// first run, import the items stored by earlier versions
+			items = new ToDoStore(localStorage.read());
+			if (!items.isEmpty()) {
+				importing = true;
+				save(items);
+			}
+		}
+
+		callback.onLoaded(items);
+	}
+
+	private void onOpenFailed(LoadCallback callback) {
+		fallback = true;
+		localStorage.load(callback);
+	}
+
+	private native void open(LoadCallback callback) /*-{
+		var self = this;
+		var request;
+		try {
+			request = $wnd.indexedDB.open(@com.todo.client.storage.IndexedDbToDoPersistence::DATABASE, 1);
+		} catch (e) {
+			self.@com.todo.client.storage.IndexedDbToDoPersistence::onOpenFailed(Lcom/todo/client/storage/ToDoPersistence$LoadCallback;)(callback);
+			return;
+		}
+
+		request.onupgradeneeded = function() {
+			request.result.createObjectStore(@com.todo.client.storage.IndexedDbToDoPersistence::STORE, { keyPath: 'id' });
+		};
+
+		request.onerror = $entry(function() {
+			self.@com.todo.client.storage.IndexedDbToDoPersistence::onOpenFailed(Lcom/todo/client/storage/ToDoPersistence$LoadCallback;)(callback);
+		});
+
+		request.onsuccess = function() {
+			var db = request.result;
+			db.onversionchange = $entry(function() {
+				self.@com.todo.client.storage.IndexedDbToDoPersistence::onVersionChange()();
+			});
+			var records = [];
+			var cursorRequest = db.transaction(@com.todo.client.storage.IndexedDbToDoPersistence::STORE, 'readonly')
+				.objectStore(@com.todo.client.storage.IndexedDbToDoPersistence::STORE).openCursor();
+
+			cursorRequest.onsuccess = $entry(function() {
+				var cursor = cursorRequest.result;
+				if (cursor) {
+					records.push(cursor.value);
+					cursor['continue']();
+				} else {
+					self.@com.todo.client.storage.IndexedDbToDoPersistence::onOpened(Lcom/google/gwt/core/client/JavaScriptObject;Lcom/google/gwt/core/client/JsArray;Lcom/todo/client/storage/ToDoPersistence$LoadCallback;)(db, records, callback);
+				}
+			});
+
+			cursorRequest.onerror = $entry(function() {
+				db.close();
+				self.@com.todo.client.storage.IndexedDbToDoPersistence::onOpenFailed(Lcom/todo/client/storage/ToDoPersistence$LoadCallback;)(callback);
+			});
+		};
+	}-*/;
+
+	/**
+	 * Writes the records in a transaction, reporting its outcome once, also when the transaction could
+	 * not be started, e.g. on a closed connection.
+	 */
+	private native void write(JavaScriptObject database, JsArray<ToDoRecord> puts, JsArrayString deletes) /*-{
+		var self = this;
+		var transaction = null;
+		try {
+			transaction = database.transaction(@com.todo.client.storage.IndexedDbToDoPersistence::STORE, 'readwrite');
+			transaction.oncomplete = $entry(function() {
+				self.@com.todo.client.storage.IndexedDbToDoPersistence::onWritten(Z)(true);
+			});
+			transaction.onerror = transaction.onabort = $entry(function() {
+				transaction.onerror = transaction.onabort = null;
+				self.@com.todo.client.storage.IndexedDbToDoPersistence::onWritten(Z)(false);
+			});
+			var store = transaction.objectStore(@com.todo.client.storage.IndexedDbToDoPersistence::STORE);
+			for (var i = 0; i < puts.length; i++) {
+				store.put(puts[i]);
+			}
+			for (var j = 0; j < deletes.length; j++) {
+				store['delete'](deletes[j]);
+			}
+		} catch (e) {
+			if (transaction) {
+				// reported by onabort
+				try {
+					transaction.abort();
+					return;
+				} catch (ignored) {
+					transaction.onerror = transaction.onabort = null;
+				}
+			}
+			self.@com.todo.client.storage.IndexedDbToDoPersistence::onWritten(Z)(false);
+		}
+	}-*/;
+
+	private static native void close(JavaScriptObject database) /*-{
+		database.close();
+	}-*/;
+}
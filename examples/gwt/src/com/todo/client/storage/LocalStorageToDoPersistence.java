@@ -0,0 +1,331 @@
+package com.todo.client.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.json.client.JSONArray;
+import com.google.gwt.json.client.JSONBoolean;
+import com.google.gwt.json.client.JSONNumber;
+import com.google.gwt.json.client.JSONObject;
+import com.google.gwt.json.client.JSONParser;
+import com.google.gwt.json.client.JSONString;
+import com.google.gwt.json.client.JSONValue;
+import com.google.gwt.storage.client.Storage;
+import com.todo.client.ToDoItem;
+import com.todo.client.ToDoOperation;
+import com.todo.client.ToDoStore;
+import com.todo.client.storage.ToDoStorageTimings.Path;
+import com.todo.client.storage.ToDoStorageTimings.Step;
+
+/**
+ * Stores the items in local storage as a snapshot and an append-only log of operations.
+ *
+ * The snapshot holds the items under {@link #STORAGE_KEY} in the compact encoding of
+ * {@link ToDoListCodec}; a snapshot stored as a JSON array by earlier versions is rewritten in that
+ * encoding when it is read. Each operation is written under a key of its own, {@code todo-gwt-op-<n>},
+ * so storing an operation does not depend on the number of items. Every {@link #COMPACT_AFTER} operations, the log is compacted: the snapshot is
+ * rewritten and the operations are removed. Loading reads the snapshot and replays the operations.
+ *
+ * Operations are written synchronously. With a {@link ToDoListWorker}, the snapshot is encoded and
+ * decoded off the UI thread, and written once encoded; it then holds the operations logged before
+ * it was requested, and the operations logged meanwhile stay in the log. Without a worker, or when
+ * the worker fails, the snapshot is encoded and decoded on the UI thread. The time spent either way
+ * is recorded in the {@link ToDoStorageTimings}.
+ */
+public class LocalStorageToDoPersistence implements ToDoPersistence {
+
+	public static final String STORAGE_KEY = "todo-gwt";
+
+	private static final String LOG_KEY = "todo-gwt-log";
+
+	private static final String OPERATION_KEY = "todo-gwt-op-";
+
+	private static final int COMPACT_AFTER = 100;
+
+	private final ToDoListWorker worker;
+
+	private final ToDoStorageTimings timings = new ToDoStorageTimings();
+
+	/**
+	 * The number of snapshots being encoded by the worker.
+	 */
+	private int encoding;
+
+	/**
+	 * Encodes and decodes the snapshot on the UI thread.
+	 */
+	public LocalStorageToDoPersistence() {
+		this(null);
+	}
+
+	/**
+	 * @param worker encodes and decodes the snapshot, or null to do it on the UI thread
+	 */
+	public LocalStorageToDoPersistence(ToDoListWorker worker) {
+		this.worker = worker;
+	}
+
+	@Override
+	public void load(final LoadCallback callback) {
+		final Storage storage = Storage.getLocalStorageIfSupported();
+		final String state = storage != null ? storage.getItem(STORAGE_KEY) : null;
+		if (worker == null || state == null) {
+			callback.onLoaded(read());
+			return;
+		}
+
+		final Duration duration = new Duration();
+		worker.decode(state, new ToDoListWorker.DecodeCallback() {
+			@Override
+			public void onDecoded(List<ToDoItem> items, boolean json) {
+				timings.record(Path.WORKER, Step.DECODE, items.size(), duration.elapsedMillis());
+				List<ToDoItem> replayed = replay(storage, items);
+				if (json) {
+					// migrate the snapshot
+					save(replayed);
+				}
+				callback.onLoaded(replayed);
+			}
+
+			@Override
+			public void onFailure() {
+				callback.onLoaded(read());
+			}
+		});
+	}
+
+	@Override
+	public void apply(ToDoOperation operation, ToDoStore items) {
+		Storage storage = Storage.getLocalStorageIfSupported();
+		if (storage == null) {
+			return;
+		}
+
+		int[] log = readLog(storage);
+		storage.setItem(OPERATION_KEY + log[1], encode(operation, items).toString());
+		storage.setItem(LOG_KEY, log[0] + "," + (log[1] + 1));
+
+		if (log[1] + 1 - log[0] >= COMPACT_AFTER && encoding == 0) {
+			save(items);
+		}
+	}
+
+	@Override
+	public void save(List<ToDoItem> items) {
+		final Storage storage = Storage.getLocalStorageIfSupported();
+		if (storage == null) {
+			return;
+		}
+
+		// the snapshot holds the operations logged so far
+		final int[] log = readLog(storage);
+		if (worker == null) {
+			writeSnapshot(storage, encodeSync(items), log);
+			return;
+		}
+
+		// the items of a store are views of its columns, which change with the next operations; the
+		// worker reads them now, and the synchronous codec, if the worker fails, reads a copy of the values
+		final ToDoStore copy = new ToDoStore(items);
+		final Duration duration = new Duration();
+		encoding++;
+		worker.encode(items, new ToDoListWorker.EncodeCallback() {
+			@Override
+			public void onEncoded(String data) {
+				encoding--;
+				timings.record(Path.WORKER, Step.ENCODE, copy.size(), duration.elapsedMillis());
+				writeSnapshot(storage, data, log);
+			}
+
+			@Override
+			public void onFailure() {
+				encoding--;
+				writeSnapshot(storage, encodeSync(copy), log);
+			}
+		});
+	}
+
+	@Override
+	public ToDoStorageTimings getTimings() {
+		return timings;
+	}
+
+	/**
+	 * Reads the stored items on the UI thread, or returns an empty list when there are none.
+	 */
+	public List<ToDoItem> read() {
+		List<ToDoItem> items = new ArrayList<ToDoItem>();
+		Storage storage = Storage.getLocalStorageIfSupported();
+		if (storage != null) {
+			// get state
+			String state = storage.getItem(STORAGE_KEY);
+			Duration duration = new Duration();
+			try {
+				if (ToDoListCodec.isEncoded(state)) {
+					items.addAll(ToDoListCodec.decode(state));
+				} else if (state != null) {
+					readJson(state, items);
+					// migrate the snapshot, the logged operations apply to it as they did
+					storage.setItem(STORAGE_KEY, encodeSync(items));
+				}
+			} catch (Exception e) {
+
+			}
+			if (state != null) {
+				timings.record(Path.SYNC, Step.DECODE, items.size(), duration.elapsedMillis());
+			}
+
+			return replay(storage, items);
+		}
+		return items;
+	}
+
+	private String encodeSync(List<ToDoItem> items) {
+		Duration duration = new Duration();
+		String data = ToDoListCodec.encode(items);
+		timings.record(Path.SYNC, Step.ENCODE, items.size(), duration.elapsedMillis());
+		return data;
+	}
+
+	/**
+	 * Writes a snapshot holding the operations logged before {@code log[1]}, and removes them from the
+	 * log. The snapshot is not written when a later one was written already.
+	 */
+	private static void writeSnapshot(Storage storage, String data, int[] log) {
+		int[] current = readLog(storage);
+		if (current[0] > log[1]) {
+			return;
+		}
+		storage.setItem(STORAGE_KEY, data);
+		storage.setItem(LOG_KEY, log[1] + "," + current[1]);
+		for (int i = current[0]; i < log[1]; i++) {
+			storage.removeItem(OPERATION_KEY + i);
+		}
+	}
+
+	/**
+	 * Removes the stored items.
+	 */
+	public void clear() {
+		Storage storage = Storage.getLocalStorageIfSupported();
+		if (storage != null) {
+			int[] log = readLog(storage);
+			for (int i = log[0]; i < log[1]; i++) {
+				storage.removeItem(OPERATION_KEY + i);
+			}
+			storage.removeItem(LOG_KEY);
+			storage.removeItem(STORAGE_KEY);
+		}
+	}
+
+	/**
+	 * Reads a snapshot stored by earlier versions, a JSON array of {@code {"id", "task", "complete", "version"}}.
+	 */
+	private static void readJson(String state, List<ToDoItem> items) {
+		JSONArray todoItems = JSONParser.parseStrict(state).isArray();
+		for (int i = 0; i < todoItems.size(); i++) {
+			// extract the to-do item values
+			JSONObject jsonObject = todoItems.get(i).isObject();
+			String task = jsonObject.get("task").isString().stringValue();
+			boolean completed = jsonObject.get("complete").isBoolean().booleanValue();
+			// items stored before ids were introduced get a new one
+			JSONValue id = jsonObject.get("id");
+			JSONValue version = jsonObject.get("version");
+			items.add(id != null && id.isString() != null
+				? new ToDoItem(id.isString().stringValue(), task, completed,
+					version != null && version.isNumber() != null ? (int) version.isNumber().doubleValue() : 0)
+				: new ToDoItem(task, completed));
+		}
+	}
+
+	/**
+	 * Applies the logged operations to the items of the snapshot.
+	 *
+	 * @return the items with the operations applied
+	 */
+	private static List<ToDoItem> replay(Storage storage, List<ToDoItem> items) {
+		int[] log = readLog(storage);
+		if (log[0] == log[1]) {
+			return items;
+		}
+
+		ToDoStore store = new ToDoStore(items);
+		for (int i = log[0]; i < log[1]; i++) {
+			String operation = storage.getItem(OPERATION_KEY + i);
+			if (operation == null) {
+				continue;
+			}
+			try {
+				decode(JSONParser.parseStrict(operation).isObject()).apply(store);
+			} catch (Exception e) {
+				// skip an operation which cannot be read
+			}
+		}
+		return store;
+	}
+
+	/**
+	 * Reads the range of logged operations, {@code [first, next)}.
+	 */
+	private static int[] readLog(Storage storage) {
+		String log = storage.getItem(LOG_KEY);
+		if (log != null) {
+			int comma = log.indexOf(',');
+			try {
+				return new int[] { Integer.parseInt(log.substring(0, comma)), Integer.parseInt(log.substring(comma + 1)) };
+			} catch (Exception e) {
+
+			}
+		}
+		return new int[] { 0, 0 };
+	}
+
+	/**
+	 * Encodes an operation as
+	 * {@code {"op": <type>, "items": [{"id", "index", "task", "complete", "previous", "version"}]}}, with
+	 * the version each item has in the list, absent for removed items.
+	 */
+	private static JSONObject encode(ToDoOperation operation, ToDoStore items) {
+		JSONArray entries = new JSONArray();
+		for (ToDoOperation.Entry entry : operation.getEntries()) {
+			JSONObject jsonObject = new JSONObject();
+			jsonObject.put("id", new JSONString(entry.getId()));
+			jsonObject.put("index", new JSONNumber(entry.getIndex()));
+			jsonObject.put("task", new JSONString(entry.getTitle()));
+			jsonObject.put("complete", JSONBoolean.getInstance(entry.isCompleted()));
+			if (entry.getPreviousTitle() != null) {
+				jsonObject.put("previous", new JSONString(entry.getPreviousTitle()));
+			}
+			int position = items.indexOf(entry.getId());
+			if (position >= 0) {
+				jsonObject.put("version", new JSONNumber(items.getVersion(position)));
+			}
+			entries.set(entries.size(), jsonObject);
+		}
+
+		JSONObject json = new JSONObject();
+		json.put("op", new JSONString(operation.getType().name()));
+		json.put("items", entries);
+		return json;
+	}
+
+	private static ToDoOperation decode(JSONObject json) {
+		JSONArray items = json.get("items").isArray();
+		List<ToDoOperation.Entry> entries = new ArrayList<ToDoOperation.Entry>(items.size());
+		for (int i = 0; i < items.size(); i++) {
+			JSONObject jsonObject = items.get(i).isObject();
+			JSONValue previous = jsonObject.get("previous");
+			// operations logged by earlier versions have no version
+			JSONValue version = jsonObject.get("version");
+			entries.add(new ToDoOperation.Entry(
+				jsonObject.get("id").isString().stringValue(),
+				(int) jsonObject.get("index").isNumber().doubleValue(),
+				jsonObject.get("task").isString().stringValue(),
+				jsonObject.get("complete").isBoolean().booleanValue(),
+				previous != null && previous.isString() != null ? previous.isString().stringValue() : null,
+				version != null && version.isNumber() != null ? (int) version.isNumber().doubleValue() : -1));
+		}
+		return new ToDoOperation(ToDoOperation.Type.valueOf(json.get("op").isString().stringValue()), entries);
+	}
+}
@@ -0,0 +1,77 @@
+package com.todo.client.storage;
+
+import com.google.gwt.core.client.JavaScriptObject;
+
+/**
+ * A message exchanged with the worker of {@link ToDoListWorker}. It holds a list as columns,
+ * {@code {ids, titles, completed, versions}}, or an encoded list as {@code data}, and is answered with
+ * a message of the same id. See {@code todo-worker.js}.
+ */
+final class ToDoListMessage extends JavaScriptObject {
+
+	protected ToDoListMessage() {
+	}
+
+	/**
+	 * @param type {@code decode} or {@code encode}
+	 */
+	static native ToDoListMessage create(int id, String type) /*-{
+		return { id: id, type: type, ids: [], titles: [], completed: [], versions: [] };
+	}-*/;
+
+	native void push(String id, String title, boolean completed, int version) /*-{
+		this.ids.push(id);
+		this.titles.push(title);
+		this.completed.push(completed);
+		this.versions.push(version);
+	}-*/;
+
+	native int getRequestId() /*-{
+		return this.id;
+	}-*/;
+
+	native int length() /*-{
+		return this.ids ? this.ids.length : 0;
+	}-*/;
+
+	/**
+	 * The id of the item at the index, or null for items stored before ids were introduced.
+	 */
+	native String getId(int index) /*-{
+		return this.ids[index];
+	}-*/;
+
+	native String getTitle(int index) /*-{
+		return this.titles[index];
+	}-*/;
+
+	native boolean isCompleted(int index) /*-{
+		return !!this.completed[index];
+	}-*/;
+
+	native int getVersion(int index) /*-{
+		return this.versions[index] || 0;
+	}-*/;
+
+	/**
+	 * Whether the decoded list was stored as JSON by earlier versions.
+	 */
+	native boolean isJson() /*-{
+		return !!this.json;
+	}-*/;
+
+	native String getData() /*-{
+		return this.data;
+	}-*/;
+
+	native void setData(String data) /*-{
+		this.data = data;
+	}-*/;
+
+	/**
+	 * The reason the request failed, or null.
+	 */
+	native String getError() /*-{
+		return this.error || null;
+	}-*/;
+}
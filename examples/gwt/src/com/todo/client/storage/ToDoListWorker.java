@@ -0,0 +1,208 @@
+package com.todo.client.storage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.RepeatingCommand;
+import com.google.gwt.resources.client.ClientBundle;
+import com.google.gwt.resources.client.TextResource;
+import com.todo.client.ToDoItem;
+
+/**
+ * Encodes and decodes the stored list in a Web Worker, so that large lists do not block the UI thread.
+ * The worker runs {@code todo-worker.js}, which implements the encoding of {@link ToDoListCodec} and also
+ * reads the JSON lists stored by earlier versions. It is started on the first request.
+ *
+ * Only the columns of the list cross to and from the worker. Decoded items are created on the UI thread
+ * in batches of {@link #BATCH_SIZE}, between which the browser handles input. Encodings are answered in
+ * the order they were requested.
+ *
+ * When a request fails its callback is told, so that the caller can use the synchronous codec instead.
+ * When the worker cannot be started, or fails, every request fails.
+ */
+public class ToDoListWorker {
+
+	interface Resources extends ClientBundle {
+
+		@Source("todo-worker.js")
+		TextResource script();
+	}
+
+	/**
+	 * Receives a decoded list.
+	 */
+	public interface DecodeCallback {
+
+		/**
+		 * @param json whether the list was stored as JSON by earlier versions
+		 */
+		void onDecoded(List<ToDoItem> items, boolean json);
+
+		void onFailure();
+	}
+
+	/**
+	 * Receives an encoded list.
+	 */
+	public interface EncodeCallback {
+
+		void onEncoded(String data);
+
+		void onFailure();
+	}
+
+	private static final int BATCH_SIZE = 2000;
+
+	private JavaScriptObject worker;
+
+	private boolean failed;
+
+	private int nextId;
+
+	private final Map<Integer, DecodeCallback> decodes = new HashMap<Integer, DecodeCallback>();
+
+	private final Map<Integer, EncodeCallback> encodes = new HashMap<Integer, EncodeCallback>();
+
+	private ToDoListWorker() {
+	}
+
+	/**
+	 * Creates a worker codec, or returns null when the browser does not support workers.
+	 */
+	public static ToDoListWorker create() {
+		return isSupported() ? new ToDoListWorker() : null;
+	}
+
+	private static native boolean isSupported() /*-{
+		return !!($wnd.Worker && $wnd.Blob && ($wnd.URL || $wnd.webkitURL));
+	}-*/;
+
+	public void decode(String data, DecodeCallback callback) {
+		if (!start()) {
+			callback.onFailure();
+			return;
+		}
+		int id = nextId++;
+		ToDoListMessage request = ToDoListMessage.create(id, "decode");
+		request.setData(data);
+		decodes.put(id, callback);
+		post(worker, request);
+	}
+
+	/**
+	 * Encodes the items as they are when this method is called.
+	 */
+	public void encode(List<ToDoItem> items, EncodeCallback callback) {
+		if (!start()) {
+			callback.onFailure();
+			return;
+		}
+		int id = nextId++;
+		ToDoListMessage request = ToDoListMessage.create(id, "encode");
+		for (ToDoItem item : items) {
+			request.push(item.getId(), item.getTitle(), item.isCompleted(), item.getVersion());
+		}
+		encodes.put(id, callback);
+		post(worker, request);
+	}
+
+	private boolean start() {
+		if (worker == null && !failed) {
+			Resources resources = GWT.create(Resources.class);
+			worker = startWorker(resources.script().getText());
+			failed = worker == null;
+		}
+		return !failed;
+	}
+
+	private void onMessage(ToDoListMessage response) {
+		DecodeCallback decode = decodes.remove(response.getRequestId());
+		EncodeCallback encode = encodes.remove(response.getRequestId());
+		if (response.getError() != null) {
+			if (decode != null) {
+				decode.onFailure();
+			}
+			if (encode != null) {
+				encode.onFailure();
+			}
+		} else if (encode != null) {
+			encode.onEncoded(response.getData());
+		} else if (decode != null) {
+			createItems(response, decode);
+		}
+	}
+
+	/**
+	 * Creates the decoded items a batch at a time.
+	 */
+	private void createItems(final ToDoListMessage list, final DecodeCallback callback) {
+		final List<ToDoItem> items = new ArrayList<ToDoItem>(list.length());
+		Scheduler.get().scheduleIncremental(new RepeatingCommand() {
+			@Override
+			public boolean execute() {
+				int end = Math.min(items.size() + BATCH_SIZE, list.length());
+				for (int i = items.size(); i < end; i++) {
+					String id = list.getId(i);
+					// items stored before ids were introduced get a new one
+					items.add(id != null
+						? new ToDoItem(id, list.getTitle(i), list.isCompleted(i), list.getVersion(i))
+						: new ToDoItem(list.getTitle(i), list.isCompleted(i)));
+				}
+				if (items.size() < list.length()) {
+					return true;
+				}
+				callback.onDecoded(items, list.isJson());
+				return false;
+			}
+		});
+	}
+
+	/**
+	 * Invoked when the worker failed, e.g. when its script could not be loaded.
+	 */
+	private void onError() {
+		failed = true;
+		List<DecodeCallback> failedDecodes = new ArrayList<DecodeCallback>(decodes.values());
+		List<EncodeCallback> failedEncodes = new ArrayList<EncodeCallback>(encodes.values());
+		decodes.clear();
+		encodes.clear();
+		for (DecodeCallback callback : failedDecodes) {
+			callback.onFailure();
+		}
+		for (EncodeCallback callback : failedEncodes) {
+			callback.onFailure();
+		}
+	}
+
+	private native JavaScriptObject startWorker(String script) /*-{
+		var self = this;
+		var worker;
+		try {
+			var url = ($wnd.URL || $wnd.webkitURL).createObjectURL(new $wnd.Blob([ script ], { type: 'text/javascript' }));
+			worker = new $wnd.Worker(url);
+		} catch (e) {
+			// e.g. blob workers not allowed by the content security policy
+			return null;
+		}
+
+		worker.onmessage = $entry(function(event) {
+			self.@com.todo.client.storage.ToDoListWorker::onMessage(Lcom/todo/client/storage/ToDoListMessage;)(event.data);
+		});
+		worker.onerror = $entry(function(event) {
+			if (event.preventDefault) {
+				event.preventDefault();
+			}
+			self.@com.todo.client.storage.ToDoListWorker::onError()();
+		});
+		return worker;
+	}-*/;
+
+	private static native void post(JavaScriptObject worker, ToDoListMessage request) /*-{
+		worker.postMessage(request);
+	}-*/;
+}
@@ -0,0 +1,44 @@
+package com.todo.client.storage;
+
+import java.util.List;
+
+import com.todo.client.ToDoItem;
+import com.todo.client.ToDoOperation;
+import com.todo.client.ToDoStore;
+
+/**
+ * Stores the {@link ToDoItem} list of the presenter.
+ */
+public interface ToDoPersistence {
+
+	/**
+	 * Receives the stored items once they are loaded.
+	 */
+	public interface LoadCallback {
+
+		void onLoaded(List<ToDoItem> items);
+	}
+
+	/**
+	 * Loads the stored items. The callback may be invoked before this method returns, or later.
+	 */
+	void load(LoadCallback callback);
+
+	/**
+	 * Stores an operation made by the user. Implementations may write asynchronously.
+	 *
+	 * @param items the items after the operation, in list order, with the versions they were synced at
+	 */
+	void apply(ToDoOperation operation, ToDoStore items);
+
+	/**
+	 * Stores all the items, in list order, e.g. when they are imported. Implementations may write
+	 * asynchronously.
+	 */
+	void save(List<ToDoItem> items);
+
+	/**
+	 * Gets the time spent encoding and decoding the stored list.
+	 */
+	ToDoStorageTimings getTimings();
+}
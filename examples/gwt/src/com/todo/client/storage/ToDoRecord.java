@@ -0,0 +1,40 @@
+package com.todo.client.storage;
+
+import com.google.gwt.core.client.JavaScriptObject;
+
+/**
+ * An item as stored in IndexedDB: {@code {id, title, completed, version, order}}.
+ */
+public final class ToDoRecord extends JavaScriptObject {
+
+	protected ToDoRecord() {
+	}
+
+	public static native ToDoRecord create(String id, String title, boolean completed, int version,
+			double order) /*-{
+		return { id: id, title: title, completed: completed, version: version, order: order };
+	}-*/;
+
+	public native String getId() /*-{
+		return this.id;
+	}-*/;
+
+	public native String getTitle() /*-{
+		return this.title;
+	}-*/;
+
+	public native boolean isCompleted() /*-{
+		return !!this.completed;
+	}-*/;
+
+	public native int getVersion() /*-{
+		return this.version || 0;
+	}-*/;
+
+	/**
+	 * Position of the item in the list, assigned when the item is first stored.
+	 */
+	public native double getOrder() /*-{
+		return this.order || 0;
+	}-*/;
+}
@@ -0,0 +1,85 @@
+package com.todo.client.storage;
+
+/**
+ * The time spent encoding and decoding the stored list, on the UI thread or through the worker of
+ * {@link ToDoListWorker}. Through the worker, the time is from the request to the result, including
+ * the batches which create the decoded items on the UI thread.
+ */
+public class ToDoStorageTimings {
+
+	public enum Path {
+		SYNC, WORKER
+	}
+
+	public enum Step {
+		ENCODE, DECODE
+	}
+
+	private final int[] counts = new int[4];
+
+	private final int[] lastItems = new int[4];
+
+	private final double[] lastMillis = new double[4];
+
+	private final double[] maxMillis = new double[4];
+
+	private final double[] totalMillis = new double[4];
+
+	public void record(Path path, Step step, int items, double millis) {
+		int i = index(path, step);
+		counts[i]++;
+		lastItems[i] = items;
+		lastMillis[i] = millis;
+		maxMillis[i] = Math.max(maxMillis[i], millis);
+		totalMillis[i] += millis;
+	}
+
+	public int getCount(Path path, Step step) {
+		return counts[index(path, step)];
+	}
+
+	/**
+	 * The number of items of the last list encoded or decoded.
+	 */
+	public int getLastItems(Path path, Step step) {
+		return lastItems[index(path, step)];
+	}
+
+	public double getLastMillis(Path path, Step step) {
+		return lastMillis[index(path, step)];
+	}
+
+	public double getMaxMillis(Path path, Step step) {
+		return maxMillis[index(path, step)];
+	}
+
+	public double getTotalMillis(Path path, Step step) {
+		return totalMillis[index(path, step)];
+	}
+
+	private static int index(Path path, Step step) {
+		return path.ordinal() * 2 + step.ordinal();
+	}
+
+	/**
+	 * One line per path and step used, e.g. {@code worker decode: 1 runs, last 35 ms for 10000 items,
+	 * max 35 ms, total 35 ms}.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder out = new StringBuilder();
+		for (Path path : Path.values()) {
+			for (Step step : Step.values()) {
+				int i = index(path, step);
+				if (counts[i] == 0) {
+					continue;
+				}
+				out.append(path.name().toLowerCase()).append(' ').append(step.name().toLowerCase())
+					.append(": ").append(counts[i]).append(" runs, last ").append(Math.round(lastMillis[i]))
+					.append(" ms for ").append(lastItems[i]).append(" items, max ").append(Math.round(maxMillis[i]))
+					.append(" ms, total ").append(Math.round(totalMillis[i])).append(" ms\n");
+			}
+		}
+		return out.toString();
+	}
+}
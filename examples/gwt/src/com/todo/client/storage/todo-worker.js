@@ -0,0 +1,158 @@
+/*
+ * Encodes and decodes the stored todo list off the UI thread, for ToDoListWorker. The compact encoding
+ * is the one of ToDoListCodec, and the two must be kept in step; JSON lists stored by earlier versions
+ * are decoded too.
+ *
+ * Requests are {id, type: 'decode', data} and {id, type: 'encode', ids, titles, completed, versions}.
+ * A decoded list is posted back as the same columns, with json set when it was stored as JSON, and an
+ * encoded list as {id, data}. A request which fails is answered with {id, error}.
+ */
+var HEADER = '2|';
+
+var BASE64 = 'ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/';
+
+var BITS_PER_CHAR = 6;
+
+function encode(list) {
+	var count = list.ids.length;
+	var out = [HEADER, count.toString(36), '|'];
+	var i;
+
+	for (i = 0; i < count; i += BITS_PER_CHAR) {
+		var bits = 0;
+		for (var j = 0; j < BITS_PER_CHAR && i + j < count; j++) {
+			if (list.completed[i + j]) {
+				bits |= 1 << j;
+			}
+		}
+		out.push(BASE64.charAt(bits));
+	}
+	out.push('|');
+
+	for (i = 0; i < count; i++) {
+		out.push(list.versions[i].toString(36), ',');
+	}
+	out.push('|');
+
+	for (i = 0; i < count; i++) {
+		out.push(list.ids[i].length.toString(36), ':', list.ids[i]);
+	}
+	for (i = 0; i < count; i++) {
+		out.push(list.titles[i].length.toString(36), ':', list.titles[i]);
+	}
+	return out.join('');
+}
+
+/*
+ * The value of a base 36 digit, from its character code, or -1.
+ */
+function digit36(ch) {
+	if (ch >= 48 && ch <= 57) {
+		return ch - 48;
+	}
+	if (ch >= 97 && ch <= 122) {
+		return ch - 87;
+	}
+	if (ch >= 65 && ch <= 90) {
+		return ch - 55;
+	}
+	return -1;
+}
+
+function decode(data) {
+	if (data.lastIndexOf(HEADER, 0) !== 0) {
+		return decodeJson(data);
+	}
+
+	var pos = HEADER.length;
+
+	function number(terminator) {
+		var start = pos;
+		var value = 0;
+		var end = terminator.charCodeAt(0);
+		while (pos < data.length) {
+			var ch = data.charCodeAt(pos++);
+			if (ch === end && pos - 1 > start) {
+				return value;
+			}
+			var digit = digit36(ch);
+			if (digit < 0) {
+				break;
+			}
+			value = value * 36 + digit;
+		}
+		throw new Error('Invalid number at ' + start);
+	}
+
+	function string() {
+		var length = number(':');
+		if (pos + length > data.length) {
+			throw new Error('Truncated string at ' + pos);
+		}
+		var value = data.substr(pos, length);
+		pos += length;
+		return value;
+	}
+
+	function expect(ch) {
+		if (data.charAt(pos) !== ch) {
+			throw new Error('Expected \'' + ch + '\' at ' + pos);
+		}
+		pos++;
+	}
+
+	var list = { ids: [], titles: [], completed: [], versions: [], json: false };
+	var count = number('|');
+	var i;
+
+	var bitset = pos;
+	pos += Math.ceil(count / BITS_PER_CHAR);
+	expect('|');
+
+	for (i = 0; i < count; i++) {
+		list.versions.push(number(','));
+	}
+	expect('|');
+
+	for (i = 0; i < count; i++) {
+		list.ids.push(string());
+	}
+	for (i = 0; i < count; i++) {
+		var bits = BASE64.indexOf(data.charAt(bitset + Math.floor(i / BITS_PER_CHAR)));
+		list.titles.push(string());
+		list.completed.push((bits >> (i % BITS_PER_CHAR) & 1) === 1);
+	}
+	return list;
+}
+
+/*
+ * Decodes a JSON array of {id, task, complete, version}. Items stored before ids were introduced get a
+ * null id, and a new one on the UI thread.
+ */
+function decodeJson(data) {
+	var items = JSON.parse(data);
+	var list = { ids: [], titles: [], completed: [], versions: [], json: true };
+	for (var i = 0; i < items.length; i++) {
+		var item = items[i];
+		if (typeof item.task !== 'string' || typeof item.complete !== 'boolean') {
+			throw new Error('Invalid item at ' + i);
+		}
+		list.ids.push(typeof item.id === 'string' ? item.id : null);
+		list.titles.push(item.task);
+		list.completed.push(item.complete);
+		list.versions.push(typeof item.version === 'number' ? item.version : 0);
+	}
+	return list;
+}
+
+self.onmessage = function(event) {
+	var request = event.data;
+	var response;
+	try {
+		response = request.type === 'encode' ? { data: encode(request) } : decode(request.data);
+	} catch (e) {
+		response = { error: String(e) };
+	}
+	response.id = request.id;
+	self.postMessage(response);
+};
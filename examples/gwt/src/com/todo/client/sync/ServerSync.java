@@ -0,0 +1,399 @@
+package com.todo.client.sync;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import com.google.gwt.event.logical.shared.CloseEvent;
+import com.google.gwt.event.logical.shared.CloseHandler;
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.RequestException;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.json.client.JSONArray;
+import com.google.gwt.json.client.JSONBoolean;
+import com.google.gwt.json.client.JSONNumber;
+import com.google.gwt.json.client.JSONObject;
+import com.google.gwt.json.client.JSONParser;
+import com.google.gwt.json.client.JSONString;
+import com.google.gwt.json.client.JSONValue;
+import com.google.gwt.storage.client.Storage;
+import com.google.gwt.user.client.Timer;
+import com.google.gwt.user.client.Window;
+import com.todo.client.ToDoItem;
+
+/**
+ * Syncs the items with the sync server in {@code server/}. The changes posted by this tab are queued,
+ * and sent in a single request together with the server epoch and version acknowledged by the previous
+ * response; the response holds only the changes made by other clients since then. The server is also
+ * polled, so changes made elsewhere arrive while this tab is idle.
+ *
+ * The epoch, the version and the queue are kept in local storage, under a key of this tab, as every
+ * open tab syncs on its own. A tab which loads takes over the state of the tabs which were closed, or
+ * have not saved theirs for a while, so a reload resumes from the last sync rather than downloading the
+ * whole list and sending every item again, and the changes queued by a closed tab are still sent. When
+ * only running tabs have a state, it starts from their oldest version, with an empty queue. All the
+ * items are only sent on the first sync of this browser, and when the server answers with another
+ * epoch, as it then no longer has them, e.g. after an in-memory server restarted.
+ *
+ * Only one request is in flight at a time. When a request fails, or its response cannot be read, its
+ * changes are sent again with the next one, unless the item changed again meanwhile. When the page is
+ * not served by a sync server, syncing stops after the first request.
+ */
+public class ServerSync extends ToDoSyncChannel {
+
+	private static final int POLL_MILLIS = 5000;
+
+	private static final int TIMEOUT_MILLIS = 15000;
+
+	private static final String STATE_KEY = "todo-gwt-server-sync:";
+
+	/**
+	 * How long a tab may not save its state before it is taken for closed. Browsers run the timers of
+	 * background tabs no more than once a minute.
+	 */
+	private static final double STALE_MILLIS = 3 * 60 * 1000;
+
+	private final String url;
+
+	private final String list;
+
+	private final Storage storage = Storage.getLocalStorageIfSupported();
+
+	/**
+	 * The changes not yet sent to the server, by item id.
+	 */
+	private final Map<String, JSONObject> pending = new LinkedHashMap<String, JSONObject>();
+
+	/**
+	 * The changes of the request in flight, kept in storage with the pending ones until acknowledged.
+	 */
+	private List<JSONObject> sending = new ArrayList<JSONObject>();
+
+	/**
+	 * The epoch of the server store as of the last response, null before the first one.
+	 */
+	private String epoch;
+
+	/**
+	 * The server version of the list as of the last response.
+	 */
+	private double since;
+
+	private boolean requesting;
+
+	private boolean syncScheduled;
+
+	private boolean stopped;
+
+	private boolean closed;
+
+	private final Timer poll = new Timer() {
+		@Override
+		public void run() {
+			sync();
+			// keeps the state of this tab from being taken over while it runs
+			saveState();
+		}
+	};
+
+	/**
+	 * @param url the sync endpoint, e.g. {@code /sync}
+	 * @param list the list to sync
+	 */
+	public ServerSync(String url, String list) {
+		this.url = url;
+		this.list = list;
+	}
+
+	@Override
+	public void onLoaded(List<ToDoItem> items) {
+		if (!restoreState()) {
+			// first sync of this browser, the server may not know the items stored in it
+			queueAll(items);
+		}
+		Window.addCloseHandler(new CloseHandler<Window>() {
+			@Override
+			public void onClose(CloseEvent<Window> event) {
+				// the next tab to load sends what this one could not
+				closed = true;
+				saveState();
+			}
+		});
+		saveState();
+		sync();
+		poll.scheduleRepeating(POLL_MILLIS);
+	}
+
+	@Override
+	public void post(JSONArray changes) {
+		for (int i = 0; i < changes.size(); i++) {
+			JSONObject change = changes.get(i).isObject();
+			String id = change.get("id").isString().stringValue();
+			// a later change of the same item supersedes the queued one
+			pending.remove(id);
+			pending.put(id, change);
+		}
+		saveState();
+		scheduleSync();
+	}
+
+	private void scheduleSync() {
+		if (syncScheduled) {
+			return;
+		}
+		syncScheduled = true;
+		Scheduler.get().scheduleDeferred(new ScheduledCommand() {
+			@Override
+			public void execute() {
+				syncScheduled = false;
+				sync();
+			}
+		});
+	}
+
+	private void sync() {
+		if (requesting || stopped) {
+			return;
+		}
+
+		final List<JSONObject> sent = new ArrayList<JSONObject>(pending.values());
+		pending.clear();
+		sending = sent;
+
+		JSONArray changes = new JSONArray();
+		for (JSONObject change : sent) {
+			changes.set(changes.size(), change);
+		}
+		JSONObject request = new JSONObject();
+		request.put("list", new JSONString(list));
+		request.put("client", new JSONString(clientId));
+		if (epoch != null) {
+			request.put("epoch", new JSONString(epoch));
+		}
+		request.put("since", new JSONNumber(since));
+		request.put("changes", changes);
+
+		RequestBuilder builder = new RequestBuilder(RequestBuilder.POST, url);
+		builder.setHeader("Content-Type", "application/json");
+		builder.setTimeoutMillis(TIMEOUT_MILLIS);
+		requesting = true;
+		try {
+			builder.sendRequest(request.toString(), new RequestCallback() {
+				@Override
+				public void onResponseReceived(Request request, Response response) {
+					requesting = false;
+					if (response.getStatusCode() == 200) {
+						onSynced(response.getText(), sent);
+					} else if (response.getStatusCode() == 404 || response.getStatusCode() == 405) {
+						// not served by a sync server
+						stop();
+					} else {
+						requeue(sent);
+					}
+				}
+
+				@Override
+				public void onError(Request request, Throwable exception) {
+					requesting = false;
+					requeue(sent);
+				}
+			});
+		} catch (RequestException e) {
+			requesting = false;
+			requeue(sent);
+		}
+	}
+
+	private void onSynced(String text, List<JSONObject> sent) {
+		String responseEpoch;
+		double version;
+		JSONArray changes;
+		try {
+			JSONObject response = JSONParser.parseStrict(text).isObject();
+			JSONValue epochValue = response.get("epoch");
+			responseEpoch = epochValue != null && epochValue.isString() != null
+				? epochValue.isString().stringValue() : null;
+			version = response.get("version").isNumber().doubleValue();
+			changes = response.get("changes").isArray();
+		} catch (Exception e) {
+			// not known whether the server took the changes, they are superseded by version if sent twice
+			requeue(sent);
+			return;
+		}
+
+		boolean serverReset = epoch != null && responseEpoch != null && !epoch.equals(responseEpoch);
+		epoch = responseEpoch;
+		since = version;
+		sending = new ArrayList<JSONObject>();
+
+		if (changes.size() > 0 && receiver != null) {
+			receiver.onChanges(changes);
+		}
+		if (serverReset && receiver != null) {
+			// the server does not have the items of this browser anymore, send them again
+			queueAll(receiver.getItems());
+		}
+		saveState();
+		if (!pending.isEmpty()) {
+			scheduleSync();
+		}
+	}
+
+	private void requeue(List<JSONObject> sent) {
+		for (JSONObject change : sent) {
+			String id = change.get("id").isString().stringValue();
+			if (!pending.containsKey(id)) {
+				pending.put(id, change);
+			}
+		}
+		sending = new ArrayList<JSONObject>();
+		saveState();
+	}
+
+	/**
+	 * Queues a change for every item, superseding the queued changes of the same items.
+	 */
+	private void queueAll(List<ToDoItem> items) {
+		ToDoItem previous = null;
+		for (ToDoItem item : items) {
+			pending.remove(item.getId());
+			pending.put(item.getId(), ToDoSync.change(item, previous));
+			previous = item;
+		}
+	}
+
+	/**
+	 * Restores the epoch, version and queue of the tabs of this browser which are gone, and returns
+	 * whether any tab synced before. The queues are merged, keeping the latest version of each item,
+	 * and syncing resumes from the oldest version, as changes received twice are superseded by version.
+	 * The states of running tabs only give the version to start from.
+	 */
+	private boolean restoreState() {
+		if (storage == null) {
+			return false;
+		}
+
+		// the state of the whole list, written before each tab kept its own
+		String legacyKey = STATE_KEY + list;
+		String tabPrefix = legacyKey + ":";
+		List<String> keys = new ArrayList<String>();
+		for (int i = 0; i < storage.getLength(); i++) {
+			String key = storage.key(i);
+			if (key != null && (key.equals(legacyKey) || key.startsWith(tabPrefix))) {
+				keys.add(key);
+			}
+		}
+
+		double now = Duration.currentTimeMillis();
+		boolean adopted = false;
+		String liveEpoch = null;
+		double liveSince = -1;
+		for (String key : keys) {
+			JSONObject state;
+			String stateEpoch;
+			double stateSince;
+			boolean gone;
+			try {
+				state = JSONParser.parseStrict(storage.getItem(key)).isObject();
+				JSONValue epochValue = state.get("epoch");
+				stateEpoch = epochValue != null && epochValue.isString() != null
+					? epochValue.isString().stringValue() : null;
+				stateSince = state.get("since").isNumber().doubleValue();
+				JSONValue seen = state.get("seen");
+				gone = key.equals(legacyKey) || state.get("closed") != null || seen == null
+					|| now - seen.isNumber().doubleValue() > STALE_MILLIS;
+			} catch (Exception e) {
+				storage.removeItem(key);
+				continue;
+			}
+
+			if (!gone) {
+				if (liveSince < 0 || liveEpoch != null && liveEpoch.equals(stateEpoch) && stateSince < liveSince) {
+					liveEpoch = stateEpoch;
+					liveSince = stateSince;
+				}
+				continue;
+			}
+
+			if (!adopted || epoch != null && epoch.equals(stateEpoch) && stateSince < since) {
+				epoch = stateEpoch;
+				since = stateSince;
+			}
+			adopted = true;
+			try {
+				JSONArray changes = state.get("pending").isArray();
+				for (int i = 0; i < changes.size(); i++) {
+					JSONObject change = changes.get(i).isObject();
+					String id = change.get("id").isString().stringValue();
+					JSONObject queued = pending.get(id);
+					if (queued == null || version(queued) < version(change)) {
+						pending.remove(id);
+						pending.put(id, change);
+					}
+				}
+			} catch (Exception e) {
+				// the version is kept, the server sends the changes made since then
+			}
+			storage.removeItem(key);
+		}
+
+		if (!adopted && liveSince >= 0) {
+			epoch = liveEpoch;
+			since = liveSince;
+		}
+		return adopted || liveSince >= 0;
+	}
+
+	private static double version(JSONObject change) {
+		JSONValue version = change.get("version");
+		return version != null && version.isNumber() != null ? version.isNumber().doubleValue() : 0;
+	}
+
+	/**
+	 * Stores the epoch, version and the changes not yet acknowledged, those in flight first, with the
+	 * time, and whether this tab is closing.
+	 */
+	private void saveState() {
+		if (storage == null || stopped) {
+			return;
+		}
+
+		JSONArray changes = new JSONArray();
+		for (JSONObject change : sending) {
+			changes.set(changes.size(), change);
+		}
+		for (JSONObject change : pending.values()) {
+			changes.set(changes.size(), change);
+		}
+		JSONObject state = new JSONObject();
+		if (epoch != null) {
+			state.put("epoch", new JSONString(epoch));
+		}
+		state.put("since", new JSONNumber(since));
+		state.put("pending", changes);
+		state.put("seen", new JSONNumber(Duration.currentTimeMillis()));
+		if (closed) {
+			state.put("closed", JSONBoolean.getInstance(true));
+		}
+		storage.setItem(stateKey(), state.toString());
+	}
+
+	private String stateKey() {
+		return STATE_KEY + list + ":" + clientId;
+	}
+
+	private void stop() {
+		stopped = true;
+		pending.clear();
+		poll.cancel();
+		if (storage != null) {
+			storage.removeItem(stateKey());
+		}
+	}
+}
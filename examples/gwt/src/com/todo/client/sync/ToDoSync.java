@@ -0,0 +1,348 @@
+package com.todo.client.sync;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.gwt.json.client.JSONArray;
+import com.google.gwt.json.client.JSONBoolean;
+import com.google.gwt.json.client.JSONNumber;
+import com.google.gwt.json.client.JSONObject;
+import com.google.gwt.json.client.JSONString;
+import com.google.gwt.json.client.JSONValue;
+import com.todo.client.ToDoItem;
+import com.todo.client.ToDoOperation;
+import com.todo.client.ToDoStore;
+import com.todo.client.storage.ToDoPersistence;
+import com.todo.client.storage.ToDoStorageTimings;
+
+/**
+ * Keeps the items of the application in step across browser tabs, and with a server. It stores the
+ * items through a {@link ToDoPersistence}, and for each operation posts the items it added, changed or
+ * removed to its channels. Changes received from the channels are applied to the items of this tab,
+ * reported to a {@link Listener}, and stored as operations, so that tabs converge without reloading,
+ * re-parsing or rewriting the whole list.
+ *
+ * Each local change increments the version of the item. A received change is applied when its version
+ * is higher than the local one. Concurrent edits of the same version are resolved the same way in every
+ * tab: a removal wins, otherwise the greater state wins. Removed items are remembered with their
+ * version, so that late edits do not bring them back.
+ */
+public class ToDoSync implements ToDoPersistence {
+
+	/**
+	 * Applies the changes made in other tabs to the application.
+	 */
+	public interface Listener {
+
+		/**
+		 * An item was added in another tab, after the given item, or first when it is null.
+		 */
+		void onAdded(ToDoItem item, ToDoItem after);
+
+		/**
+		 * The title or completed state of an item was changed in another tab.
+		 */
+		void onUpdated(ToDoItem item);
+
+		/**
+		 * An item was removed in another tab.
+		 */
+		void onRemoved(ToDoItem item);
+
+		/**
+		 * Invoked once all the changes of a message have been applied.
+		 */
+		void onChangesApplied();
+
+		/**
+		 * Gets the item of this tab with the given id, or null when there is none.
+		 */
+		ToDoItem getItem(String id);
+
+		/**
+		 * Gets the items of this tab, in list order.
+		 */
+		ToDoStore getItems();
+	}
+
+	private static final Comparator<ToDoOperation.Entry> BY_INDEX = new Comparator<ToDoOperation.Entry>() {
+		@Override
+		public int compare(ToDoOperation.Entry a, ToDoOperation.Entry b) {
+			return a.getIndex() - b.getIndex();
+		}
+	};
+
+	private final ToDoPersistence persistence;
+
+	private final List<ToDoSyncChannel> channels = new ArrayList<ToDoSyncChannel>();
+
+	private final String tabId = ToDoItem.newId();
+
+	private Listener listener;
+
+	private boolean loaded;
+
+	/**
+	 * The version of each removed item, by id.
+	 */
+	private final Map<String, Integer> removed = new HashMap<String, Integer>();
+
+	/**
+	 * @param channels the channels to other tabs or to a server, null entries are ignored
+	 */
+	public ToDoSync(ToDoPersistence persistence, ToDoSyncChannel... channels) {
+		this.persistence = persistence;
+
+		ToDoSyncChannel.Receiver receiver = new ToDoSyncChannel.Receiver() {
+			@Override
+			public void onChanges(JSONArray changes) {
+				receive(changes);
+			}
+
+			@Override
+			public List<ToDoItem> getItems() {
+				return listener != null ? listener.getItems() : new ArrayList<ToDoItem>();
+			}
+		};
+		for (ToDoSyncChannel channel : channels) {
+			if (channel != null) {
+				channel.connect(tabId, receiver);
+				this.channels.add(channel);
+			}
+		}
+	}
+
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+
+	@Override
+	public void load(final LoadCallback callback) {
+		persistence.load(new LoadCallback() {
+			@Override
+			public void onLoaded(List<ToDoItem> loadedItems) {
+				loaded = true;
+				callback.onLoaded(loadedItems);
+				for (ToDoSyncChannel channel : channels) {
+					channel.onLoaded(loadedItems);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Only the items of the operation are posted, with the versions read from the list, so an operation
+	 * costs the same whatever the length of the list, and no state is kept per item.
+	 */
+	@Override
+	public void apply(ToDoOperation operation, ToDoStore current) {
+		JSONArray changes = new JSONArray();
+		List<ToDoOperation.Entry> entries = operation.getEntries();
+		for (int i = 0; i < entries.size(); i++) {
+			int appliedVersion = operation.getAppliedVersion(i);
+			if (appliedVersion < 0) {
+				// skipped, the item did not change
+				continue;
+			}
+			String id = entries.get(i).getId();
+			int index = current.indexOf(id);
+			if (index >= 0) {
+				changes.set(changes.size(), changed(current.get(index), index > 0 ? current.get(index - 1) : null));
+			} else {
+				changes.set(changes.size(), removed(id, appliedVersion + 1));
+			}
+		}
+		persistence.apply(operation, current);
+		post(changes);
+	}
+
+	/**
+	 * Stores the whole list as it is, e.g. after an import. Nothing is posted: the changes made in this
+	 * tab are posted as operations.
+	 */
+	@Override
+	public void save(List<ToDoItem> current) {
+		persistence.save(current);
+	}
+
+	@Override
+	public ToDoStorageTimings getTimings() {
+		return persistence.getTimings();
+	}
+
+	/**
+	 * Increments the version of an item which was added or changed, and creates its change.
+	 */
+	private JSONObject changed(ToDoItem item, ToDoItem previous) {
+		Integer removedVersion = removed.remove(item.getId());
+		if (removedVersion != null && removedVersion > item.getVersion()) {
+			// restored, e.g. by undo, the change must win over the removal
+			item.setVersion(removedVersion);
+		}
+		item.setVersion(item.getVersion() + 1);
+		return change(item, previous);
+	}
+
+	/**
+	 * Remembers the version of a removed item, and creates its change.
+	 */
+	private JSONObject removed(String id, int version) {
+		removed.put(id, version);
+
+		JSONObject change = new JSONObject();
+		change.put("id", new JSONString(id));
+		change.put("version", new JSONNumber(version));
+		change.put("removed", JSONBoolean.getInstance(true));
+		return change;
+	}
+
+	private void post(JSONArray changes) {
+		if (changes.size() > 0) {
+			for (ToDoSyncChannel channel : channels) {
+				channel.post(changes);
+			}
+		}
+	}
+
+	private void receive(JSONArray changes) {
+		if (!loaded || listener == null) {
+			// the changes are in storage by the time this tab loads
+			return;
+		}
+
+		ToDoStore items = listener.getItems();
+		List<ToDoOperation.Entry> deleted = new ArrayList<ToDoOperation.Entry>();
+		Set<String> added = new HashSet<String>();
+		Set<String> updated = new LinkedHashSet<String>();
+		try {
+			for (int i = 0; i < changes.size(); i++) {
+				JSONObject change = changes.get(i).isObject();
+				if (change.get("removed") != null) {
+					applyRemoval(change, items, deleted);
+				} else {
+					applyUpdate(change, items, added, updated);
+				}
+			}
+		} finally {
+			listener.onChangesApplied();
+			store(items, deleted, added, updated);
+		}
+	}
+
+	/**
+	 * Stores the received changes as operations, so that only the items they affected are written: the
+	 * removals, then the additions in list order, then the updates.
+	 *
+	 * @param added the ids of the added items
+	 * @param updated the ids of the added or updated items
+	 */
+	private void store(ToDoStore items, List<ToDoOperation.Entry> deleted, Set<String> added,
+			Set<String> updated) {
+		List<ToDoOperation.Entry> adds = new ArrayList<ToDoOperation.Entry>();
+		List<ToDoOperation.Entry> updates = new ArrayList<ToDoOperation.Entry>();
+		for (String id : updated) {
+			int index = items.indexOf(id);
+			if (index < 0) {
+				// added and removed again by the same message
+				continue;
+			}
+			if (added.contains(id)) {
+				adds.add(new ToDoOperation.Entry(id, index, items.getTitle(index), items.isCompleted(index), null));
+			} else {
+				updates.add(new ToDoOperation.Entry(id, -1, items.getTitle(index), items.isCompleted(index), null));
+			}
+		}
+		Collections.sort(adds, BY_INDEX);
+
+		if (!deleted.isEmpty()) {
+			persistence.apply(new ToDoOperation(ToDoOperation.Type.DELETE, deleted), items);
+		}
+		if (!adds.isEmpty()) {
+			persistence.apply(new ToDoOperation(ToDoOperation.Type.ADD, adds), items);
+		}
+		if (!updates.isEmpty()) {
+			persistence.apply(new ToDoOperation(ToDoOperation.Type.UPDATE, updates), items);
+		}
+	}
+
+	private void applyRemoval(JSONObject change, ToDoStore items, List<ToDoOperation.Entry> deleted) {
+		String id = change.get("id").isString().stringValue();
+		int version = (int) change.get("version").isNumber().doubleValue();
+
+		Integer removedVersion = removed.get(id);
+		if (removedVersion == null || removedVersion < version) {
+			removed.put(id, version);
+		}
+
+		int index = items.indexOf(id);
+		// a removal wins over an edit of the same version
+		if (index >= 0 && version >= items.getVersion(index)) {
+			ToDoItem item = items.get(index);
+			deleted.add(new ToDoOperation.Entry(id, -1, item.getTitle(), item.isCompleted(), null));
+			listener.onRemoved(item);
+		}
+	}
+
+	private void applyUpdate(JSONObject change, ToDoStore items, Set<String> added, Set<String> updated) {
+		String id = change.get("id").isString().stringValue();
+		String title = change.get("task").isString().stringValue();
+		boolean completed = change.get("complete").isBoolean().booleanValue();
+		int version = (int) change.get("version").isNumber().doubleValue();
+
+		Integer removedVersion = removed.get(id);
+		if (removedVersion != null && removedVersion >= version) {
+			return;
+		}
+
+		int index = items.indexOf(id);
+		if (index < 0) {
+			ToDoItem item = new ToDoItem(id, title, completed, version);
+			JSONValue after = change.get("after");
+			listener.onAdded(item, after != null && after.isString() != null
+				? listener.getItem(after.isString().stringValue()) : null);
+			added.add(id);
+			updated.add(id);
+			return;
+		}
+
+		int localVersion = items.getVersion(index);
+		if (version > localVersion || (version == localVersion
+				&& state(title, completed).compareTo(state(items.getTitle(index), items.isCompleted(index))) > 0)) {
+			ToDoItem item = items.get(index);
+			item.setTitle(title);
+			item.setCompleted(completed);
+			item.setVersion(version);
+			listener.onUpdated(item);
+			updated.add(id);
+		}
+	}
+
+	/**
+	 * Creates the change which adds or updates the item, placed after the previous item.
+	 */
+	static JSONObject change(ToDoItem item, ToDoItem previous) {
+		JSONObject change = new JSONObject();
+		change.put("id", new JSONString(item.getId()));
+		change.put("task", new JSONString(item.getTitle()));
+		change.put("complete", JSONBoolean.getInstance(item.isCompleted()));
+		change.put("version", new JSONNumber(item.getVersion()));
+		if (previous != null) {
+			change.put("after", new JSONString(previous.getId()));
+		}
+		return change;
+	}
+
+	/**
+	 * Gets the state which wins when the same version of an item was edited concurrently.
+	 */
+	private static String state(String title, boolean completed) {
+		return (completed ? "+" : "-") + title;
+	}
+}
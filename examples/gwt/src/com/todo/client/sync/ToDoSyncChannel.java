@@ -0,0 +1,170 @@
+package com.todo.client.sync;
+
+import java.util.List;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.json.client.JSONArray;
+import com.google.gwt.json.client.JSONNumber;
+import com.google.gwt.json.client.JSONObject;
+import com.google.gwt.json.client.JSONParser;
+import com.google.gwt.json.client.JSONString;
+import com.google.gwt.storage.client.Storage;
+import com.google.gwt.storage.client.StorageEvent;
+import com.todo.client.ToDoItem;
+
+/**
+ * Carries item changes between this tab and the other tabs running the application, or a server.
+ * Changes are not delivered back to the client which posted them.
+ */
+public abstract class ToDoSyncChannel {
+
+	private static final String NAME = "todo-gwt-sync";
+
+	/**
+	 * Receives the changes made by other clients.
+	 */
+	public interface Receiver {
+
+		void onChanges(JSONArray changes);
+
+		/**
+		 * Gets the items of this tab in list order, for a server which has to be sent all of them again.
+		 */
+		List<ToDoItem> getItems();
+	}
+
+	protected String clientId;
+
+	protected Receiver receiver;
+
+	private int sequence;
+
+	/**
+	 * Creates a channel on {@code BroadcastChannel} where supported, otherwise on local storage
+	 * events. Returns null when neither is available.
+	 */
+	public static ToDoSyncChannel create() {
+		if (BroadcastSyncChannel.isSupported()) {
+			return new BroadcastSyncChannel();
+		}
+		Storage storage = Storage.getLocalStorageIfSupported();
+		if (storage != null) {
+			return new StorageSyncChannel(storage);
+		}
+		return null;
+	}
+
+	/**
+	 * Starts delivering the changes of other clients to the receiver.
+	 *
+	 * @param clientId identifies this tab
+	 */
+	public void connect(String clientId, Receiver receiver) {
+		this.clientId = clientId;
+		this.receiver = receiver;
+	}
+
+	/**
+	 * Posts the changes made in this tab.
+	 */
+	public abstract void post(JSONArray changes);
+
+	/**
+	 * Invoked once the stored items of this tab have been loaded.
+	 */
+	public void onLoaded(List<ToDoItem> items) {
+	}
+
+	/**
+	 * Wraps the changes in a message, {@code {"from": <client>, "seq": <n>, "changes": [...]}}.
+	 */
+	protected String message(JSONArray changes) {
+		JSONObject message = new JSONObject();
+		message.put("from", new JSONString(clientId));
+		message.put("seq", new JSONNumber(++sequence));
+		message.put("changes", changes);
+		return message.toString();
+	}
+
+	/**
+	 * Delivers the changes of a message posted by another tab.
+	 */
+	protected void receive(String message) {
+		if (receiver == null || message == null) {
+			return;
+		}
+
+		JSONArray changes;
+		try {
+			JSONObject json = JSONParser.parseStrict(message).isObject();
+			if (clientId.equals(json.get("from").isString().stringValue())) {
+				return;
+			}
+			changes = json.get("changes").isArray();
+		} catch (Exception e) {
+			return;
+		}
+		receiver.onChanges(changes);
+	}
+
+	/**
+	 * A channel on the HTML5 {@code BroadcastChannel} API.
+	 */
+	private static class BroadcastSyncChannel extends ToDoSyncChannel {
+
+		private final JavaScriptObject channel;
+
+		BroadcastSyncChannel() {
+			channel = open(NAME);
+		}
+
+		static native boolean isSupported() /*-{
+			return !!$wnd.BroadcastChannel;
+		}-*/;
+
+		private native JavaScriptObject open(String name) /*-{
+			var self = this;
+			var channel = new $wnd.BroadcastChannel(name);
+			channel.onmessage = $entry(function(event) {
+				self.@com.todo.client.sync.ToDoSyncChannel::receive(Ljava/lang/String;)(event.data);
+			});
+			return channel;
+		}-*/;
+
+		@Override
+		public void post(JSONArray changes) {
+			post(channel, message(changes));
+		}
+
+		private static native void post(JavaScriptObject channel, String message) /*-{
+			channel.postMessage(message);
+		}-*/;
+	}
+
+	/**
+	 * A channel on local storage events, which other tabs of the same origin receive when a key is
+	 * set. Each message is written to the same key, so no more than one message is kept in storage.
+	 */
+	private static class StorageSyncChannel extends ToDoSyncChannel {
+
+		private final Storage storage;
+
+		StorageSyncChannel(Storage storage) {
+			this.storage = storage;
+			Storage.addStorageEventHandler(new StorageEvent.Handler() {
+				@Override
+				public void onStorageChange(StorageEvent event) {
+					if (NAME.equals(event.getKey())) {
+						receive(event.getNewValue());
+					}
+				}
+			});
+		}
+
+		@Override
+		public void post(JSONArray changes) {
+			// messages carry a sequence number, so an event fires even when the same change is posted again
+			storage.setItem(NAME, message(changes));
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package com.todo.tests;
+
+import java.util.List;
+
+import com.todo.client.ToDoItem;
+import com.todo.client.ToDoRouting;
+import com.todo.client.ToDoStore;
+
+/**
+ * Checks on the JVM that a batch of changes received from another tab or the server, with an addition or
+ * removal followed by updates, is applied to the filtered list of the presenter without touching the
+ * positions of a subset which is out of date.
+ *
+ * Usage: {@code FilteredListBatchTest}, exits with a failure when a check does not hold
+ */
+public class FilteredListBatchTest {
+
+	public static void main(String[] args) {
+		updateInPlace();
+		addThenUpdate();
+		removeThenUpdate();
+		System.out.println("FilteredListBatchTest passed");
+	}
+
+	/**
+	 * An update alone is redrawn in place, or removed from the filtered list when it no longer matches.
+	 */
+	private static void updateInPlace() {
+		ToDoStore store = store();
+		ToDoStore.Subset active = store.withCompleted(false);
+		List<ToDoItem> filtered = active;
+
+		ToDoItem item = store.getById("b");
+		item.setTitle("b2");
+		check(ToDoRouting.ACTIVE.refresh(filtered, active, item), "update refreshed in place");
+		check(filtered.size() == 3, "update keeps the item");
+
+		item.setCompleted(true);
+		check(ToDoRouting.ACTIVE.refresh(filtered, active, item), "completed item refreshed in place");
+		check(filtered.size() == 2 && !filtered.contains(item), "completed item leaves the active list");
+	}
+
+	/**
+	 * An addition moves the positions held by the subset, so the update which follows asks for the list
+	 * to be built again instead of looking the item up.
+	 */
+	private static void addThenUpdate() {
+		ToDoStore store = store();
+		ToDoStore.Subset active = store.withCompleted(false);
+
+		store.add(0, new ToDoItem("x", "added", false, 1));
+		ToDoItem item = store.getById("c");
+		item.setTitle("c2");
+		check(!active.isCurrent(), "subset out of date after an addition");
+		check(!ToDoRouting.ACTIVE.refresh(active, active, item), "list rebuilt after an addition");
+
+		active = store.withCompleted(false);
+		check(active.size() == 4 && active.get(0).getId().equals("x") && active.contains(item),
+			"rebuilt list holds the addition and the update");
+	}
+
+	private static void removeThenUpdate() {
+		ToDoStore store = store();
+		ToDoStore.Subset all = store.all();
+
+		store.remove(store.getById("a"));
+		ToDoItem item = store.getById("d");
+		item.setCompleted(false);
+		check(!ToDoRouting.ALL.refresh(all, all, item), "list rebuilt after a removal");
+
+		all = store.all();
+		check(all.size() == 3 && all.indexOf(item) == 2, "rebuilt list holds the update");
+	}
+
+	/**
+	 * a, b, c active, d completed.
+	 */
+	private static ToDoStore store() {
+		ToDoStore store = new ToDoStore();
+		store.add(new ToDoItem("a", "a", false, 1));
+		store.add(new ToDoItem("b", "b", false, 1));
+		store.add(new ToDoItem("c", "c", false, 1));
+		store.add(new ToDoItem("d", "d", true, 1));
+		return store;
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+	}
+}